@@ -0,0 +1,26 @@
+package uk.co.lukestevens.benchmark.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+// Entity used by HibernateDaoBenchmark, kept out of the hibernate
+// package so entity scanning tests are unaffected
+@Entity
+public class BenchmarkEntity {
+
+	@Id
+	int id;
+	String name;
+
+	public BenchmarkEntity() {}
+
+	public BenchmarkEntity(int id, String name) {
+		this.id = id;
+		this.name = name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+}
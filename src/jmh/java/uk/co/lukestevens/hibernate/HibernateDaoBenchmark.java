@@ -0,0 +1,83 @@
+package uk.co.lukestevens.hibernate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.co.lukestevens.benchmark.entities.BenchmarkEntity;
+import uk.co.lukestevens.jdbc.filter.QueryFilters;
+
+/**
+ * Benchmarks getting, listing and saving entities with a {@link HibernateDao}
+ * against an in memory H2 database
+ *
+ * @author luke.stevens
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HibernateDaoBenchmark {
+
+	SessionFactory factory;
+	HibernateDao<BenchmarkEntity> dao;
+	BenchmarkEntity entity;
+	int saves = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		Configuration cfg = new Configuration();
+		cfg.setProperty("hibernate.connection.url", "jdbc:h2:mem:hibernate-benchmark;DB_CLOSE_DELAY=-1");
+		cfg.setProperty("hibernate.connection.username", "sa");
+		cfg.setProperty("hibernate.connection.password", "");
+		cfg.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+		cfg.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+		cfg.addAnnotatedClass(BenchmarkEntity.class);
+		factory = cfg.buildSessionFactory();
+
+		dao = new HibernateDao<>(factory, BenchmarkEntity.class);
+		for(int i = 1; i <= 100; i++) {
+			dao.save(new BenchmarkEntity(i, "entity" + i));
+		}
+		entity = dao.get(QueryFilters.column("id").isEqualTo(50));
+	}
+
+	@TearDown
+	public void tearDown() {
+		factory.close();
+	}
+
+	@Benchmark
+	public BenchmarkEntity get() throws IOException {
+		return dao.get(QueryFilters.column("id").isEqualTo(50));
+	}
+
+	@Benchmark
+	public List<BenchmarkEntity> list() throws IOException {
+		return dao.list();
+	}
+
+	@Benchmark
+	public void save() throws IOException {
+		// Updates an existing row, so the table does not grow between iterations
+		entity.setName("entity" + saves++);
+		dao.save(entity);
+	}
+
+}
@@ -0,0 +1,78 @@
+package uk.co.lukestevens.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import uk.co.lukestevens.db.DatabaseResult;
+
+/**
+ * Benchmarks single row queries, updates and statement preparation
+ * against an in memory H2 database
+ *
+ * @author luke.stevens
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatabaseBenchmark {
+
+	SimpleDatabase database;
+	Connection conn;
+
+	@Setup
+	public void setup() throws SQLException {
+		database = new SimpleDatabase("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1", "sa", "");
+		database.update("DROP TABLE IF EXISTS item");
+		database.update("CREATE TABLE item(id INT PRIMARY KEY, name VARCHAR(32), price DOUBLE)");
+		new BulkInserter(database, "item", "id", "name", "price").insert(IntStream.rangeClosed(1, 100)
+				.mapToObj(i -> new Object[] { i, "item" + i, i * 0.5 }));
+		conn = database.getConnection();
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		conn.close();
+		database.update("DROP TABLE item");
+	}
+
+	@Benchmark
+	public boolean query() throws SQLException, IOException {
+		try(DatabaseResult result = database.query("SELECT * FROM item WHERE id = ?", 50)) {
+			return result.getResultSet().next();
+		}
+	}
+
+	@Benchmark
+	public Optional<Long> update() throws SQLException {
+		return database.update("UPDATE item SET price = price + 1 WHERE id = ?", 50);
+	}
+
+	@Benchmark
+	public void prepareStatement(Blackhole blackhole) throws SQLException {
+		try(PreparedStatement stmt = database.prepareStatement(conn, "SELECT * FROM item WHERE id = ? AND name = ?", 50, "item50")) {
+			blackhole.consume(stmt);
+		}
+	}
+
+}
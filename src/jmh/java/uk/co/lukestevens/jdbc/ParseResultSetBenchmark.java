@@ -0,0 +1,77 @@
+package uk.co.lukestevens.jdbc;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.co.lukestevens.db.DatabaseResult;
+
+/**
+ * Benchmarks querying and parsing whole results of different sizes
+ * with {@link uk.co.lukestevens.jdbc.result.WrappedDatabaseResult#parseResultSet}
+ *
+ * @author luke.stevens
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseResultSetBenchmark {
+
+	@Param({ "1", "100", "10000" })
+	int rows;
+
+	SimpleDatabase database;
+
+	@Setup
+	public void setup() throws SQLException {
+		database = new SimpleDatabase("jdbc:h2:mem:parse-benchmark;DB_CLOSE_DELAY=-1", "sa", "");
+		database.update("DROP TABLE IF EXISTS item");
+		database.update("CREATE TABLE item(id INT PRIMARY KEY, name VARCHAR(32), price DOUBLE)");
+		new BulkInserter(database, "item", "id", "name", "price").insert(IntStream.rangeClosed(1, rows)
+				.mapToObj(i -> new Object[] { i, "item" + i, i * 0.5 }));
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		database.update("DROP TABLE item");
+	}
+
+	@Benchmark
+	public List<Item> parseResultSet() throws SQLException, IOException {
+		try(DatabaseResult result = database.query("SELECT id, name, price FROM item")) {
+			return result.parseResultSet(rs -> new Item(rs.getInt(1), rs.getString(2), rs.getDouble(3)));
+		}
+	}
+
+	static class Item {
+
+		final int id;
+		final String name;
+		final double price;
+
+		Item(int id, String name, double price) {
+			this.id = id;
+			this.name = name;
+			this.price = price;
+		}
+	}
+
+}
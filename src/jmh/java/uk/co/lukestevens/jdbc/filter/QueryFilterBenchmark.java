@@ -0,0 +1,50 @@
+package uk.co.lukestevens.jdbc.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks building query filters
+ *
+ * @author luke.stevens
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryFilterBenchmark {
+
+	@Benchmark
+	public QueryFilter column() {
+		return QueryFilters.column("name").isEqualTo("foo");
+	}
+
+	@Benchmark
+	public QueryFilter and() {
+		return QueryFilters.and(
+				QueryFilters.column("name").isEqualTo("foo"),
+				QueryFilters.column("price").isGreaterThan(10),
+				QueryFilters.column("deleted").isNull());
+	}
+
+	@Benchmark
+	public QueryFilter nested() {
+		return QueryFilters.or(
+				QueryFilters.and(
+						QueryFilters.column("name").isLike("foo%"),
+						QueryFilters.column("id").isIn(1, 2, 3, 4, 5)),
+				QueryFilters.and(
+						QueryFilters.column("price").isLessThanOrEqualTo(5),
+						QueryFilters.column("deleted").isNotNull()),
+				QueryFilters.empty());
+	}
+
+}
@@ -1,16 +1,26 @@
 package uk.co.lukestevens.jdbc;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Types;
-import java.util.Date;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import uk.co.lukestevens.db.Database;
 import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.db.ResultParser;
+import uk.co.lukestevens.jdbc.binder.ParameterBinders;
+import uk.co.lukestevens.jdbc.binder.StatementBinder;
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics;
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics.Phase;
+import uk.co.lukestevens.jdbc.metrics.SlowQueryLog;
+import uk.co.lukestevens.jdbc.result.BatchResult;
+import uk.co.lukestevens.jdbc.result.CursorDatabaseResult;
 import uk.co.lukestevens.jdbc.result.WrappedDatabaseResult;
 
 /**
@@ -22,6 +32,17 @@ import uk.co.lukestevens.jdbc.result.WrappedDatabaseResult;
  */
 public abstract class AbstractDatabase implements Database {
 	
+	/**
+	 * The default number of rows sent to the database in each batch by
+	 * {@link #updateBatch(String, Iterable)}
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	
+	private volatile DatabaseMetrics metrics;
+	private volatile SlowQueryLog slowQueryLog;
+	private final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<>();
+	private volatile long warmUpNanos = -1;
+	
 	/**
 	 * @return Gets a connection to the database
 	 * @throws SQLException If a database error occurs
@@ -42,41 +63,550 @@ public abstract class AbstractDatabase implements Database {
 	 */
 	protected PreparedStatement prepareStatement(Connection conn, String query, Object...params) throws SQLException {
 		PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+		bindParameters(stmt, params);
+		return stmt;
+	}
+	
+	/**
+	 * Prepare a statement from a raw SQL query, binding
+	 * parameters directly to the statement
+	 * @param conn The database connection this statement will be 
+	 * used for.
+	 * @param query The SQL query to prepare
+	 * @param binder Used to bind parameters to the statement
+	 * @return A prepared statement that can be used to query the database
+	 * @throws SQLException If a database error occurs or this method is
+	 * called with a closed connection
+	 */
+	protected PreparedStatement prepareStatement(Connection conn, String query, StatementBinder binder) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+		binder.bind(stmt);
+		return stmt;
+	}
+	
+	/**
+	 * Substitute parameters into a prepared statement, using the binder
+	 * for each parameter's class from {@link ParameterBinders}. Enums are bound
+	 * using their string value, and dates are bound as timestamps.
+	 * @param stmt The statement to bind the parameters to
+	 * @param params A variable array of parameters to substitute
+	 * into the statement
+	 * @throws SQLException If a database error occurs
+	 */
+	protected void bindParameters(PreparedStatement stmt, Object...params) throws SQLException {
 		for (int i = 0; i < params.length; i++) {
-			Object o = params[i];
-			if(o != null && o.getClass().isEnum()) {
-				o = o.toString();
-			}
-			
-			if(Date.class.isInstance(o)) {
-				stmt.setObject(i + 1, o, Types.TIMESTAMP);
+			ParameterBinders.bind(stmt, i + 1, params[i]);
+		}
+	}
+
+	/**
+	 * Sets the metrics used to record how long each phase of
+	 * a query or update takes
+	 * @param metrics The metrics to record to, or null to stop recording
+	 */
+	public void setMetrics(DatabaseMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return The metrics used to record how long each phase of a
+	 * query or update takes, or null if they are not recorded
+	 */
+	public DatabaseMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Sets the log used to record statements that are slow to execute or read
+	 * @param slowQueryLog The log to record to, or null to stop recording
+	 */
+	public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+		this.slowQueryLog = slowQueryLog;
+	}
+	
+	/**
+	 * @return The log used to record statements that are slow to execute
+	 * or read, or null if they are not recorded
+	 */
+	public SlowQueryLog getSlowQueryLog() {
+		return slowQueryLog;
+	}
+	
+	/**
+	 * Creates a warm-up for this database, to open connections and
+	 * run hot statements before it serves requests
+	 * @return A new warm-up, which is started with {@link WarmUp#run()}
+	 */
+	public WarmUp warmUp() {
+		return new WarmUp(this);
+	}
+	
+	/**
+	 * @return Whether a warm-up of this database has finished
+	 */
+	public boolean isReady() {
+		return warmUpNanos >= 0;
+	}
+	
+	/**
+	 * @return How long the warm-up of this database took in milliseconds,
+	 * or -1 if it has not finished
+	 */
+	public long getWarmUpDuration() {
+		long nanos = warmUpNanos;
+		return nanos < 0? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+	
+	void warmedUp(long nanos) {
+		this.warmUpNanos = nanos;
+		DatabaseMetrics metrics = this.metrics;
+		if(metrics != null) {
+			metrics.recordWarmUp(nanos);
+		}
+	}
+	
+	<T> T timed(Phase phase, String query, SqlCall<T> call) throws SQLException {
+		return timed(phase, query, null, call);
+	}
+	
+	/**
+	 * Makes a call, recording how long it took if metrics or a slow query log are set
+	 * @param phase The phase of the database call being made
+	 * @param query The SQL query being executed
+	 * @param params The parameters bound to the query, or null if they are not known
+	 * @param call The call to make
+	 * @return The result of the call
+	 * @throws SQLException If a database error occurs
+	 */
+	<T> T timed(Phase phase, String query, Object[] params, SqlCall<T> call) throws SQLException {
+		DatabaseMetrics metrics = this.metrics;
+		SlowQueryLog slowQueryLog = this.slowQueryLog;
+		if(metrics == null && slowQueryLog == null) {
+			return call.call();
+		}
+		
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			T result = call.call();
+			success = true;
+			return result;
+		} finally {
+			long nanos = System.nanoTime() - start;
+			if(metrics != null) {
+				metrics.record(phase, query, nanos, success);
 			}
-			else {
-				stmt.setObject(i + 1, o);
+			if(slowQueryLog != null) {
+				slowQueryLog.record(phase, query, params, nanos, -1);
 			}
 		}
-		return stmt;
+	}
+	
+	/**
+	 * Gets a connection to the database to execute a query with
+	 * @param query The SQL query that will be executed
+	 * @return A connection to the database
+	 * @throws SQLException If a database error occurs
+	 */
+	Connection connect(String query) throws SQLException {
+		return timed(Phase.ACQUIRE, query, this::getConnection);
 	}
 
 	@Override
 	public DatabaseResult query(String query, Object...params) throws SQLException {
-		Connection conn = this.getConnection();
-		PreparedStatement stmt = prepareStatement(conn, query, params);
-		ResultSet rs = stmt.executeQuery();
-		return new WrappedDatabaseResult(conn, rs);
+		Connection conn = this.connect(query);
+		try {
+			PreparedStatement stmt = timed(Phase.PREPARE, query, () -> prepareStatement(conn, query, params));
+			return executeQuery(conn, stmt, query, params);
+		} catch (SQLException | RuntimeException e) {
+			conn.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Queries the database, binding parameters directly to the statement.
+	 * This can be used to bind primitive values without boxing them:
+	 * <pre>
+	 * database.queryWith("select * from foo where id=?", stmt -&gt; stmt.setLong(1, id));
+	 * </pre>
+	 * @param query The SQL query to execute
+	 * @param binder Used to bind parameters to the statement
+	 * @return The result of the query
+	 * @throws SQLException If a database error occurs
+	 */
+	public DatabaseResult queryWith(String query, StatementBinder binder) throws SQLException {
+		Connection conn = this.connect(query);
+		try {
+			PreparedStatement stmt = timed(Phase.PREPARE, query, () -> prepareStatement(conn, query, binder));
+			return executeQuery(conn, stmt, query, null);
+		} catch (SQLException | RuntimeException e) {
+			conn.close();
+			throw e;
+		}
+	}
+	
+	WrappedDatabaseResult executeQuery(Connection conn, PreparedStatement stmt, String query, Object[] params) throws SQLException {
+		ResultSet rs = timed(Phase.EXECUTE, query, params, stmt::executeQuery);
+		return measured(new WrappedDatabaseResult(conn, stmt, rs), query, params);
+	}
+	
+	/**
+	 * Records how long a result is read for, and how many rows are read, 
+	 * once the result is closed
+	 * @param result The result of the query
+	 * @param query The SQL query that was executed
+	 * @param params The parameters bound to the query, or null if they are not known
+	 * @return The result
+	 */
+	WrappedDatabaseResult measured(WrappedDatabaseResult result, String query, Object[] params) {
+		DatabaseMetrics metrics = this.metrics;
+		SlowQueryLog slowQueryLog = this.slowQueryLog;
+		if(metrics != null || slowQueryLog != null) {
+			long start = System.nanoTime();
+			result.onClose(() -> {
+				long nanos = System.nanoTime() - start;
+				if(metrics != null) {
+					metrics.record(Phase.ITERATE, query, nanos, true);
+					metrics.recordRows(query, result.getRowCount());
+				}
+				if(slowQueryLog != null) {
+					slowQueryLog.record(Phase.ITERATE, query, params, nanos, result.getRowCount());
+				}
+			});
+		}
+		return result;
+	}
+
+	/**
+	 * Executes a query using a forward-only, read-only cursor, so rows
+	 * are fetched from the database in blocks as the result is iterated
+	 * rather than all at once. The result should be consumed using 
+	 * {@link WrappedDatabaseResult#stream(uk.co.lukestevens.db.ResultParser)} or
+	 * {@link WrappedDatabaseResult#iterator(uk.co.lukestevens.db.ResultParser)}
+	 * to keep memory usage flat for large results.
+	 * @param query The SQL query to execute
+	 * @param fetchSize The number of rows to fetch from the database at a time
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @return A result wrapping the open cursor. Closing it will close
+	 * the statement and connection.
+	 * @throws SQLException If a database error occurs
+	 */
+	public WrappedDatabaseResult openCursor(String query, int fetchSize, Object...params) throws SQLException {
+		Connection conn = this.connect(query);
+		try {
+			// Some drivers, such as PostgreSQL, only use the fetch size within a transaction
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			
+			PreparedStatement stmt = timed(Phase.PREPARE, query, () -> {
+				PreparedStatement prepared = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				bindParameters(prepared, params);
+				prepared.setFetchSize(fetchSize);
+				return prepared;
+			});
+			ResultSet rs = timed(Phase.EXECUTE, query, params, stmt::executeQuery);
+			return measured(new CursorDatabaseResult(conn, stmt, rs, autoCommit), query, params);
+		} catch (SQLException | RuntimeException e) {
+			conn.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Iterates over the rows of a query a page at a time, continuing each page after
+	 * the key of the last row rather than using an offset. Each page is fetched on a
+	 * short-lived connection when the previous page has been read.
+	 * @param query The base SQL query, which is wrapped in a subquery for each page
+	 * @param keyColumn The label of a unique, non-null column to order rows by
+	 * @param pageSize The number of rows to fetch in each page
+	 * @param parser The parser used to convert each row
+	 * @param params A variable array of parameters to substitute
+	 * into the base query
+	 * @return A lazy iterator over the parsed rows
+	 */
+	public <T> KeysetIterator<T> iterateByKey(String query, String keyColumn, int pageSize, ResultParser<T> parser, Object...params) {
+		return this.iterateByKey(query, Collections.singletonList(keyColumn), pageSize, parser, params);
+	}
+	
+	/**
+	 * Iterates over the rows of a query a page at a time, continuing each page after
+	 * the key of the last row rather than using an offset. Each page is fetched on a
+	 * short-lived connection when the previous page has been read.<br>
+	 * Pages are limited using <code>LIMIT</code>, which is supported by most databases.
+	 * @param query The base SQL query, which is wrapped in a subquery for each page
+	 * @param keyColumns The labels of the columns to order rows by, which together
+	 * must be unique and non-null
+	 * @param pageSize The number of rows to fetch in each page
+	 * @param parser The parser used to convert each row
+	 * @param params A variable array of parameters to substitute
+	 * into the base query
+	 * @return A lazy iterator over the parsed rows
+	 */
+	public <T> KeysetIterator<T> iterateByKey(String query, List<String> keyColumns, int pageSize, ResultParser<T> parser, Object...params) {
+		return new KeysetIterator<>(this, query, keyColumns, pageSize, parser, params);
 	}
 
 	@Override
 	public Optional<Long> update(String query, Object...params) throws SQLException {
-		try(Connection conn = this.getConnection()) {
-			PreparedStatement stmt = prepareStatement(conn, query, params);
-			stmt.executeUpdate();
+		try(Connection conn = this.connect(query)) {
+			PreparedStatement stmt = timed(Phase.PREPARE, query, () -> prepareStatement(conn, query, params));
+			return executeUpdate(stmt, query, params);
+		}
+	}
+	
+	/**
+	 * Updates the database, binding parameters directly to the statement.
+	 * This can be used to bind primitive values without boxing them:
+	 * <pre>
+	 * database.updateWith("update foo set value=? where id=?", stmt -&gt; {
+	 * 	stmt.setInt(1, value);
+	 * 	stmt.setLong(2, id);
+	 * });
+	 * </pre>
+	 * @param query The SQL query to execute
+	 * @param binder Used to bind parameters to the statement
+	 * @return The generated id from the query, if one exists
+	 * @throws SQLException If a database error occurs
+	 */
+	public Optional<Long> updateWith(String query, StatementBinder binder) throws SQLException {
+		try(Connection conn = this.connect(query)) {
+			PreparedStatement stmt = timed(Phase.PREPARE, query, () -> prepareStatement(conn, query, binder));
+			return executeUpdate(stmt, query, null);
+		}
+	}
+	
+	Optional<Long> executeUpdate(PreparedStatement stmt, String query, Object[] params) throws SQLException {
+		timed(Phase.EXECUTE, query, params, stmt::executeUpdate);
+		
+		ResultSet rs = stmt.getGeneratedKeys();
+		return rs.next()?
+				Optional.of(rs.getLong(1)) :
+				Optional.empty();
+	}
+	
+	/**
+	 * Executes the same update query for every row of parameters, using JDBC
+	 * batches of {@value #DEFAULT_BATCH_SIZE} rows. All rows are updated on
+	 * a single connection in one transaction, which is rolled back if any batch fails.
+	 * @param query The SQL query to execute
+	 * @param rows The parameters to substitute into the query for each row
+	 * @return The generated keys and update counts for every row
+	 * @throws SQLException If a database error occurs
+	 */
+	public BatchResult updateBatch(String query, Iterable<Object[]> rows) throws SQLException {
+		return this.updateBatch(query, rows, DEFAULT_BATCH_SIZE);
+	}
+	
+	/**
+	 * Executes the same update query for every row of parameters, using JDBC
+	 * batches of the given size. All rows are updated on a single connection
+	 * in one transaction, which is rolled back if any batch fails.
+	 * @param query The SQL query to execute
+	 * @param rows The parameters to substitute into the query for each row
+	 * @param batchSize The maximum number of rows to send to the database at once
+	 * @return The generated keys and update counts for every row
+	 * @throws SQLException If a database error occurs
+	 */
+	public BatchResult updateBatch(String query, Iterable<Object[]> rows, int batchSize) throws SQLException {
+		if(batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1");
+		}
+		
+		try(Connection conn = this.connect(query)) {
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			Throwable failure = null;
+			try(PreparedStatement stmt = timed(Phase.PREPARE, query, 
+					() -> conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS))) {
+				BatchResult result = new BatchResult();
+				int pending = 0;
+				for(Object[] row : rows) {
+					bindParameters(stmt, row);
+					stmt.addBatch();
+					if(++pending == batchSize) {
+						executeBatch(stmt, result, query);
+						pending = 0;
+					}
+				}
+				if(pending > 0) {
+					executeBatch(stmt, result, query);
+				}
+				
+				conn.commit();
+				return result;
+			} catch (Throwable e) {
+				failure = e;
+				try {
+					conn.rollback();
+				} catch (SQLException rollbackError) {
+					e.addSuppressed(rollbackError);
+				}
+				throw e;
+			} finally {
+				// As with inTransaction, a failure to restore the connection must not hide why the batch failed
+				SQLException restoreError = attempt(null, () -> {
+					conn.setAutoCommit(autoCommit);
+					return null;
+				});
+				if(restoreError != null) {
+					if(failure == null) {
+						throw restoreError;
+					}
+					failure.addSuppressed(restoreError);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Executes the current batch of a statement, and adds the update counts
+	 * and generated keys to the result
+	 * @param stmt The statement to execute
+	 * @param result The result of the whole batch update
+	 * @param query The SQL query being executed
+	 * @throws SQLException If a database error occurs
+	 */
+	void executeBatch(PreparedStatement stmt, BatchResult result, String query) throws SQLException {
+		result.addUpdateCounts(timed(Phase.EXECUTE, query, stmt::executeBatch));
+		try(ResultSet rs = stmt.getGeneratedKeys()) {
+			while(rs != null && rs.next()) {
+				result.addGeneratedKey(rs.getLong(1));
+			}
+		}
+	}
+	
+	/**
+	 * Runs a callback inside a transaction, committing once the callback returns
+	 * or rolling back if it throws an exception. Every query and update made through
+	 * the transaction shares a single connection.<br>
+	 * If this thread is already inside a transaction of this database, the callback
+	 * joins it using a savepoint, so only the callback's work is rolled back if it fails.
+	 * @param callback The work to run inside the transaction
+	 * @return The result of the callback
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be read
+	 */
+	public <T> T inTransaction(TransactionCallback<T> callback) throws SQLException, IOException {
+		return this.inTransaction(Transaction.DEFAULT_ISOLATION, false, callback);
+	}
+	
+	/**
+	 * Runs a callback inside a transaction, committing once the callback returns
+	 * or rolling back if it throws an exception. Every query and update made through
+	 * the transaction shares a single connection.<br>
+	 * If this thread is already inside a transaction of this database, the callback
+	 * joins it using a savepoint, so only the callback's work is rolled back if it fails.
+	 * The isolation level and read-only hint are then ignored, as they cannot be
+	 * changed part way through a transaction.
+	 * @param isolation The transaction isolation level, one of the <code>TRANSACTION_</code>
+	 * constants of {@link Connection}, or {@link Transaction#DEFAULT_ISOLATION}
+	 * @param readOnly Hints to the driver that the transaction will not update the database,
+	 * which some databases use to avoid locking
+	 * @param callback The work to run inside the transaction
+	 * @return The result of the callback
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be read
+	 */
+	public <T> T inTransaction(int isolation, boolean readOnly, TransactionCallback<T> callback) throws SQLException, IOException {
+		Transaction current = currentTransaction.get();
+		if(current != null) {
+			return current.inTransaction(callback);
+		}
+		
+		try(Connection conn = this.connect(DatabaseMetrics.TRANSACTION)) {
+			boolean autoCommit = conn.getAutoCommit();
+			boolean wasReadOnly = conn.isReadOnly();
+			int previousIsolation = conn.getTransactionIsolation();
 			
-			ResultSet rs = stmt.getGeneratedKeys();
-			return rs.next()?
-					Optional.of(rs.getLong(1)) :
-					Optional.empty();
+			conn.setAutoCommit(false);
+			if(readOnly) {
+				conn.setReadOnly(true);
+			}
+			if(isolation != Transaction.DEFAULT_ISOLATION && isolation != previousIsolation) {
+				conn.setTransactionIsolation(isolation);
+			}
+			
+			Transaction transaction = new Transaction(this, conn);
+			currentTransaction.set(transaction);
+			Throwable failure = null;
+			try {
+				T result = callback.execute(transaction);
+				if(transaction.isRollbackOnly()) {
+					conn.rollback();
+				}
+				else {
+					conn.commit();
+				}
+				return result;
+			} catch (Throwable e) {
+				// Errors must be rolled back too, as restoring auto commit would commit the work
+				failure = e;
+				try {
+					conn.rollback();
+				} catch (SQLException rollbackError) {
+					e.addSuppressed(rollbackError);
+				}
+				throw e;
+			} finally {
+				transaction.end();
+				currentTransaction.remove();
+				
+				// Pooled connections must be returned as they were borrowed. On a broken
+				// connection these can fail too, but must not hide why the transaction failed.
+				SQLException restoreError = attempt(null, () -> {
+					if(conn.getTransactionIsolation() != previousIsolation) {
+						conn.setTransactionIsolation(previousIsolation);
+					}
+					return null;
+				});
+				if(readOnly != wasReadOnly) {
+					restoreError = attempt(restoreError, () -> {
+						conn.setReadOnly(wasReadOnly);
+						return null;
+					});
+				}
+				restoreError = attempt(restoreError, () -> {
+					conn.setAutoCommit(autoCommit);
+					return null;
+				});
+				if(restoreError != null) {
+					if(failure == null) {
+						throw restoreError;
+					}
+					failure.addSuppressed(restoreError);
+				}
+			}
 		}
 	}
+	
+	/**
+	 * Makes a call, collecting its failure rather than throwing it,
+	 * so that several calls can all be attempted
+	 * @param error The failure of earlier calls, or null if they succeeded
+	 * @param call The call to make
+	 * @return The failure of this and earlier calls, or null if they all succeeded
+	 */
+	static SQLException attempt(SQLException error, SqlCall<?> call) {
+		try {
+			call.call();
+			return error;
+		} catch (SQLException e) {
+			if(error == null) {
+				return e;
+			}
+			error.addSuppressed(e);
+			return error;
+		}
+	}
+	
+	/**
+	 * A call to the database that can be timed
+	 */
+	@FunctionalInterface
+	interface SqlCall<T> {
+		T call() throws SQLException;
+	}
 
 }
@@ -0,0 +1,263 @@
+package uk.co.lukestevens.jdbc;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.db.ResultParser;
+
+/**
+ * A wrapper around an {@link AbstractDatabase} that runs queries and updates
+ * on an executor, returning a {@link CompletableFuture} rather than blocking
+ * the calling thread.<br>
+ * The number of calls in flight is bounded. Once the bound is reached, new calls
+ * wait up to the submit timeout for space before failing with a
+ * {@link RejectedExecutionException}. Cancelling a returned future cancels the
+ * statement it is running.
+ *
+ * @author luke.stevens
+ */
+public class AsyncDatabase implements Closeable {
+
+	private final AbstractDatabase database;
+	private final ExecutorService executor;
+	private final int maxInFlight;
+	private final Semaphore permits;
+	private final long submitTimeout;
+
+	/**
+	 * Creates a new async database running on a fixed size thread pool.
+	 * Calls are rejected as soon as all threads are busy and the queue is full.
+	 * @param database The database to run calls against
+	 * @param threads The number of threads to run calls on
+	 * @param queueSize The number of calls that can wait for a thread
+	 */
+	public AsyncDatabase(AbstractDatabase database, int threads, int queueSize) {
+		this(database, threads, queueSize, 0);
+	}
+
+	/**
+	 * Creates a new async database running on a fixed size thread pool
+	 * @param database The database to run calls against
+	 * @param threads The number of threads to run calls on
+	 * @param queueSize The number of calls that can wait for a thread
+	 * @param submitTimeout How long in milliseconds a call waits for space in
+	 * the queue before it is rejected
+	 */
+	public AsyncDatabase(AbstractDatabase database, int threads, int queueSize, long submitTimeout) {
+		this(database, createThreadPool(threads, queueSize), threads + queueSize, submitTimeout);
+	}
+
+	/**
+	 * Creates a new async database running on the given executor
+	 * @param database The database to run calls against
+	 * @param executor The executor to run calls on. This will be shut down
+	 * when this database is closed.
+	 * @param maxInFlight The maximum number of calls that can be running or waiting to run
+	 * @param submitTimeout How long in milliseconds a call waits for the number of calls
+	 * in flight to drop below the maximum before it is rejected
+	 */
+	public AsyncDatabase(AbstractDatabase database, ExecutorService executor, int maxInFlight, long submitTimeout) {
+		this.database = database;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.permits = new Semaphore(maxInFlight);
+		this.submitTimeout = submitTimeout;
+	}
+
+	/**
+	 * Creates a new async database that runs each call on a new virtual thread.
+	 * This requires Java 21 or later.
+	 * @param database The database to run calls against
+	 * @param maxInFlight The maximum number of calls that can be running at once
+	 * @param submitTimeout How long in milliseconds a call waits for the number of calls
+	 * in flight to drop below the maximum before it is rejected
+	 * @return A new async database
+	 * @throws UnsupportedOperationException If virtual threads are not supported
+	 */
+	public static AsyncDatabase withVirtualThreads(AbstractDatabase database, int maxInFlight, long submitTimeout) {
+		ExecutorService executor;
+		try {
+			executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			Throwable cause = e instanceof InvocationTargetException? e.getCause() : e;
+			throw new UnsupportedOperationException("Virtual threads are not supported by this JVM", cause);
+		}
+		return new AsyncDatabase(database, executor, maxInFlight, submitTimeout);
+	}
+
+	static ExecutorService createThreadPool(int threads, int queueSize) {
+		AtomicInteger count = new AtomicInteger();
+		// The queue never fills, as the number of calls in flight is bounded by the permits
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+				runnable -> {
+					Thread thread = new Thread(runnable, "db-lib-async-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/**
+	 * Asynchronously queries the database, parsing every row of the result
+	 * @param query The SQL query to execute
+	 * @param parser The parser used to convert each row
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @return A future completed with the parsed rows
+	 */
+	public <T> CompletableFuture<List<T>> queryAsync(String query, ResultParser<T> parser, Object...params) {
+		return submit(task -> {
+			try(DatabaseResult result = database.queryWith(query, stmt -> {
+				task.setStatement(stmt);
+				database.bindParameters(stmt, params);
+			})) {
+				return result.parseResultSet(parser);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronously updates the database
+	 * @param query The SQL query to execute
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @return A future completed with the generated id from the query, if one exists
+	 */
+	public CompletableFuture<Optional<Long>> updateAsync(String query, Object...params) {
+		return submit(task -> database.updateWith(query, stmt -> {
+			task.setStatement(stmt);
+			database.bindParameters(stmt, params);
+		}));
+	}
+
+	/**
+	 * Submits a call to the executor, if the number of calls in flight allows it
+	 * @param call The call to make
+	 * @return A future completed with the result of the call
+	 */
+	<T> CompletableFuture<T> submit(AsyncCall<T> call) {
+		AsyncTask<T> task = new AsyncTask<>(call);
+		try {
+			if(!permits.tryAcquire(submitTimeout, TimeUnit.MILLISECONDS)) {
+				task.completeExceptionally(new RejectedExecutionException(
+						"Too many database calls in flight"));
+				return task;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			task.completeExceptionally(e);
+			return task;
+		}
+
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			task.completeExceptionally(e);
+		}
+		return task;
+	}
+
+	/**
+	 * @return The number of calls currently running or waiting to run
+	 */
+	public int getInFlight() {
+		return maxInFlight - permits.availablePermits();
+	}
+
+	/**
+	 * Shuts down the executor calls are run on. Calls already submitted will still be run.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	/**
+	 * A call to make against the database
+	 */
+	@FunctionalInterface
+	interface AsyncCall<T> {
+		T execute(AsyncTask<T> task) throws Exception;
+	}
+
+	/**
+	 * A future for a call which is run by the executor, and
+	 * cancels any running statement when cancelled.
+	 */
+	class AsyncTask<T> extends CompletableFuture<T> implements Runnable {
+
+		private final AsyncCall<T> call;
+		private volatile Statement statement;
+
+		AsyncTask(AsyncCall<T> call) {
+			this.call = call;
+		}
+
+		/**
+		 * Records the statement being executed, so it can be cancelled
+		 * @param statement The statement being executed
+		 * @throws SQLException If the statement cannot be cancelled
+		 */
+		void setStatement(Statement statement) throws SQLException {
+			this.statement = statement;
+			if(this.isCancelled()) {
+				statement.cancel();
+			}
+		}
+
+		@Override
+		public void run() {
+			T result = null;
+			Throwable error = null;
+			try {
+				if(!this.isDone()) {
+					result = call.execute(this);
+				}
+			} catch (Throwable e) {
+				error = e;
+			} finally {
+				statement = null;
+				// Release before completing, so dependent stages don't count as in flight
+				permits.release();
+			}
+
+			if(error != null) {
+				this.completeExceptionally(error);
+			}
+			else {
+				this.complete(result);
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			Statement current = statement;
+			if(cancelled && current != null) {
+				try {
+					current.cancel();
+				} catch (SQLException e) {
+					// The statement may have already completed
+				}
+			}
+			return cancelled;
+		}
+
+	}
+
+}
@@ -0,0 +1,441 @@
+package uk.co.lukestevens.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import uk.co.lukestevens.jdbc.binder.ParameterBinders;
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics.Phase;
+import uk.co.lukestevens.jdbc.result.BulkInsertResult;
+
+/**
+ * Inserts large numbers of rows into a table using multi-row
+ * <code>INSERT ... VALUES (...), (...)</code> statements, which need far fewer
+ * round trips to the database than inserting a row at a time.<br>
+ * Rows are inserted in chunks sized to stay under the driver's limit on bound
+ * parameters, and the statement for each chunk size is only prepared once per
+ * connection. Only a few chunks are held in memory at once, so any number of
+ * rows can be inserted from an iterator or stream. Chunks can be inserted on
+ * several connections in parallel.<br>
+ * With a single connection, the default, all rows are inserted in one transaction,
+ * which is rolled back if any chunk fails. With more than one connection, each
+ * connection inserts its chunks in its own transaction, so the insert is not atomic.
+ * Every connection is rolled back if a chunk fails, but the connections are committed
+ * one at a time, so if a commit fails the rows of connections already committed are kept.
+ *
+ * @author luke.stevens
+ */
+public class BulkInserter {
+
+	private static final Logger LOGGER = Logger.getLogger(BulkInserter.class.getName());
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	/**
+	 * The default maximum number of parameters bound to each statement,
+	 * below the limits of SQL Server (2100) and most other drivers
+	 */
+	public static final int DEFAULT_MAX_PARAMETERS = 2000;
+
+	/**
+	 * The default maximum number of rows inserted by each statement
+	 */
+	public static final int DEFAULT_MAX_ROWS = 1000;
+
+	private final AbstractDatabase database;
+	private final String table;
+	private final List<String> columns;
+	private final Map<Integer, String> statements = new ConcurrentHashMap<>();
+
+	private int maxParameters = DEFAULT_MAX_PARAMETERS;
+	private int maxRows = DEFAULT_MAX_ROWS;
+	private int parallelism = 1;
+
+	/**
+	 * Creates a new bulk inserter
+	 * @param database The database to insert rows into
+	 * @param table The table to insert rows into. This is added to the SQL
+	 * as given, so must not come from untrusted input.
+	 * @param columns The columns to insert, in the order of the values in each row.
+	 * These are added to the SQL as given, so must not come from untrusted input.
+	 */
+	public BulkInserter(AbstractDatabase database, String table, String...columns) {
+		if(columns.length == 0) {
+			throw new IllegalArgumentException("At least one column is required");
+		}
+		this.database = database;
+		this.table = table;
+		this.columns = Collections.unmodifiableList(Arrays.asList(columns.clone()));
+	}
+
+	/**
+	 * Inserts every row
+	 * @param rows The values of each row, in the order of the columns
+	 * @return The number of rows inserted, and how long they took
+	 * @throws SQLException If a database error occurs
+	 */
+	public BulkInsertResult insert(Iterable<Object[]> rows) throws SQLException {
+		return this.insert(rows.iterator());
+	}
+
+	/**
+	 * Inserts every row of a stream, reading the stream as rows are inserted
+	 * @param rows The values of each row, in the order of the columns
+	 * @return The number of rows inserted, and how long they took
+	 * @throws SQLException If a database error occurs
+	 */
+	public BulkInsertResult insert(Stream<Object[]> rows) throws SQLException {
+		return this.insert(rows.iterator());
+	}
+
+	/**
+	 * Inserts every row of an iterator, reading the iterator as rows are inserted
+	 * @param rows The values of each row, in the order of the columns
+	 * @return The number of rows inserted, and how long they took
+	 * @throws SQLException If a database error occurs
+	 */
+	public BulkInsertResult insert(Iterator<Object[]> rows) throws SQLException {
+		long start = System.nanoTime();
+		int chunkSize = this.getChunkSize();
+		String query = this.getStatement(chunkSize);
+
+		List<ChunkWriter> writers = new ArrayList<>(parallelism);
+		try {
+			for(int i = 0; i < parallelism; i++) {
+				writers.add(new ChunkWriter(database.connect(query), chunkSize));
+			}
+
+			if(writers.size() == 1) {
+				ChunkWriter writer = writers.get(0);
+				Object[][] chunk;
+				while((chunk = this.nextChunk(rows, chunkSize)) != null) {
+					writer.write(chunk);
+				}
+			}
+			else {
+				this.insertParallel(rows, chunkSize, writers);
+			}
+
+			for(ChunkWriter writer : writers) {
+				writer.conn.commit();
+				writer.committed = true;
+			}
+		} catch (SQLException | RuntimeException e) {
+			long committedRows = 0;
+			for(ChunkWriter writer : writers) {
+				if(writer.committed) {
+					committedRows += writer.rowCount;
+					continue;
+				}
+				try {
+					writer.conn.rollback();
+				} catch (SQLException rollbackError) {
+					e.addSuppressed(rollbackError);
+				}
+			}
+			if(committedRows > 0) {
+				LOGGER.warning("Bulk insert into " + table + " failed after " + committedRows
+						+ " rows were already committed on other connections");
+			}
+			throw e;
+		} finally {
+			for(ChunkWriter writer : writers) {
+				writer.close();
+			}
+		}
+
+		long rowCount = 0, statementCount = 0;
+		for(ChunkWriter writer : writers) {
+			rowCount += writer.rowCount;
+			statementCount += writer.statementCount;
+		}
+		BulkInsertResult result = new BulkInsertResult(rowCount, statementCount, System.nanoTime() - start);
+		LOGGER.fine(() -> result + " into " + table);
+		return result;
+	}
+
+	/**
+	 * Reads chunks of rows on this thread, and inserts them on a thread for each
+	 * connection. Only a couple of chunks per connection are queued, so reading waits
+	 * for inserting to catch up rather than holding every row in memory.
+	 */
+	void insertParallel(Iterator<Object[]> rows, int chunkSize, List<ChunkWriter> writers) throws SQLException {
+		Object[][] end = new Object[0][];
+		BlockingQueue<Object[][]> queue = new ArrayBlockingQueue<>(writers.size() * 2);
+		ExecutorService executor = Executors.newFixedThreadPool(writers.size(), runnable -> {
+			Thread thread = new Thread(runnable, "db-lib-bulk-insert-" + THREAD_COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try {
+			List<Future<?>> futures = new ArrayList<>(writers.size());
+			for(ChunkWriter writer : writers) {
+				futures.add(executor.submit(() -> {
+					Object[][] chunk;
+					while((chunk = queue.take()) != end) {
+						writer.write(chunk);
+					}
+					return null;
+				}));
+			}
+
+			Object[][] chunk;
+			while((chunk = this.nextChunk(rows, chunkSize)) != null) {
+				offer(queue, chunk, futures);
+			}
+			for(int i = 0; i < writers.size(); i++) {
+				offer(queue, end, futures);
+			}
+
+			for(Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					throw failure(future);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while inserting rows", e);
+		} catch (SQLException | RuntimeException e) {
+			// Writers may be blocked on each other's locks, so stop any running statements
+			for(ChunkWriter writer : writers) {
+				writer.cancel();
+			}
+			throw e;
+		} finally {
+			// Wait for writers to stop before their connections are rolled back
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Waits for space to queue a chunk, failing as soon as any writer fails
+	 */
+	static void offer(BlockingQueue<Object[][]> queue, Object[][] chunk, List<Future<?>> futures) throws SQLException, InterruptedException {
+		while(!queue.offer(chunk, 10, TimeUnit.MILLISECONDS)) {
+			for(Future<?> future : futures) {
+				if(future.isDone()) {
+					throw failure(future);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The exception thrown by a writer that has finished early
+	 */
+	static SQLException failure(Future<?> future) throws InterruptedException {
+		try {
+			future.get();
+			return new SQLException("Bulk insert finished before all rows were inserted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof SQLException) {
+				return (SQLException) cause;
+			}
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			return new SQLException(cause);
+		}
+	}
+
+	/**
+	 * @return The next chunk of up to chunkSize rows, or null if there are no more rows
+	 */
+	Object[][] nextChunk(Iterator<Object[]> rows, int chunkSize) {
+		if(!rows.hasNext()) {
+			return null;
+		}
+		Object[][] chunk = new Object[chunkSize][];
+		int size = 0;
+		while(size < chunkSize && rows.hasNext()) {
+			Object[] row = rows.next();
+			if(row.length != columns.size()) {
+				throw new IllegalArgumentException("Expected " + columns.size()
+						+ " values for each row but found " + row.length);
+			}
+			chunk[size++] = row;
+		}
+		return size == chunkSize? chunk : Arrays.copyOf(chunk, size);
+	}
+
+	/**
+	 * @return The number of rows inserted by each full statement,
+	 * limited by both the maximum rows and maximum parameters
+	 */
+	public int getChunkSize() {
+		return Math.max(1, Math.min(maxRows, maxParameters / columns.size()));
+	}
+
+	/**
+	 * @param rows The number of rows to insert
+	 * @return The SQL to insert that many rows in one statement
+	 */
+	String getStatement(int rows) {
+		return statements.computeIfAbsent(rows, this::createStatement);
+	}
+
+	String createStatement(int rows) {
+		StringBuilder values = new StringBuilder("(");
+		for(int i = 0; i < columns.size(); i++) {
+			values.append(i == 0? "?" : ", ?");
+		}
+		values.append(')');
+
+		StringBuilder sql = new StringBuilder("INSERT INTO ")
+				.append(table)
+				.append(" (")
+				.append(String.join(", ", columns))
+				.append(") VALUES ");
+		for(int i = 0; i < rows; i++) {
+			if(i > 0) {
+				sql.append(", ");
+			}
+			sql.append(values);
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * @param maxParameters The maximum number of parameters bound to each statement.
+	 * This should be no more than the database driver's limit (default 2000).
+	 */
+	public void setMaxParameters(int maxParameters) {
+		this.maxParameters = maxParameters;
+	}
+
+	/**
+	 * @param maxRows The maximum number of rows inserted by each statement (default 1000)
+	 */
+	public void setMaxRows(int maxRows) {
+		this.maxRows = maxRows;
+	}
+
+	/**
+	 * @param parallelism The number of connections to insert chunks on at once (default 1).
+	 * Inserts on more than one connection are not atomic, as each connection commits separately.
+	 */
+	public void setParallelism(int parallelism) {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Inserts chunks on a single connection in one transaction, preparing
+	 * the statement for each chunk size once
+	 */
+	class ChunkWriter {
+
+		final Connection conn;
+		final int chunkSize;
+		final boolean autoCommit;
+		final Map<Integer, PreparedStatement> prepared = new HashMap<>();
+		volatile PreparedStatement executing;
+		long rowCount = 0;
+		long statementCount = 0;
+		boolean committed = false;
+
+		ChunkWriter(Connection conn, int chunkSize) throws SQLException {
+			this.conn = conn;
+			this.chunkSize = chunkSize;
+			try {
+				this.autoCommit = conn.getAutoCommit();
+				conn.setAutoCommit(false);
+			} catch (SQLException e) {
+				conn.close();
+				throw e;
+			}
+		}
+
+		void write(Object[][] chunk) throws SQLException {
+			// Full chunks share one statement, and a partial chunk is split into
+			// powers of two, so only a few statements are ever prepared
+			int offset = 0;
+			while(offset < chunk.length) {
+				int remaining = chunk.length - offset;
+				int size = remaining == chunkSize? remaining : Integer.highestOneBit(remaining);
+				this.execute(chunk, offset, size);
+				offset += size;
+			}
+		}
+
+		void execute(Object[][] chunk, int offset, int size) throws SQLException {
+			String query = getStatement(size);
+			PreparedStatement stmt = prepared.get(size);
+			if(stmt == null) {
+				stmt = database.timed(Phase.PREPARE, query, () -> conn.prepareStatement(query));
+				prepared.put(size, stmt);
+			}
+
+			int index = 1;
+			for(int i = offset; i < offset + size; i++) {
+				for(Object value : chunk[i]) {
+					ParameterBinders.bind(stmt, index++, value);
+				}
+			}
+			executing = stmt;
+			try {
+				database.timed(Phase.EXECUTE, query, stmt::executeUpdate);
+			} finally {
+				executing = null;
+			}
+			rowCount += size;
+			statementCount++;
+		}
+
+		void cancel() {
+			PreparedStatement stmt = executing;
+			if(stmt != null) {
+				try {
+					stmt.cancel();
+				} catch (SQLException e) {
+					LOGGER.log(Level.FINE, "Failed to cancel bulk insert statement", e);
+				}
+			}
+		}
+
+		void close() {
+			try {
+				try {
+					for(PreparedStatement stmt : prepared.values()) {
+						stmt.close();
+					}
+					conn.setAutoCommit(autoCommit);
+				} finally {
+					conn.close();
+				}
+			} catch (SQLException e) {
+				LOGGER.log(Level.WARNING, "Failed to close bulk insert connection", e);
+			}
+		}
+	}
+
+}
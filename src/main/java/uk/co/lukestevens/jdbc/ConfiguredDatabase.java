@@ -1,47 +1,293 @@
 package uk.co.lukestevens.jdbc;
 
+import java.io.Closeable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.inject.Inject;
 
 import uk.co.lukestevens.config.Config;
 
 /**
- * A database implementation using {@link AppConfig}
- * properties to connect to the database.
- * 
+ * A database implementation using {@link Config}
+ * properties to connect to the database.<br>
+ * The connection settings are read once and cached. If a refresh interval
+ * is configured, the config is also checked for changes in the background.
+ * When the settings change, for example when credentials are rotated, new
+ * connections use the new settings once a test connection succeeds. Connections
+ * already open with the old settings are left to finish, and closed if they are
+ * still open after the drain timeout.
+ *
  * @author luke.stevens
  */
-public class ConfiguredDatabase extends AbstractDatabase {
+public class ConfiguredDatabase extends AbstractDatabase implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(ConfiguredDatabase.class.getName());
 
 	private final Config config;
-	
+	private final Object lock = new Object();
+	private final List<Generation> retiring = new CopyOnWriteArrayList<>();
+	private final long refreshInterval;
+	private ScheduledExecutorService watcher;
+	private boolean closed = false;
+	private volatile Generation current;
+	private volatile long drainTimeout = 30_000;
+
 	/**
-	 * Creates a new configured database from a set of 
-	 * AppConfig properties
+	 * Creates a new configured database from a set of
+	 * Config properties
 	 * @param config The Config instance. The following properties must be specified:
 	 * <ul>
 	 * 	<li><code>database.url</code></li>
 	 * 	<li><code>database.username</code></li>
 	 * 	<li><code>database.password</code></li>
 	 * </ul>
-	 * 
+	 * The following properties are optional:
+	 * <ul>
+	 * 	<li><code>database.refresh_interval</code> - How often in milliseconds the
+	 * 	config is checked for changed connection settings, or 0 to never check (default 0).
+	 * 	The background check starts when the settings are first read.</li>
+	 * </ul>
 	 */
 	@Inject
 	public ConfiguredDatabase(Config config) {
 		this.config = config;
+		this.refreshInterval = parseInterval(config.getAsStringOrDefault("database.refresh_interval", null));
+	}
+
+	/**
+	 * @return The refresh interval in milliseconds, or 0 if it is not set or is not a number
+	 */
+	static long parseInterval(String interval) {
+		if(interval == null) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(interval.trim());
+		} catch (NumberFormatException e) {
+			LOGGER.warning("Ignoring invalid database.refresh_interval '" + interval
+					+ "', the config will not be checked for changes");
+			return 0;
+		}
 	}
 
 	@Override
 	protected Connection getConnection() throws SQLException {
-		return DriverManager.getConnection(
-				config.getAsString("database.url"), 
-				config.getAsString("database.username"), 
-				config.getAsString("database.password"));
+		Generation generation = current;
+		if(generation == null) {
+			generation = this.resolve();
+		}
+		this.drain();
+		return generation.open();
+	}
+
+	Generation resolve() {
+		synchronized(lock) {
+			if(current == null) {
+				current = new Generation(ConnectionDescriptor.fromConfig(config));
+				this.startWatcher();
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Starts checking the config for changes in the background, if a refresh
+	 * interval is configured and this database has not been closed
+	 */
+	void startWatcher() {
+		synchronized(lock) {
+			if(refreshInterval <= 0 || watcher != null || closed) {
+				return;
+			}
+			watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "db-lib-config-watcher");
+				thread.setDaemon(true);
+				return thread;
+			});
+			watcher.scheduleWithFixedDelay(this::watch, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * @return Whether the config is being checked for changes in the background
+	 */
+	boolean isWatching() {
+		synchronized(lock) {
+			return watcher != null && !watcher.isShutdown();
+		}
+	}
+
+	/**
+	 * Reads the connection settings from the config, and switches to them if they
+	 * have changed. The new settings are only used once a test connection succeeds,
+	 * so a partly updated config does not break new connections.
+	 * @return Whether the connection settings changed. This is false the first
+	 * time the settings are read.
+	 * @throws SQLException If a test connection with the new settings fails
+	 */
+	public boolean refresh() throws SQLException {
+		this.drain();
+		if(current == null) {
+			this.resolve();
+			return false;
+		}
+		ConnectionDescriptor descriptor = ConnectionDescriptor.fromConfig(config);
+		if(current.descriptor.equals(descriptor)) {
+			return false;
+		}
+
+		try(Connection conn = descriptor.openConnection()) {
+			// Only checking the new settings work
+		}
+
+		synchronized(lock) {
+			Generation old = current;
+			if(old.descriptor.equals(descriptor)) {
+				return false;
+			}
+			current = new Generation(descriptor);
+			old.retiredAt = System.nanoTime();
+			retiring.add(old);
+			LOGGER.info("Database connection settings changed from " + old.descriptor + " to " + descriptor
+					+ ", retiring " + old.open.size() + " open connections");
+			return true;
+		}
+	}
+
+	/**
+	 * Forgets connections with retired settings once they are closed, and closes
+	 * any still open after the drain timeout
+	 */
+	void drain() {
+		long timeout = TimeUnit.MILLISECONDS.toNanos(drainTimeout);
+		for(Generation generation : retiring) {
+			if(!generation.open.isEmpty() && System.nanoTime() - generation.retiredAt >= timeout) {
+				LOGGER.warning("Closing " + generation.open.size() + " connections to " + generation.descriptor
+						+ " still open after the drain timeout");
+				for(Connection conn : generation.open) {
+					try {
+						conn.close();
+					} catch (SQLException e) {
+						// The connection is being retired anyway
+					}
+				}
+				generation.open.clear();
+			}
+			if(generation.open.isEmpty()) {
+				retiring.remove(generation);
+			}
+		}
+	}
+
+	void watch() {
+		try {
+			this.refresh();
+		} catch (SQLException | RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Not switching to changed database connection settings, as a test connection failed", e);
+		}
+	}
+
+	/**
+	 * @return The connection settings used for new connections
+	 */
+	public ConnectionDescriptor getDescriptor() {
+		Generation generation = current;
+		return generation == null? this.resolve().descriptor : generation.descriptor;
+	}
+
+	/**
+	 * @return The number of connections still open with settings that have since changed
+	 */
+	public int getRetiringConnections() {
+		int count = 0;
+		for(Generation generation : retiring) {
+			count += generation.open.size();
+		}
+		return count;
+	}
+
+	/**
+	 * @param drainTimeout How long in milliseconds connections opened with old settings
+	 * can stay open after the settings change, before they are closed (default 30s)
+	 */
+	public void setDrainTimeout(long drainTimeout) {
+		this.drainTimeout = drainTimeout;
 	}
 
+	/**
+	 * Stops checking the config for changes
+	 */
+	@Override
+	public void close() {
+		synchronized(lock) {
+			closed = true;
+			if(watcher != null) {
+				watcher.shutdownNow();
+			}
+		}
+	}
 
+	/**
+	 * The connections opened with one set of connection settings
+	 */
+	static class Generation {
+
+		final ConnectionDescriptor descriptor;
+		final Set<Connection> open = ConcurrentHashMap.newKeySet();
+		volatile long retiredAt;
+
+		Generation(ConnectionDescriptor descriptor) {
+			this.descriptor = descriptor;
+		}
+
+		/**
+		 * @return A new connection, which is tracked until it is closed
+		 * @throws SQLException If a database error occurs
+		 */
+		Connection open() throws SQLException {
+			Connection connection = descriptor.openConnection();
+			open.add(connection);
+			AtomicBoolean closed = new AtomicBoolean();
+			return (Connection) Proxy.newProxyInstance(
+					Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class },
+					(proxy, method, args) -> {
+						switch (method.getName()) {
+							case "close":
+								if(closed.compareAndSet(false, true)) {
+									open.remove(connection);
+									connection.close();
+								}
+								return null;
+							case "equals":
+								return proxy == args[0];
+							case "hashCode":
+								return System.identityHashCode(proxy);
+							case "toString":
+								return connection.toString();
+							default:
+								break;
+						}
+						try {
+							return method.invoke(connection, args);
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					});
+		}
+	}
 
 }
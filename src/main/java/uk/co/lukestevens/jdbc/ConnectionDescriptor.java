@@ -0,0 +1,97 @@
+package uk.co.lukestevens.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Objects;
+
+import uk.co.lukestevens.config.Config;
+import uk.co.lukestevens.jdbc.pool.ConnectionSource;
+
+/**
+ * An immutable set of settings used to open connections to a database
+ *
+ * @author luke.stevens
+ */
+public final class ConnectionDescriptor implements ConnectionSource {
+
+	private final String url;
+	private final String username;
+	private final String password;
+
+	/**
+	 * Creates a new connection descriptor
+	 * @param url The url of the database
+	 * @param username The username of the user to use to connect to the database
+	 * @param password The password to connect to the database with
+	 */
+	public ConnectionDescriptor(String url, String username, String password) {
+		this.url = url;
+		this.username = username;
+		this.password = password;
+	}
+
+	/**
+	 * Reads the connection settings from a set of config properties
+	 * @param config The Config instance. The following properties must be specified:
+	 * <ul>
+	 * 	<li><code>database.url</code></li>
+	 * 	<li><code>database.username</code></li>
+	 * 	<li><code>database.password</code></li>
+	 * </ul>
+	 * @return A new connection descriptor
+	 */
+	public static ConnectionDescriptor fromConfig(Config config) {
+		return new ConnectionDescriptor(
+				config.getAsString("database.url"),
+				config.getAsString("database.username"),
+				config.getAsString("database.password"));
+	}
+
+	@Override
+	public Connection openConnection() throws SQLException {
+		return DriverManager.getConnection(url, username, password);
+	}
+
+	/**
+	 * @return The url of the database
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return The username used to connect to the database
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof ConnectionDescriptor)) {
+			return false;
+		}
+		ConnectionDescriptor other = (ConnectionDescriptor) obj;
+		return Objects.equals(url, other.url)
+				&& Objects.equals(username, other.username)
+				&& Objects.equals(password, other.password);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(url, username, password);
+	}
+
+	/**
+	 * @return The url and username of this descriptor. The password is not included.
+	 */
+	@Override
+	public String toString() {
+		return username + "@" + url;
+	}
+
+}
@@ -0,0 +1,302 @@
+package uk.co.lukestevens.jdbc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import uk.co.lukestevens.db.Database;
+import uk.co.lukestevens.db.DatabaseResult;
+
+/**
+ * A wrapper around an {@link AbstractDatabase} that commits concurrent updates
+ * together. Updates are queued for a writer thread, which waits briefly for more
+ * updates and then runs them all in one transaction, so many small writes share
+ * a single commit rather than each paying for their own.<br>
+ * Each update still completes with its own generated key or error. If an update
+ * fails, the transaction is rolled back and the rest of the batch is retried
+ * without it. Updates are not part of any transaction of the calling thread.
+ * Queries are run directly against the database.
+ *
+ * @author luke.stevens
+ */
+public class GroupCommitDatabase implements Database, Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(GroupCommitDatabase.class.getName());
+
+	private final AbstractDatabase database;
+	private final int maxBatch;
+	private final long maxDelayNanos;
+	private final BlockingQueue<PendingUpdate> queue;
+	private final Thread writer;
+	private volatile boolean closed = false;
+	private volatile boolean stopped = false;
+
+	private final LongAdder updates = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+
+	/**
+	 * Creates a new group commit database, starting its writer thread. Callers wait
+	 * for space once {@code 4 * maxBatch} updates are queued.
+	 * @param database The database to run updates against
+	 * @param maxBatch The maximum number of updates committed together
+	 * @param maxDelay The maximum time in milliseconds the writer waits for more
+	 * updates before committing a batch. This is added to the latency of an update
+	 * when there are few concurrent updates.
+	 */
+	public GroupCommitDatabase(AbstractDatabase database, int maxBatch, long maxDelay) {
+		if(maxBatch < 1) {
+			throw new IllegalArgumentException("Max batch must be at least 1");
+		}
+		this.database = database;
+		this.maxBatch = maxBatch;
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelay);
+		this.queue = new ArrayBlockingQueue<>(maxBatch * 4);
+
+		this.writer = new Thread(this::run, "db-lib-group-commit");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	@Override
+	public DatabaseResult query(String query, Object... params) throws SQLException {
+		return database.query(query, params);
+	}
+
+	/**
+	 * Queues an update, and waits for the batch containing it to be committed.
+	 * If the writer thread stops without committing the update, this fails
+	 * rather than waiting forever.
+	 */
+	@Override
+	public Optional<Long> update(String query, Object... params) throws SQLException {
+		CompletableFuture<Optional<Long>> update = this.updateAsync(query, params);
+		try {
+			while(true) {
+				try {
+					return update.get(100, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					if(!writer.isAlive() && !update.isDone()) {
+						throw new SQLException("Group commit writer has stopped without committing the update");
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for update to commit", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new SQLException(cause);
+		}
+	}
+
+	/**
+	 * Queues an update to be committed with other concurrent updates
+	 * @param query The SQL query to execute
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @return A future completed with the generated id from the query, if one exists,
+	 * once the batch containing it has been committed
+	 */
+	public CompletableFuture<Optional<Long>> updateAsync(String query, Object...params) {
+		PendingUpdate update = new PendingUpdate(query, params);
+		if(closed || stopped) {
+			update.reject();
+			return update;
+		}
+
+		try {
+			queue.put(update);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			update.completeExceptionally(e);
+			return update;
+		}
+
+		// The writer may have stopped while this update was being queued
+		if((closed || stopped) && queue.remove(update)) {
+			update.reject();
+		}
+		return update;
+	}
+
+	void run() {
+		List<PendingUpdate> batch = new ArrayList<>(maxBatch);
+		try {
+			while(!closed || !queue.isEmpty()) {
+				try {
+					PendingUpdate first = queue.poll(100, TimeUnit.MILLISECONDS);
+					if(first == null) {
+						continue;
+					}
+					batch.add(first);
+
+					long deadline = System.nanoTime() + maxDelayNanos;
+					while(batch.size() < maxBatch) {
+						long remaining = deadline - System.nanoTime();
+						PendingUpdate next = remaining > 0? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+						if(next == null) {
+							break;
+						}
+						batch.add(next);
+					}
+
+					this.commit(batch);
+				} catch (InterruptedException e) {
+					// Keep committing until the queue is drained
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.SEVERE, "Group commit writer failed", e);
+					for(PendingUpdate update : batch) {
+						update.completeExceptionally(e);
+					}
+				}
+				batch.clear();
+			}
+		} finally {
+			// If the writer died, for example from an Error, nothing else would complete these
+			stopped = true;
+			for(PendingUpdate update : batch) {
+				update.stop();
+			}
+			PendingUpdate update;
+			while((update = queue.poll()) != null) {
+				update.stop();
+			}
+		}
+	}
+
+	/**
+	 * Runs a batch of updates in one transaction. If an update fails, it is
+	 * completed with its error and the rest of the batch is retried without it.
+	 * @param batch The updates to run
+	 */
+	void commit(List<PendingUpdate> batch) {
+		List<PendingUpdate> remaining = new ArrayList<>(batch);
+		while(!remaining.isEmpty()) {
+			int[] failed = { -1 };
+			try {
+				List<Optional<Long>> keys = database.inTransaction(tx -> {
+					List<Optional<Long>> generated = new ArrayList<>(remaining.size());
+					for(int i = 0; i < remaining.size(); i++) {
+						PendingUpdate update = remaining.get(i);
+						failed[0] = i;
+						generated.add(tx.update(update.query, update.params));
+					}
+					failed[0] = -1;
+					return generated;
+				});
+
+				batches.increment();
+				updates.add(remaining.size());
+				for(int i = 0; i < remaining.size(); i++) {
+					remaining.get(i).complete(keys.get(i));
+				}
+				return;
+			} catch (SQLException | IOException | RuntimeException e) {
+				if(failed[0] < 0) {
+					// The connection or commit failed, rather than a single update
+					for(PendingUpdate update : remaining) {
+						update.completeExceptionally(e);
+					}
+					return;
+				}
+				remaining.remove(failed[0]).completeExceptionally(e);
+				if(!remaining.isEmpty()) {
+					retries.increment();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The number of updates committed
+	 */
+	public long getUpdates() {
+		return updates.sum();
+	}
+
+	/**
+	 * @return The number of batches committed
+	 */
+	public long getBatches() {
+		return batches.sum();
+	}
+
+	/**
+	 * @return The number of times a batch was retried after one of its updates failed
+	 */
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	/**
+	 * @return The average number of updates committed together
+	 */
+	public double getAverageBatchSize() {
+		long batches = this.getBatches();
+		return batches == 0? 0 : (double) this.getUpdates() / batches;
+	}
+
+	/**
+	 * @return Whether the writer thread has stopped, either after this database
+	 * was closed or because it failed. No more updates are accepted once it has.
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Stops accepting updates, and waits for the queued updates to be committed
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * An update waiting to be committed
+	 */
+	static class PendingUpdate extends CompletableFuture<Optional<Long>> {
+
+		final String query;
+		final Object[] params;
+
+		PendingUpdate(String query, Object[] params) {
+			this.query = query;
+			this.params = params;
+		}
+
+		void reject() {
+			this.completeExceptionally(new RejectedExecutionException("Group commit database has been closed"));
+		}
+
+		void stop() {
+			this.completeExceptionally(new RejectedExecutionException("Group commit writer has stopped"));
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+package uk.co.lukestevens.jdbc;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Encodes the key of a row as an opaque token, so a {@link KeysetIterator}
+ * can be resumed after that row. Each value is written as text with a tag
+ * for its type, rather than serialised, so tokens are safe to accept
+ * from clients.
+ *
+ * @author luke.stevens
+ */
+class KeysetCursor {
+
+	private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+	private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+	/**
+	 * @param key The values of the key columns of a row
+	 * @return A token for the key
+	 * @throws IllegalArgumentException If a value is of an unsupported type
+	 */
+	static String encode(Object[] key) {
+		StringBuilder token = new StringBuilder();
+		for(Object value : key) {
+			if(token.length() > 0) {
+				token.append('.');
+			}
+			token.append(ENCODER.encodeToString(tag(value).getBytes(StandardCharsets.UTF_8)));
+		}
+		return token.toString();
+	}
+
+	static String tag(Object value) {
+		if(value instanceof Integer) {
+			return "I" + value;
+		}
+		if(value instanceof Long) {
+			return "L" + value;
+		}
+		if(value instanceof Short) {
+			return "H" + value;
+		}
+		if(value instanceof String) {
+			return "S" + value;
+		}
+		if(value instanceof BigDecimal) {
+			return "B" + ((BigDecimal) value).toPlainString();
+		}
+		if(value instanceof Double) {
+			return "F" + value;
+		}
+		if(value instanceof Timestamp) {
+			return "T" + value;
+		}
+		if(value instanceof Date) {
+			return "D" + value;
+		}
+		if(value instanceof UUID) {
+			return "U" + value;
+		}
+		throw new IllegalArgumentException("Cannot use a key of type "
+				+ (value == null? "null" : value.getClass().getName()) + " in a cursor");
+	}
+
+	/**
+	 * @param token A token created by {@link #encode(Object[])}
+	 * @param keyCount The number of key columns expected
+	 * @return The values of the key columns
+	 * @throws IllegalArgumentException If the token is not valid
+	 */
+	static Object[] decode(String token, int keyCount) {
+		String[] parts = token.split("\\.", -1);
+		if(parts.length != keyCount) {
+			throw new IllegalArgumentException("Expected a cursor with " + keyCount + " keys but found " + parts.length);
+		}
+
+		Object[] key = new Object[keyCount];
+		for(int i = 0; i < keyCount; i++) {
+			String tagged;
+			try {
+				tagged = new String(DECODER.decode(parts[i]), StandardCharsets.UTF_8);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid cursor: " + token, e);
+			}
+			key[i] = untag(tagged, token);
+		}
+		return key;
+	}
+
+	static Object untag(String tagged, String token) {
+		if(tagged.isEmpty()) {
+			throw new IllegalArgumentException("Invalid cursor: " + token);
+		}
+		String value = tagged.substring(1);
+		try {
+			switch (tagged.charAt(0)) {
+			case 'I': return Integer.valueOf(value);
+			case 'L': return Long.valueOf(value);
+			case 'H': return Short.valueOf(value);
+			case 'S': return value;
+			case 'B': return new BigDecimal(value);
+			case 'F': return Double.valueOf(value);
+			case 'T': return Timestamp.valueOf(value);
+			case 'D': return Date.valueOf(value);
+			case 'U': return UUID.fromString(value);
+			default: break;
+			}
+		} catch (IllegalArgumentException e) {
+			// Includes NumberFormatException
+			throw new IllegalArgumentException("Invalid cursor: " + token, e);
+		}
+		throw new IllegalArgumentException("Invalid cursor: " + token);
+	}
+
+}
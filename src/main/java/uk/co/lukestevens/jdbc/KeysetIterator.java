@@ -0,0 +1,197 @@
+package uk.co.lukestevens.jdbc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.db.ResultParser;
+
+/**
+ * An iterator over the rows of a query, fetched a page at a time using keyset
+ * pagination. Each page continues from the key of the last row of the previous
+ * page, rather than skipping rows with an offset, so later pages are as fast as
+ * the first. Each page is fetched on its own connection, so no connection or
+ * transaction is held open between pages.<br>
+ * The position of the iterator can be saved as a cursor token, and a new
+ * iterator resumed from it later. Any database errors while iterating are
+ * thrown as an {@link UncheckedIOException}.
+ *
+ * @author luke.stevens
+ * @see AbstractDatabase#iterateByKey(String, List, int, ResultParser, Object...)
+ */
+public class KeysetIterator<T> implements Iterator<T> {
+
+	private final AbstractDatabase database;
+	private final String query;
+	private final List<String> keyColumns;
+	private final int pageSize;
+	private final ResultParser<T> parser;
+	private final Object[] params;
+
+	private List<T> page = Collections.emptyList();
+	private List<Object[]> pageKeys = Collections.emptyList();
+	private int position = 0;
+	private Object[] lastKey = null;
+	private boolean lastPage = false;
+	private int pageCount = 0;
+
+	KeysetIterator(AbstractDatabase database, String query, List<String> keyColumns, int pageSize, ResultParser<T> parser, Object[] params) {
+		if(keyColumns.isEmpty()) {
+			throw new IllegalArgumentException("At least one key column is required");
+		}
+		if(pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be at least 1");
+		}
+		this.database = database;
+		this.query = query;
+		this.keyColumns = new ArrayList<>(keyColumns);
+		this.pageSize = pageSize;
+		this.parser = parser;
+		this.params = params;
+	}
+
+	/**
+	 * Continues iterating after the row a cursor was saved at. This must be
+	 * called before the first row is read.
+	 * @param cursor A cursor token from {@link #getCursor()}, or null to start from the first row
+	 * @return This iterator
+	 * @throws IllegalArgumentException If the cursor is not valid for this iterator's key columns
+	 */
+	public KeysetIterator<T> resume(String cursor) {
+		if(pageCount > 0) {
+			throw new IllegalStateException("Cannot resume an iterator that has already been read");
+		}
+		this.lastKey = cursor == null? null : KeysetCursor.decode(cursor, keyColumns.size());
+		return this;
+	}
+
+	/**
+	 * @return A token for the position of this iterator after the last row returned
+	 * by {@link #next()}, which can be passed to {@link #resume(String)} to continue
+	 * from the next row. This is null if no rows have been read.
+	 */
+	public String getCursor() {
+		Object[] key = position > 0? pageKeys.get(position - 1) : lastKey;
+		return key == null? null : KeysetCursor.encode(key);
+	}
+
+	/**
+	 * @return The number of pages fetched so far
+	 */
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if(position < page.size()) {
+			return true;
+		}
+		if(lastPage) {
+			return false;
+		}
+		if(!page.isEmpty()) {
+			lastKey = pageKeys.get(pageKeys.size() - 1);
+		}
+
+		try {
+			this.fetchPage();
+		} catch (SQLException e) {
+			throw new UncheckedIOException(new IOException(e));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return position < page.size();
+	}
+
+	@Override
+	public T next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return page.get(position++);
+	}
+
+	/**
+	 * @return A stream of the remaining rows, fetching pages as the stream is consumed
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false);
+	}
+
+	/**
+	 * Fetches the page of rows after the last key, on a new connection
+	 */
+	void fetchPage() throws SQLException, IOException {
+		List<T> rows = new ArrayList<>(pageSize);
+		List<Object[]> keys = new ArrayList<>(pageSize);
+		try(DatabaseResult result = database.query(this.getPageQuery(lastKey != null), this.getPageParams())) {
+			result.processResultSet(rs -> {
+				Object[] key = new Object[keyColumns.size()];
+				for(int i = 0; i < key.length; i++) {
+					key[i] = rs.getObject(keyColumns.get(i));
+				}
+				keys.add(key);
+				rows.add(parser.parse(rs));
+			});
+		}
+
+		this.page = rows;
+		this.pageKeys = keys;
+		this.position = 0;
+		this.lastPage = rows.size() < pageSize;
+		this.pageCount++;
+	}
+
+	/**
+	 * Builds the query for a page, ordering the base query by the key columns.
+	 * Composite keys are compared column by column, as not every database
+	 * supports comparing row values.
+	 * @param after Whether the page continues after a key
+	 * @return The SQL query for a page
+	 */
+	String getPageQuery(boolean after) {
+		StringBuilder sql = new StringBuilder("SELECT * FROM (").append(query).append(") keyset_page");
+		if(after) {
+			sql.append(" WHERE ");
+			for(int i = 0; i < keyColumns.size(); i++) {
+				if(i > 0) {
+					sql.append(" OR ");
+				}
+				sql.append('(');
+				for(int j = 0; j < i; j++) {
+					sql.append(keyColumns.get(j)).append(" = ? AND ");
+				}
+				sql.append(keyColumns.get(i)).append(" > ?)");
+			}
+		}
+		sql.append(" ORDER BY ").append(String.join(", ", keyColumns));
+		sql.append(" LIMIT ").append(pageSize);
+		return sql.toString();
+	}
+
+	Object[] getPageParams() {
+		if(lastKey == null) {
+			return params;
+		}
+		List<Object> pageParams = new ArrayList<>(Arrays.asList(params));
+		for(int i = 0; i < keyColumns.size(); i++) {
+			for(int j = 0; j <= i; j++) {
+				pageParams.add(lastKey[j]);
+			}
+		}
+		return pageParams.toArray();
+	}
+
+}
@@ -0,0 +1,86 @@
+package uk.co.lukestevens.jdbc;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import javax.inject.Inject;
+
+import uk.co.lukestevens.config.Config;
+import uk.co.lukestevens.jdbc.pool.ConnectionPool;
+import uk.co.lukestevens.jdbc.pool.ConnectionSource;
+import uk.co.lukestevens.jdbc.pool.PoolSettings;
+
+/**
+ * A database implementation that borrows connections from
+ * a {@link ConnectionPool}, rather than opening a new connection
+ * for every query.
+ *
+ * @author luke.stevens
+ */
+public class PooledDatabase extends AbstractDatabase implements Closeable {
+
+	private final ConnectionPool pool;
+
+	/**
+	 * Creates a new pooled database from a set of config properties
+	 * @param config The Config instance. The following properties must be specified:
+	 * <ul>
+	 * 	<li><code>database.url</code></li>
+	 * 	<li><code>database.username</code></li>
+	 * 	<li><code>database.password</code></li>
+	 * </ul>
+	 * The pool can also be configured using <code>database.pool.*</code> properties,
+	 * see {@link PoolSettings#fromConfig(Config)}
+	 */
+	@Inject
+	public PooledDatabase(Config config) {
+		this(() -> DriverManager.getConnection(
+				config.getAsString("database.url"),
+				config.getAsString("database.username"),
+				config.getAsString("database.password")),
+			PoolSettings.fromConfig(config));
+	}
+
+	/**
+	 * Creates a new pooled database using the required parameters
+	 * @param url The url of the database
+	 * @param username The username of the user to use to connect to the database
+	 * @param password The password to connect to the database with
+	 * @param settings The settings for the connection pool
+	 */
+	public PooledDatabase(String url, String username, String password, PoolSettings settings) {
+		this(() -> DriverManager.getConnection(url, username, password), settings);
+	}
+
+	/**
+	 * Creates a new pooled database
+	 * @param source The source to open new connections from
+	 * @param settings The settings for the connection pool
+	 */
+	public PooledDatabase(ConnectionSource source, PoolSettings settings) {
+		this.pool = new ConnectionPool(source, settings);
+	}
+
+	@Override
+	protected Connection getConnection() throws SQLException {
+		return pool.getConnection();
+	}
+
+	/**
+	 * @return The connection pool backing this database
+	 */
+	public ConnectionPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Closes the connection pool backing this database
+	 */
+	@Override
+	public void close() {
+		pool.close();
+	}
+
+}
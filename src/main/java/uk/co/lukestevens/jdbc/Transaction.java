@@ -0,0 +1,126 @@
+package uk.co.lukestevens.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.util.Optional;
+
+import uk.co.lukestevens.db.Database;
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics.Phase;
+import uk.co.lukestevens.jdbc.result.TransactionDatabaseResult;
+
+/**
+ * A transaction started by {@link AbstractDatabase#inTransaction(TransactionCallback)}.
+ * Every query and update shares a single connection, and is committed once
+ * the callback returns. A transaction can only be used inside its callback.
+ *
+ * @author luke.stevens
+ */
+public class Transaction implements Database {
+
+	/**
+	 * Leaves the connection's transaction isolation level unchanged
+	 */
+	public static final int DEFAULT_ISOLATION = -1;
+
+	private final AbstractDatabase database;
+	private final Connection conn;
+	private boolean active = true;
+	private boolean rollbackOnly = false;
+
+	Transaction(AbstractDatabase database, Connection conn) {
+		this.database = database;
+		this.conn = conn;
+	}
+
+	@Override
+	public DatabaseResult query(String query, Object... params) throws SQLException {
+		this.checkActive();
+		PreparedStatement stmt = database.timed(Phase.PREPARE, query, () -> database.prepareStatement(conn, query, params));
+		try {
+			ResultSet rs = database.timed(Phase.EXECUTE, query, params, stmt::executeQuery);
+			return database.measured(new TransactionDatabaseResult(conn, stmt, rs), query, params);
+		} catch (SQLException | RuntimeException e) {
+			stmt.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public Optional<Long> update(String query, Object... params) throws SQLException {
+		this.checkActive();
+		try(PreparedStatement stmt = database.timed(Phase.PREPARE, query, () -> database.prepareStatement(conn, query, params))) {
+			return database.executeUpdate(stmt, query, params);
+		}
+	}
+
+	/**
+	 * Runs a callback inside a savepoint of this transaction. If the callback throws
+	 * anything, only its own work is rolled back, and what it threw is rethrown.
+	 * @param callback The work to run inside the savepoint
+	 * @return The result of the callback
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be read
+	 */
+	public <T> T inTransaction(TransactionCallback<T> callback) throws SQLException, IOException {
+		this.checkActive();
+		Savepoint savepoint = conn.setSavepoint();
+		T result;
+		try {
+			result = callback.execute(this);
+		} catch (Throwable e) {
+			try {
+				conn.rollback(savepoint);
+			} catch (SQLException rollbackError) {
+				e.addSuppressed(rollbackError);
+			}
+			throw e;
+		}
+
+		try {
+			conn.releaseSavepoint(savepoint);
+		} catch (SQLFeatureNotSupportedException e) {
+			// Savepoints are released when the transaction ends
+		}
+		return result;
+	}
+
+	/**
+	 * Marks this transaction to be rolled back rather than committed
+	 * once its callback returns
+	 */
+	public void setRollbackOnly() {
+		this.rollbackOnly = true;
+	}
+
+	/**
+	 * @return Whether this transaction will be rolled back once its callback returns
+	 */
+	public boolean isRollbackOnly() {
+		return rollbackOnly;
+	}
+
+	/**
+	 * @return The connection shared by every query and update in this transaction.
+	 * This should not be closed or committed directly.
+	 */
+	public Connection getConnection() {
+		return conn;
+	}
+
+	void end() {
+		this.active = false;
+	}
+
+	void checkActive() {
+		if(!active) {
+			throw new IllegalStateException("Transaction has already ended");
+		}
+	}
+
+}
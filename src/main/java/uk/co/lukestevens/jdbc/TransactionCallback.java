@@ -0,0 +1,25 @@
+package uk.co.lukestevens.jdbc;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * A unit of work run inside a transaction by
+ * {@link AbstractDatabase#inTransaction(TransactionCallback)}
+ * 
+ * @author luke.stevens
+ */
+@FunctionalInterface
+public interface TransactionCallback<T> {
+	
+	/**
+	 * Runs queries and updates inside a transaction. If this throws
+	 * an exception, the transaction is rolled back.
+	 * @param transaction The transaction to run queries and updates with
+	 * @return The result of the work
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be read
+	 */
+	T execute(Transaction transaction) throws SQLException, IOException;
+
+}
@@ -0,0 +1,197 @@
+package uk.co.lukestevens.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import uk.co.lukestevens.db.DatabaseResult;
+
+/**
+ * Warms up a database before it serves requests, so the first requests after
+ * startup are not slowed by opening connections, preparing statements and
+ * running code that has not yet been compiled by the JIT.<br>
+ * Connections are opened in parallel and held until all are open, so a pooled
+ * database keeps them all. Every hot statement is prepared on each connection,
+ * which fills the statement cache if one is enabled. Hot queries are then run
+ * repeatedly, through the same code as any other query. The database is only
+ * reported as ready once the warm-up has finished.
+ *
+ * @author luke.stevens
+ * @see AbstractDatabase#warmUp()
+ */
+public class WarmUp {
+
+	private static final Logger LOGGER = Logger.getLogger(WarmUp.class.getName());
+
+	private final AbstractDatabase database;
+	private final List<String> statements = new ArrayList<>();
+	private final List<Query> queries = new ArrayList<>();
+	private int connections;
+	private int executions = 500;
+
+	WarmUp(AbstractDatabase database) {
+		this.database = database;
+		this.connections = database instanceof PooledDatabase?
+				Math.max(1, ((PooledDatabase) database).getPool().getSettings().getMinIdle()) : 1;
+	}
+
+	/**
+	 * Registers a statement to prepare on every connection. The statement is not executed,
+	 * so this can be used for updates.
+	 * @param sql The SQL statement
+	 */
+	public void addStatement(String sql) {
+		statements.add(sql);
+	}
+
+	/**
+	 * Registers a query to prepare on every connection, and then run repeatedly
+	 * reading every row. The query should not change any data.
+	 * @param sql The SQL query
+	 * @param params Typical parameters for the query
+	 */
+	public void addQuery(String sql, Object...params) {
+		statements.add(sql);
+		queries.add(new Query(sql, params));
+	}
+
+	/**
+	 * @param connections The number of connections to open in parallel (default the
+	 * minimum idle connections of a {@link PooledDatabase}, otherwise 1)
+	 */
+	public void setConnections(int connections) {
+		if(connections < 1) {
+			throw new IllegalArgumentException("Connections must be at least 1");
+		}
+		this.connections = connections;
+	}
+
+	/**
+	 * @param executions The number of times each query is run (default 500)
+	 */
+	public void setExecutions(int executions) {
+		this.executions = executions;
+	}
+
+	/**
+	 * Runs the warm-up, then marks the database as ready. If the warm-up fails,
+	 * the database is not marked as ready.
+	 * @return How long the warm-up took in milliseconds
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be closed
+	 */
+	public long run() throws SQLException, IOException {
+		long start = System.nanoTime();
+		this.openConnections();
+		for(Query query : queries) {
+			for(int i = 0; i < executions; i++) {
+				try(DatabaseResult result = database.query(query.sql, query.params)) {
+					result.processResultSet(rs -> {
+						int columns = rs.getMetaData().getColumnCount();
+						for(int column = 1; column <= columns; column++) {
+							rs.getObject(column);
+						}
+					});
+				}
+			}
+		}
+
+		long nanos = System.nanoTime() - start;
+		database.warmedUp(nanos);
+		LOGGER.info("Database warmed up in " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms, with " + connections
+				+ " connections, " + statements.size() + " statements and " + queries.size() * executions + " executions");
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * Opens connections in parallel and prepares every statement on each,
+	 * closing them once they have all been opened
+	 */
+	void openConnections() throws SQLException {
+		ExecutorService executor = Executors.newFixedThreadPool(connections, runnable -> {
+			Thread thread = new Thread(runnable, "db-lib-warm-up");
+			thread.setDaemon(true);
+			return thread;
+		});
+		List<Future<Connection>> futures = new ArrayList<>(connections);
+		for(int i = 0; i < connections; i++) {
+			futures.add(executor.submit(this::openConnection));
+		}
+		executor.shutdown();
+
+		// Every connection is held until all have been opened
+		List<Connection> opened = new ArrayList<>(connections);
+		SQLException error = null;
+		try {
+			for(Future<Connection> future : futures) {
+				try {
+					opened.add(future.get());
+				} catch (ExecutionException e) {
+					SQLException cause = e.getCause() instanceof SQLException?
+							(SQLException) e.getCause() : new SQLException(e.getCause());
+					if(error == null) {
+						error = cause;
+					}
+					else {
+						error.addSuppressed(cause);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+			error = new SQLException("Interrupted while opening connections", e);
+		} finally {
+			for(Connection conn : opened) {
+				conn.close();
+			}
+		}
+		if(error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * @return A new connection, with every statement prepared on it
+	 */
+	Connection openConnection() throws SQLException {
+		Connection conn = database.getConnection();
+		try {
+			for(String sql : statements) {
+				// Prepared the same way as queries, to share cached statements
+				try(PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+					// Only preparing the statement
+				}
+			}
+			return conn;
+		} catch (SQLException | RuntimeException e) {
+			conn.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * A hot query and its typical parameters
+	 */
+	static class Query {
+
+		final String sql;
+		final Object[] params;
+
+		Query(String sql, Object[] params) {
+			this.sql = sql;
+			this.params = params;
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+package uk.co.lukestevens.jdbc.binder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * An interface defining how a parameter of a given type
+ * is bound to a prepared statement
+ * 
+ * @author luke.stevens
+ *
+ * @param <T> The type of parameter this binder binds
+ */
+@FunctionalInterface
+public interface ParameterBinder<T> {
+	
+	/**
+	 * Binds a non-null parameter to a statement
+	 * @param stmt The statement to bind the parameter to
+	 * @param index The index of the parameter, starting at 1
+	 * @param value The value to bind
+	 * @throws SQLException If a database error occurs
+	 */
+	void bind(PreparedStatement stmt, int index, T value) throws SQLException;
+
+}
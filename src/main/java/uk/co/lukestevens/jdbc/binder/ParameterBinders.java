@@ -0,0 +1,193 @@
+package uk.co.lukestevens.jdbc.binder;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A static registry of {@link ParameterBinder}s. The binder for each
+ * parameter class is chosen once and cached, so binding a parameter only
+ * costs a single lookup and a call to the matching typed setter, rather than
+ * the driver's generic <code>setObject</code>.<br>
+ * Binders for custom types can be added using {@link #register(Class, ParameterBinder)},
+ * and will also be used for any subclasses of that type.
+ *
+ * @author luke.stevens
+ */
+public class ParameterBinders {
+
+	private static final Map<Class<?>, ParameterBinder<?>> BUILT_IN = new HashMap<>();
+	private static final Map<Class<?>, ParameterBinder<?>> REGISTERED = new ConcurrentHashMap<>();
+	private static final Map<Class<?>, ParameterBinder<?>> RESOLVED = new ConcurrentHashMap<>();
+
+	private static final Map<Class<?>, String> ARRAY_TYPES = new HashMap<>();
+
+	static {
+		builtIn(Integer.class, (stmt, i, value) -> stmt.setInt(i, value));
+		builtIn(Long.class, (stmt, i, value) -> stmt.setLong(i, value));
+		builtIn(Short.class, (stmt, i, value) -> stmt.setShort(i, value));
+		builtIn(Byte.class, (stmt, i, value) -> stmt.setByte(i, value));
+		builtIn(Double.class, (stmt, i, value) -> stmt.setDouble(i, value));
+		builtIn(Float.class, (stmt, i, value) -> stmt.setFloat(i, value));
+		builtIn(Boolean.class, (stmt, i, value) -> stmt.setBoolean(i, value));
+		builtIn(String.class, PreparedStatement::setString);
+		builtIn(BigDecimal.class, PreparedStatement::setBigDecimal);
+		builtIn(byte[].class, PreparedStatement::setBytes);
+		builtIn(Timestamp.class, PreparedStatement::setTimestamp);
+		builtIn(LocalDate.class, (stmt, i, value) -> stmt.setDate(i, java.sql.Date.valueOf(value)));
+		builtIn(LocalDateTime.class, (stmt, i, value) -> stmt.setTimestamp(i, Timestamp.valueOf(value)));
+		builtIn(LocalTime.class, (stmt, i, value) -> stmt.setTime(i, Time.valueOf(value)));
+		builtIn(Instant.class, (stmt, i, value) -> stmt.setTimestamp(i, Timestamp.from(value)));
+
+		ARRAY_TYPES.put(Integer.class, "integer");
+		ARRAY_TYPES.put(Long.class, "bigint");
+		ARRAY_TYPES.put(Short.class, "smallint");
+		ARRAY_TYPES.put(Double.class, "float8");
+		ARRAY_TYPES.put(Float.class, "float4");
+		ARRAY_TYPES.put(Boolean.class, "boolean");
+		ARRAY_TYPES.put(String.class, "varchar");
+		ARRAY_TYPES.put(BigDecimal.class, "numeric");
+		ARRAY_TYPES.put(Timestamp.class, "timestamp");
+	}
+
+	static <T> void builtIn(Class<T> type, ParameterBinder<T> binder) {
+		BUILT_IN.put(type, binder);
+	}
+
+	/**
+	 * Registers a binder for a custom type, replacing the binder used for
+	 * that type and any of its subclasses
+	 * @param type The type of parameter
+	 * @param binder The binder to use for parameters of that type
+	 */
+	public static <T> void register(Class<T> type, ParameterBinder<? super T> binder) {
+		REGISTERED.put(type, binder);
+		RESOLVED.clear();
+	}
+
+	/**
+	 * Removes a binder previously registered for a type
+	 * @param type The type of parameter
+	 */
+	public static void unregister(Class<?> type) {
+		REGISTERED.remove(type);
+		RESOLVED.clear();
+	}
+
+	/**
+	 * Binds a parameter to a statement using the binder for its class.
+	 * Null values are bound using <code>setObject</code>.
+	 * @param stmt The statement to bind the parameter to
+	 * @param index The index of the parameter, starting at 1
+	 * @param value The value to bind
+	 * @throws SQLException If a database error occurs
+	 */
+	@SuppressWarnings("unchecked")
+	public static void bind(PreparedStatement stmt, int index, Object value) throws SQLException {
+		if(value == null) {
+			stmt.setObject(index, null);
+		}
+		else {
+			ParameterBinder<Object> binder = (ParameterBinder<Object>) forClass(value.getClass());
+			binder.bind(stmt, index, value);
+		}
+	}
+
+	/**
+	 * Gets the binder for a parameter class. In order of precedence, this will be:
+	 * <ul>
+	 * 	<li>A binder registered for the class, or its nearest registered superclass or interface</li>
+	 * 	<li>A typed setter for boxed primitives, strings, numbers, and <code>java.time</code> types</li>
+	 * 	<li>The string value for enums</li>
+	 * 	<li>A timestamp for any other {@link Date}</li>
+	 * 	<li>A SQL array for arrays</li>
+	 * 	<li><code>setObject</code> for anything else</li>
+	 * </ul>
+	 * @param type The parameter class
+	 * @return The binder for that class
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ParameterBinder<T> forClass(Class<T> type) {
+		ParameterBinder<?> binder = RESOLVED.get(type);
+		if(binder == null) {
+			binder = resolve(type);
+			RESOLVED.putIfAbsent(type, binder);
+		}
+		return (ParameterBinder<T>) binder;
+	}
+
+	static ParameterBinder<?> resolve(Class<?> type) {
+		ParameterBinder<?> registered = findRegistered(type);
+		if(registered != null) {
+			return registered;
+		}
+
+		ParameterBinder<?> builtIn = BUILT_IN.get(type);
+		if(builtIn != null) {
+			return builtIn;
+		}
+		if(Enum.class.isAssignableFrom(type)) {
+			return (stmt, i, value) -> stmt.setString(i, value.toString());
+		}
+		if(Date.class.isAssignableFrom(type)) {
+			return (stmt, i, value) -> stmt.setTimestamp(i, new Timestamp(((Date) value).getTime()));
+		}
+		if(type.isArray()) {
+			return arrayBinder(type.getComponentType());
+		}
+		return PreparedStatement::setObject;
+	}
+
+	static ParameterBinder<?> findRegistered(Class<?> type) {
+		for(Class<?> c = type; c != null; c = c.getSuperclass()) {
+			ParameterBinder<?> binder = REGISTERED.get(c);
+			if(binder != null) {
+				return binder;
+			}
+			for(Class<?> i : c.getInterfaces()) {
+				binder = findRegistered(i);
+				if(binder != null) {
+					return binder;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a binder that binds arrays as SQL arrays. Arrays of types
+	 * without a known SQL type are bound using <code>setObject</code>
+	 * @param componentType The component type of the array
+	 * @return The binder
+	 */
+	static ParameterBinder<?> arrayBinder(Class<?> componentType) {
+		Class<?> boxed = componentType.isPrimitive()?
+				Array.get(Array.newInstance(componentType, 1), 0).getClass() : componentType;
+		String typeName = boxed.isEnum()? "varchar" : ARRAY_TYPES.get(boxed);
+		if(typeName == null) {
+			return PreparedStatement::setObject;
+		}
+
+		return (stmt, i, value) -> {
+			int length = Array.getLength(value);
+			Object[] elements = new Object[length];
+			for(int j = 0; j < length; j++) {
+				Object element = Array.get(value, j);
+				elements[j] = element instanceof Enum? element.toString() : element;
+			}
+			stmt.setArray(i, stmt.getConnection().createArrayOf(typeName, elements));
+		};
+	}
+
+}
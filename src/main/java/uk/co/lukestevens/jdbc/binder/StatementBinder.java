@@ -0,0 +1,23 @@
+package uk.co.lukestevens.jdbc.binder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * An interface used to bind parameters directly to a prepared
+ * statement, for example using <code>setLong</code> to bind
+ * primitive values without boxing them.
+ * 
+ * @author luke.stevens
+ */
+@FunctionalInterface
+public interface StatementBinder {
+	
+	/**
+	 * Binds parameters to a statement
+	 * @param stmt The statement to bind parameters to
+	 * @throws SQLException If a database error occurs
+	 */
+	void bind(PreparedStatement stmt) throws SQLException;
+
+}
@@ -0,0 +1,212 @@
+package uk.co.lukestevens.jdbc.cache;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import uk.co.lukestevens.db.Database;
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.db.ResultParser;
+import uk.co.lukestevens.jdbc.AbstractDatabase;
+import uk.co.lukestevens.jdbc.mapper.RowMapper;
+import uk.co.lukestevens.jdbc.result.BatchResult;
+
+/**
+ * A database that caches parsed query results, keyed by the SQL, parameters,
+ * and parser used. Results are evicted when the cache is full, when
+ * they expire, or when an update through this database modifies a table
+ * the query read from.<br>
+ * Only results parsed by {@link #query(String, ResultParser, Object...)} are cached,
+ * and only if the tables they read from can be found, so that updates invalidate them.
+ * {@link #query(String, Object...)} returns a live result, so is never cached,
+ * and individual queries can opt out using {@link #queryUncached(String, ResultParser, Object...)}.<br>
+ * Updates made directly against the underlying database, or by other applications,
+ * are not seen by the cache, so a time to live should be set if they are possible.
+ *
+ * @author luke.stevens
+ */
+public class CachingDatabase implements Database {
+
+	private final AbstractDatabase database;
+	private final QueryCache cache;
+
+	/**
+	 * Creates a new caching database
+	 * @param database The database to query
+	 * @param maxSize The maximum number of results to cache
+	 * @param ttl The time in milliseconds each result is cached for. If this is 0
+	 * or less, results are cached until they are evicted or invalidated.
+	 */
+	public CachingDatabase(AbstractDatabase database, int maxSize, long ttl) {
+		this.database = database;
+		this.cache = new QueryCache(maxSize, ttl);
+	}
+
+	/**
+	 * Queries the underlying database. The result of this query is not cached.
+	 */
+	@Override
+	public DatabaseResult query(String query, Object... params) throws SQLException {
+		return database.query(query, params);
+	}
+
+	/**
+	 * Queries the database and parses every row of the result, or returns
+	 * the cached result if the same query has already been parsed by the
+	 * same parser. {@link RowMapper}s are matched by the class they map to,
+	 * and other parsers by instance, so a parser should be kept in a field
+	 * rather than created for each query. The returned list is unmodifiable,
+	 * and shared with other callers making the same query.<br>
+	 * Queries whose tables cannot be found, such as <code>SELECT nextval('seq')</code>
+	 * or queries of table functions, are never cached, as no update would invalidate them.
+	 * @param query The SQL query to execute
+	 * @param parser The parser used to convert each row
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @return The parsed rows
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If the result cannot be closed
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> query(String query, ResultParser<T> parser, Object... params) throws SQLException, IOException {
+		Set<String> tables = SqlTables.readBy(query);
+		if(tables.isEmpty()) {
+			return Collections.unmodifiableList(this.queryUncached(query, parser, params));
+		}
+
+		QueryCache.Key key = new QueryCache.Key(query, params, parserKey(parser));
+		List<T> cached = (List<T>) cache.get(key);
+		if(cached != null) {
+			return cached;
+		}
+
+		long generation = cache.getGeneration();
+		List<T> result = Collections.unmodifiableList(new ArrayList<>(this.queryUncached(query, parser, params)));
+		cache.put(key, result, tables, generation);
+		return result;
+	}
+
+	/**
+	 * Queries the database and parses every row of the result, without
+	 * reading from or adding to the cache
+	 * @param query The SQL query to execute
+	 * @param parser The parser used to convert each row
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @return The parsed rows
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If the result cannot be closed
+	 */
+	public <T> List<T> queryUncached(String query, ResultParser<T> parser, Object... params) throws SQLException, IOException {
+		try(DatabaseResult result = database.query(query, params)) {
+			return result.parseResultSet(parser);
+		}
+	}
+
+	/**
+	 * Updates the database, then invalidates the cached results of any queries
+	 * reading from the updated table. If the updated table cannot be determined,
+	 * every cached result is invalidated.
+	 */
+	@Override
+	public Optional<Long> update(String query, Object... params) throws SQLException {
+		try {
+			return database.update(query, params);
+		} finally {
+			invalidateFor(query);
+		}
+	}
+
+	/**
+	 * Executes a batch update against the database, then invalidates the cached
+	 * results of any queries reading from the updated table
+	 * @param query The SQL query to execute
+	 * @param rows The parameters to substitute into the query for each row
+	 * @return The generated keys and update counts for every row
+	 * @throws SQLException If a database error occurs
+	 * @see AbstractDatabase#updateBatch(String, Iterable)
+	 */
+	public BatchResult updateBatch(String query, Iterable<Object[]> rows) throws SQLException {
+		try {
+			return database.updateBatch(query, rows);
+		} finally {
+			invalidateFor(query);
+		}
+	}
+
+	/**
+	 * @return What identifies a parser in the cache. Mappers for the same class are
+	 * interchangeable, but any other parser may depend on state its class doesn't show.
+	 */
+	static Object parserKey(ResultParser<?> parser) {
+		return parser instanceof RowMapper? ((RowMapper<?>) parser).getType() : parser;
+	}
+
+	void invalidateFor(String update) {
+		Set<String> tables = SqlTables.writtenBy(update);
+		if(tables.isEmpty()) {
+			cache.clear();
+		}
+		else {
+			cache.invalidate(tables);
+		}
+	}
+
+	/**
+	 * Invalidates the cached results of any queries reading from a table
+	 * @param table The name of the table
+	 */
+	public void invalidate(String table) {
+		cache.invalidate(Collections.singleton(SqlTables.normalise(table)));
+	}
+
+	/**
+	 * Invalidates every cached result
+	 */
+	public void invalidateAll() {
+		cache.clear();
+	}
+
+	/**
+	 * @return The number of results currently cached
+	 */
+	public int getSize() {
+		return cache.size();
+	}
+
+	/**
+	 * @return The number of queries answered from the cache
+	 */
+	public long getHits() {
+		return cache.getHits();
+	}
+
+	/**
+	 * @return The number of cacheable queries that had to be run against the database
+	 */
+	public long getMisses() {
+		return cache.getMisses();
+	}
+
+	/**
+	 * @return The number of results removed because the cache was full or they expired
+	 */
+	public long getEvictions() {
+		return cache.getEvictions();
+	}
+
+	/**
+	 * @return The fraction of cacheable queries answered from the cache,
+	 * or 0 if no queries have been made
+	 */
+	public double getHitRate() {
+		long hits = cache.getHits();
+		long total = hits + cache.getMisses();
+		return total == 0? 0 : (double) hits / total;
+	}
+
+}
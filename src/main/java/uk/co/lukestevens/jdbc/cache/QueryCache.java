@@ -0,0 +1,222 @@
+package uk.co.lukestevens.jdbc.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A least recently used cache of parsed query results, which expire after a
+ * fixed time to live. Each entry is indexed by the tables its query read from,
+ * so entries can be invalidated when those tables are updated.
+ *
+ * @author luke.stevens
+ */
+class QueryCache {
+
+	private final int maxSize;
+	private final long ttlNanos;
+	private final LinkedHashMap<Key, CachedResult> entries;
+	private final Map<String, Set<Key>> tables = new HashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	// Incremented by every invalidation, so results read before it aren't cached after it
+	private long generation = 0;
+
+	/**
+	 * @param maxSize The maximum number of results to cache
+	 * @param ttl The time in milliseconds each result is cached for. If this is 0
+	 * or less, results are only evicted when the cache is full or invalidated.
+	 */
+	QueryCache(int maxSize, long ttl) {
+		this.maxSize = maxSize;
+		this.ttlNanos = ttl > 0? ttl * 1_000_000 : 0;
+		this.entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+				if(size() > QueryCache.this.maxSize) {
+					unindex(eldest.getKey(), eldest.getValue());
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @param key The key of a query
+	 * @return The cached result of the query, or null if it is not cached or has expired
+	 */
+	synchronized List<?> get(Key key) {
+		CachedResult entry = entries.get(key);
+		if(entry != null && ttlNanos > 0 && System.nanoTime() - entry.expiresAt > 0) {
+			entries.remove(key);
+			unindex(key, entry);
+			evictions.increment();
+			entry = null;
+		}
+
+		if(entry == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.value;
+	}
+
+	/**
+	 * @return The current generation of the cache. This should be read before
+	 * running a query, and passed to {@link #put(Key, List, Set, long)} with its result.
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Caches the result of a query, unless the cache has been invalidated since
+	 * the query was run, in which case the result may already be stale
+	 * @param key The key of the query
+	 * @param value The parsed result
+	 * @param tables The tables read by the query
+	 * @param generation The generation of the cache when the query was run
+	 */
+	synchronized void put(Key key, List<?> value, Set<String> tables, long generation) {
+		if(maxSize < 1 || generation != this.generation) {
+			return;
+		}
+
+		CachedResult entry = new CachedResult(value, tables, System.nanoTime() + ttlNanos);
+		CachedResult previous = entries.put(key, entry);
+		if(previous != null) {
+			unindex(key, previous);
+		}
+		for(String table : tables) {
+			this.tables.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+		}
+	}
+
+	/**
+	 * Removes all results of queries that read from any of the given tables
+	 * @param tables The tables that have been updated
+	 * @return The number of results removed
+	 */
+	synchronized int invalidate(Collection<String> tables) {
+		generation++;
+		int removed = 0;
+		for(String table : tables) {
+			Set<Key> keys = this.tables.remove(table);
+			if(keys != null) {
+				for(Key key : keys) {
+					CachedResult entry = entries.remove(key);
+					if(entry != null) {
+						unindex(key, entry);
+						removed++;
+					}
+				}
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes every cached result
+	 */
+	synchronized void clear() {
+		generation++;
+		entries.clear();
+		tables.clear();
+	}
+
+	void unindex(Key key, CachedResult entry) {
+		for(String table : entry.tables) {
+			Set<Key> keys = tables.get(table);
+			if(keys != null) {
+				keys.remove(key);
+				if(keys.isEmpty()) {
+					tables.remove(table);
+				}
+			}
+		}
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	long getHits() {
+		return hits.sum();
+	}
+
+	long getMisses() {
+		return misses.sum();
+	}
+
+	long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Identifies a query by its SQL, parameters, and the parser used to
+	 * parse its results, which is compared by identity
+	 */
+	static final class Key {
+
+		final String sql;
+		final Object[] params;
+		final Object parser;
+		final int hash;
+
+		Key(String sql, Object[] params, Object parser) {
+			this.sql = sql;
+			this.params = params.clone();
+			this.parser = parser;
+			this.hash = Objects.hash(sql, Arrays.deepHashCode(params), System.identityHashCode(parser));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && sql.equals(other.sql)
+					&& parser == other.parser && Arrays.deepEquals(params, other.params);
+		}
+
+	}
+
+	static final class CachedResult {
+
+		final List<?> value;
+		final Set<String> tables;
+		final long expiresAt;
+
+		CachedResult(List<?> value, Set<String> tables, long expiresAt) {
+			this.value = value;
+			this.tables = tables;
+			this.expiresAt = expiresAt;
+		}
+
+	}
+
+}
@@ -0,0 +1,172 @@
+package uk.co.lukestevens.jdbc.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the tables referenced by a SQL statement. This is a lightweight
+ * pattern match rather than a full parser, so it only needs to recognise
+ * table names following the keywords that can introduce them, and the
+ * comma separated lists of tables following <code>FROM</code>.
+ *
+ * @author luke.stevens
+ */
+class SqlTables {
+
+	private static final String NAME = "((?:[\\w$]+|\"[^\"]+\"|`[^`]+`)(?:\\s*\\.\\s*(?:[\\w$]+|\"[^\"]+\"|`[^`]+`))*)";
+
+	private static final Pattern READ = Pattern.compile("\\b(from|join)\\s+", Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern TABLE = Pattern.compile(NAME);
+
+	private static final Pattern ALIAS = Pattern.compile(
+			"\\s+(as\\s+)?([\\w$]+|\"[^\"]+\"|`[^`]+`)", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * Keywords that can follow a table, so are not its alias
+	 */
+	private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+			"where", "join", "inner", "left", "right", "full", "cross", "natural", "outer", "on", "using",
+			"group", "order", "having", "limit", "offset", "fetch", "for", "window", "union", "intersect",
+			"except", "minus", "lateral", "qualify"));
+
+	private static final Pattern WRITE = Pattern.compile(
+			"\\b(?:insert\\s+into|update|delete\\s+from|merge\\s+into|truncate\\s+table|truncate|replace\\s+into)\\s+" + NAME,
+			Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern DDL = Pattern.compile(
+			"\\b(?:drop|alter)\\s+table\\s+(?:if\\s+exists\\s+)?" + NAME, Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * @param sql A query
+	 * @return The names of all tables the query reads from. This will be
+	 * empty if the tables cannot be determined, for example if the query reads
+	 * from a table function or from no table at all.
+	 */
+	static Set<String> readBy(String sql) {
+		Set<String> tables = new HashSet<>();
+		Matcher keyword = READ.matcher(sql);
+		while(keyword.find()) {
+			// Only FROM introduces a comma separated list of tables
+			boolean list = keyword.group(1).equalsIgnoreCase("from");
+			int pos = keyword.end();
+			while(true) {
+				if(pos < sql.length() && sql.charAt(pos) == '(') {
+					// A subquery, whose own tables are found separately
+					pos = skipParentheses(sql, pos);
+					if(pos < 0) {
+						return Collections.emptySet();
+					}
+				}
+				else {
+					Matcher table = TABLE.matcher(sql).region(pos, sql.length());
+					if(!table.lookingAt()) {
+						return Collections.emptySet();
+					}
+					pos = table.end();
+					int next = skipSpace(sql, pos);
+					if(next < sql.length() && sql.charAt(next) == '(') {
+						// A table function, which may read any table
+						return Collections.emptySet();
+					}
+					tables.add(normalise(table.group(1)));
+				}
+
+				Matcher alias = ALIAS.matcher(sql).region(pos, sql.length());
+				if(alias.lookingAt() && (alias.group(1) != null || !KEYWORDS.contains(alias.group(2).toLowerCase(Locale.ROOT)))) {
+					pos = skipSpace(sql, alias.end());
+					if(pos < sql.length() && sql.charAt(pos) == '(') {
+						// Column aliases, e.g. "as t(a, b)"
+						pos = skipParentheses(sql, pos);
+						if(pos < 0) {
+							return Collections.emptySet();
+						}
+					}
+				}
+
+				pos = skipSpace(sql, pos);
+				if(!list || pos >= sql.length() || sql.charAt(pos) != ',') {
+					break;
+				}
+				pos = skipSpace(sql, pos + 1);
+			}
+		}
+		return tables;
+	}
+
+	/**
+	 * @return The position after the parenthesis matching the one at the given
+	 * position, or -1 if it is not closed
+	 */
+	static int skipParentheses(String sql, int pos) {
+		int depth = 0;
+		boolean quoted = false;
+		for(int i = pos; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if(c == '\'') {
+				quoted = !quoted;
+			}
+			else if(!quoted && c == '(') {
+				depth++;
+			}
+			else if(!quoted && c == ')' && --depth == 0) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	static int skipSpace(String sql, int pos) {
+		while(pos < sql.length() && Character.isWhitespace(sql.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * @param sql An update
+	 * @return The names of all tables the update modifies. This will be
+	 * empty if the modified tables cannot be determined.
+	 */
+	static Set<String> writtenBy(String sql) {
+		Set<String> tables = new HashSet<>(find(WRITE, sql));
+		tables.addAll(find(DDL, sql));
+		return tables;
+	}
+
+	static Set<String> find(Pattern pattern, String sql) {
+		Matcher matcher = pattern.matcher(sql);
+		Set<String> tables = null;
+		while(matcher.find()) {
+			String name = normalise(matcher.group(1));
+			// Ignore subqueries, e.g. "from (select ...)"
+			if(!name.isEmpty() && !name.equals("select")) {
+				if(tables == null) {
+					tables = new HashSet<>();
+				}
+				tables.add(name);
+			}
+		}
+		return tables == null? Collections.emptySet() : tables;
+	}
+
+	/**
+	 * Normalises a table name, ignoring case, quotes, and the schema
+	 * @param table The table name as it appears in SQL
+	 * @return The normalised name
+	 */
+	static String normalise(String table) {
+		String name = table;
+		int dot = name.lastIndexOf('.');
+		if(dot >= 0) {
+			name = name.substring(dot + 1);
+		}
+		return name.trim().replace("\"", "").replace("`", "").toLowerCase(Locale.ROOT);
+	}
+
+}
@@ -0,0 +1,160 @@
+package uk.co.lukestevens.jdbc.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * A column of a {@link ColumnarResult}, storing its values in chunks of primitive
+ * arrays. Chunks are never copied once full, so a column grows without copying
+ * every value, and nulls are tracked in a bitmap allocated only for chunks
+ * containing a null.
+ *
+ * @author luke.stevens
+ */
+public abstract class Column {
+
+	static final int CHUNK_BITS = 12;
+	static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	static final int INITIAL_CHUNK_SIZE = 16;
+
+	private final String name;
+	private long[][] nulls = new long[0][];
+	private int size = 0;
+
+	Column(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return The label of this column
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The number of values in this column
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return Whether the value of this column is null for the row
+	 */
+	public boolean isNull(int row) {
+		checkIndex(row);
+		int chunk = row >>> CHUNK_BITS;
+		if(chunk >= nulls.length || nulls[chunk] == null) {
+			return false;
+		}
+		int offset = row & CHUNK_MASK;
+		return (nulls[chunk][offset >>> 6] & (1L << offset)) != 0;
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The value of this column for the row, boxed if necessary, or null
+	 */
+	public abstract Object get(int row);
+
+	/**
+	 * Reads the value of this column from the current row of a result set
+	 * @param rs The result set to read from
+	 * @param index The index of this column in the result set
+	 * @throws SQLException If a database error occurs
+	 */
+	void read(ResultSet rs, int index) throws SQLException {
+		int chunk = size >>> CHUNK_BITS;
+		int offset = size & CHUNK_MASK;
+		if(!this.readValue(rs, index, chunk, offset)) {
+			if(chunk >= nulls.length) {
+				nulls = Arrays.copyOf(nulls, Math.max(chunk + 1, nulls.length * 2));
+			}
+			if(nulls[chunk] == null) {
+				nulls[chunk] = new long[CHUNK_SIZE >>> 6];
+			}
+			nulls[chunk][offset >>> 6] |= 1L << offset;
+		}
+		size++;
+	}
+
+	/**
+	 * Reads the value of this column from the current row of a result set,
+	 * growing the chunk it is stored in if needed
+	 * @param rs The result set to read from
+	 * @param index The index of this column in the result set
+	 * @param chunk The chunk to store the value in
+	 * @param offset The offset in the chunk to store the value at
+	 * @return False if the value was null
+	 * @throws SQLException If a database error occurs
+	 */
+	abstract boolean readValue(ResultSet rs, int index, int chunk, int offset) throws SQLException;
+
+	void checkIndex(int row) {
+		if(row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+		}
+	}
+
+	/**
+	 * Only the last chunk is ever partly filled, so it grows by doubling until full,
+	 * and small results do not allocate whole chunks
+	 */
+	static int grownLength(int length) {
+		return length == 0? INITIAL_CHUNK_SIZE : Math.min(CHUNK_SIZE, length * 2);
+	}
+
+	static int[][] ensureCapacity(int[][] chunks, int chunk, int offset) {
+		if(chunk >= chunks.length) {
+			chunks = Arrays.copyOf(chunks, Math.max(4, chunks.length * 2));
+		}
+		int length = chunks[chunk] == null? 0 : chunks[chunk].length;
+		if(offset == length) {
+			chunks[chunk] = length == 0? new int[INITIAL_CHUNK_SIZE] : Arrays.copyOf(chunks[chunk], grownLength(length));
+		}
+		return chunks;
+	}
+
+	static long[][] ensureCapacity(long[][] chunks, int chunk, int offset) {
+		if(chunk >= chunks.length) {
+			chunks = Arrays.copyOf(chunks, Math.max(4, chunks.length * 2));
+		}
+		int length = chunks[chunk] == null? 0 : chunks[chunk].length;
+		if(offset == length) {
+			chunks[chunk] = length == 0? new long[INITIAL_CHUNK_SIZE] : Arrays.copyOf(chunks[chunk], grownLength(length));
+		}
+		return chunks;
+	}
+
+	static double[][] ensureCapacity(double[][] chunks, int chunk, int offset) {
+		if(chunk >= chunks.length) {
+			chunks = Arrays.copyOf(chunks, Math.max(4, chunks.length * 2));
+		}
+		int length = chunks[chunk] == null? 0 : chunks[chunk].length;
+		if(offset == length) {
+			chunks[chunk] = length == 0? new double[INITIAL_CHUNK_SIZE] : Arrays.copyOf(chunks[chunk], grownLength(length));
+		}
+		return chunks;
+	}
+
+	static Object[][] ensureCapacity(Object[][] chunks, int chunk, int offset) {
+		if(chunk >= chunks.length) {
+			chunks = Arrays.copyOf(chunks, Math.max(4, chunks.length * 2));
+		}
+		int length = chunks[chunk] == null? 0 : chunks[chunk].length;
+		if(offset == length) {
+			chunks[chunk] = length == 0? new Object[INITIAL_CHUNK_SIZE] : Arrays.copyOf(chunks[chunk], grownLength(length));
+		}
+		return chunks;
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + "[" + name + ", size=" + size + "]";
+	}
+
+}
@@ -0,0 +1,188 @@
+package uk.co.lukestevens.jdbc.columnar;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import uk.co.lukestevens.db.DatabaseResult;
+
+/**
+ * The rows of a result read into a column for each field, rather than an object
+ * for each row. Integer and floating point columns are stored as primitive arrays
+ * and strings are dictionary encoded, so wide numeric results use far less memory
+ * than a list of parsed objects, and no values are boxed.<br>
+ * Columns can be read sequentially as primitive streams, or randomly by row index.
+ *
+ * @author luke.stevens
+ */
+public class ColumnarResult {
+
+	private final List<Column> columns = new ArrayList<>();
+	private final Map<String, Column> byName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	private int rowCount = 0;
+
+	ColumnarResult() {}
+
+	/**
+	 * Reads every row of a result into columns. The result is not closed.
+	 * @param result The result to read
+	 * @return The columns of the result
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If the result cannot be read
+	 */
+	public static ColumnarResult read(DatabaseResult result) throws SQLException, IOException {
+		return read(Collections.singletonList(result));
+	}
+
+	/**
+	 * Reads every row of several results with the same columns into one set of
+	 * columns, for example the result of each shard of a
+	 * {@link uk.co.lukestevens.jdbc.shard.ShardedResult#getResults() sharded query}.
+	 * The results are not closed.
+	 * @param results The results to read, in order
+	 * @return The columns of the results
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be read
+	 */
+	public static ColumnarResult read(List<? extends DatabaseResult> results) throws SQLException, IOException {
+		ColumnarResult columnar = new ColumnarResult();
+		for(DatabaseResult result : results) {
+			result.processResultSet(columnar::append);
+		}
+		if(columnar.rowCount == 0 && !results.isEmpty()) {
+			columnar.createColumns(results.get(0).getResultSet().getMetaData());
+		}
+		return columnar;
+	}
+
+	void append(ResultSet rs) throws SQLException {
+		if(rowCount == 0 && columns.isEmpty()) {
+			this.createColumns(rs.getMetaData());
+		}
+		for(int i = 0; i < columns.size(); i++) {
+			columns.get(i).read(rs, i + 1);
+		}
+		rowCount++;
+	}
+
+	void createColumns(ResultSetMetaData meta) throws SQLException {
+		for(int i = 1; i <= meta.getColumnCount(); i++) {
+			String name = meta.getColumnLabel(i);
+			Column column = createColumn(name, meta.getColumnType(i));
+			columns.add(column);
+			byName.putIfAbsent(name, column);
+		}
+	}
+
+	static Column createColumn(String name, int type) {
+		switch (type) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+			return new IntColumn(name);
+		case Types.BIGINT:
+			return new LongColumn(name);
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return new DoubleColumn(name);
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.LONGVARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+		case Types.LONGNVARCHAR:
+			return new StringColumn(name);
+		default:
+			return new ObjectColumn(name);
+		}
+	}
+
+	/**
+	 * @return The number of rows read
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return Every column, in the order of the result
+	 */
+	public List<Column> getColumns() {
+		return Collections.unmodifiableList(columns);
+	}
+
+	/**
+	 * @param index The index of the column, starting at 0
+	 * @return The column
+	 */
+	public Column getColumn(int index) {
+		return columns.get(index);
+	}
+
+	/**
+	 * @param name The label of the column, ignoring case
+	 * @return The column
+	 * @throws IllegalArgumentException If there is no column with the label
+	 */
+	public Column getColumn(String name) {
+		Column column = byName.get(name);
+		if(column == null) {
+			throw new IllegalArgumentException("No column named " + name);
+		}
+		return column;
+	}
+
+	/**
+	 * @param name The label of an integer column, ignoring case
+	 * @return The column
+	 * @throws IllegalArgumentException If there is no integer column with the label
+	 */
+	public IntColumn getIntColumn(String name) {
+		return this.getColumn(name, IntColumn.class);
+	}
+
+	/**
+	 * @param name The label of a big integer column, ignoring case
+	 * @return The column
+	 * @throws IllegalArgumentException If there is no big integer column with the label
+	 */
+	public LongColumn getLongColumn(String name) {
+		return this.getColumn(name, LongColumn.class);
+	}
+
+	/**
+	 * @param name The label of a floating point column, ignoring case
+	 * @return The column
+	 * @throws IllegalArgumentException If there is no floating point column with the label
+	 */
+	public DoubleColumn getDoubleColumn(String name) {
+		return this.getColumn(name, DoubleColumn.class);
+	}
+
+	/**
+	 * @param name The label of a string column, ignoring case
+	 * @return The column
+	 * @throws IllegalArgumentException If there is no string column with the label
+	 */
+	public StringColumn getStringColumn(String name) {
+		return this.getColumn(name, StringColumn.class);
+	}
+
+	<C extends Column> C getColumn(String name, Class<C> type) {
+		Column column = this.getColumn(name);
+		if(!type.isInstance(column)) {
+			throw new IllegalArgumentException("Column " + name + " is a "
+					+ column.getClass().getSimpleName() + ", not a " + type.getSimpleName());
+		}
+		return type.cast(column);
+	}
+
+}
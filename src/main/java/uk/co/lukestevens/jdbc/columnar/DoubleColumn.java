@@ -0,0 +1,62 @@
+package uk.co.lukestevens.jdbc.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+/**
+ * A column of <code>double</code> values. Null values are read as 0.
+ *
+ * @author luke.stevens
+ */
+public class DoubleColumn extends Column {
+
+	private double[][] chunks = new double[0][];
+
+	DoubleColumn(String name) {
+		super(name);
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The value of this column for the row, or 0 if it is null
+	 */
+	public double getDouble(int row) {
+		checkIndex(row);
+		return chunks[row >>> CHUNK_BITS][row & CHUNK_MASK];
+	}
+
+	@Override
+	public Double get(int row) {
+		return this.isNull(row)? null : this.getDouble(row);
+	}
+
+	/**
+	 * @return A stream of every value in this column, in row order
+	 */
+	public DoubleStream stream() {
+		return IntStream.range(0, this.size()).mapToDouble(row -> chunks[row >>> CHUNK_BITS][row & CHUNK_MASK]);
+	}
+
+	/**
+	 * @return A copy of every value in this column, in row order
+	 */
+	public double[] toArray() {
+		double[] values = new double[this.size()];
+		for(int copied = 0, chunk = 0; copied < values.length; chunk++) {
+			int length = Math.min(CHUNK_SIZE, values.length - copied);
+			System.arraycopy(chunks[chunk], 0, values, copied, length);
+			copied += length;
+		}
+		return values;
+	}
+
+	@Override
+	boolean readValue(ResultSet rs, int index, int chunk, int offset) throws SQLException {
+		chunks = ensureCapacity(chunks, chunk, offset);
+		chunks[chunk][offset] = rs.getDouble(index);
+		return !rs.wasNull();
+	}
+
+}
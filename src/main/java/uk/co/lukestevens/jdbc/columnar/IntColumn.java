@@ -0,0 +1,61 @@
+package uk.co.lukestevens.jdbc.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.stream.IntStream;
+
+/**
+ * A column of <code>int</code> values. Null values are read as 0.
+ *
+ * @author luke.stevens
+ */
+public class IntColumn extends Column {
+
+	private int[][] chunks = new int[0][];
+
+	IntColumn(String name) {
+		super(name);
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The value of this column for the row, or 0 if it is null
+	 */
+	public int getInt(int row) {
+		checkIndex(row);
+		return chunks[row >>> CHUNK_BITS][row & CHUNK_MASK];
+	}
+
+	@Override
+	public Integer get(int row) {
+		return this.isNull(row)? null : this.getInt(row);
+	}
+
+	/**
+	 * @return A stream of every value in this column, in row order
+	 */
+	public IntStream stream() {
+		return IntStream.range(0, this.size()).map(row -> chunks[row >>> CHUNK_BITS][row & CHUNK_MASK]);
+	}
+
+	/**
+	 * @return A copy of every value in this column, in row order
+	 */
+	public int[] toArray() {
+		int[] values = new int[this.size()];
+		for(int copied = 0, chunk = 0; copied < values.length; chunk++) {
+			int length = Math.min(CHUNK_SIZE, values.length - copied);
+			System.arraycopy(chunks[chunk], 0, values, copied, length);
+			copied += length;
+		}
+		return values;
+	}
+
+	@Override
+	boolean readValue(ResultSet rs, int index, int chunk, int offset) throws SQLException {
+		chunks = ensureCapacity(chunks, chunk, offset);
+		chunks[chunk][offset] = rs.getInt(index);
+		return !rs.wasNull();
+	}
+
+}
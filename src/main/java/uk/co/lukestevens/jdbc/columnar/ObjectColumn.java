@@ -0,0 +1,43 @@
+package uk.co.lukestevens.jdbc.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A column of values with no primitive representation,
+ * such as decimals and timestamps, stored as objects
+ *
+ * @author luke.stevens
+ */
+public class ObjectColumn extends Column {
+
+	private Object[][] chunks = new Object[0][];
+
+	ObjectColumn(String name) {
+		super(name);
+	}
+
+	@Override
+	public Object get(int row) {
+		checkIndex(row);
+		return chunks[row >>> CHUNK_BITS][row & CHUNK_MASK];
+	}
+
+	/**
+	 * @return A stream of every value in this column, in row order
+	 */
+	public Stream<Object> stream() {
+		return IntStream.range(0, this.size()).mapToObj(row -> chunks[row >>> CHUNK_BITS][row & CHUNK_MASK]);
+	}
+
+	@Override
+	boolean readValue(ResultSet rs, int index, int chunk, int offset) throws SQLException {
+		chunks = ensureCapacity(chunks, chunk, offset);
+		Object value = rs.getObject(index);
+		chunks[chunk][offset] = value;
+		return value != null;
+	}
+
+}
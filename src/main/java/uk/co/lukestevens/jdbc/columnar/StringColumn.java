@@ -0,0 +1,97 @@
+package uk.co.lukestevens.jdbc.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A column of strings, dictionary encoded so each distinct value is stored once
+ * and each row only stores the <code>int</code> code of its value.
+ *
+ * @author luke.stevens
+ */
+public class StringColumn extends Column {
+
+	/**
+	 * The code of a null value
+	 */
+	public static final int NULL_CODE = -1;
+
+	private final List<String> dictionary = new ArrayList<>();
+	private final Map<String, Integer> codes = new HashMap<>();
+	private int[][] chunks = new int[0][];
+
+	StringColumn(String name) {
+		super(name);
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The value of this column for the row, or null
+	 */
+	public String getString(int row) {
+		int code = this.getCode(row);
+		return code == NULL_CODE? null : dictionary.get(code);
+	}
+
+	@Override
+	public String get(int row) {
+		return this.getString(row);
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The code of the row's value in the dictionary, or {@value #NULL_CODE} if it is null
+	 */
+	public int getCode(int row) {
+		checkIndex(row);
+		return chunks[row >>> CHUNK_BITS][row & CHUNK_MASK];
+	}
+
+	/**
+	 * @return Every distinct value in this column, indexed by code in the order they were read
+	 */
+	public List<String> getDictionary() {
+		return Collections.unmodifiableList(dictionary);
+	}
+
+	/**
+	 * @return A stream of the code of every value in this column, in row order
+	 */
+	public IntStream codes() {
+		return IntStream.range(0, this.size()).map(row -> chunks[row >>> CHUNK_BITS][row & CHUNK_MASK]);
+	}
+
+	/**
+	 * @return A stream of every value in this column, in row order
+	 */
+	public Stream<String> stream() {
+		return this.codes().mapToObj(code -> code == NULL_CODE? null : dictionary.get(code));
+	}
+
+	@Override
+	boolean readValue(ResultSet rs, int index, int chunk, int offset) throws SQLException {
+		chunks = ensureCapacity(chunks, chunk, offset);
+		String value = rs.getString(index);
+		if(value == null) {
+			chunks[chunk][offset] = NULL_CODE;
+			return false;
+		}
+
+		Integer code = codes.get(value);
+		if(code == null) {
+			code = dictionary.size();
+			dictionary.add(value);
+			codes.put(value, code);
+		}
+		chunks[chunk][offset] = code;
+		return true;
+	}
+
+}
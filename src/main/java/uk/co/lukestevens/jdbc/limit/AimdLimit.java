@@ -0,0 +1,49 @@
+package uk.co.lukestevens.jdbc.limit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An additive increase, multiplicative decrease limit. The limit grows by one
+ * after each call that completes within the latency threshold while the limit
+ * is being used, and shrinks by the backoff ratio after each call that is
+ * dropped or exceeds the latency threshold.
+ *
+ * @author luke.stevens
+ */
+public class AimdLimit implements LimitAlgorithm {
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyThreshold;
+	private final double backoffRatio;
+
+	/**
+	 * Creates a new AIMD limit
+	 * @param minLimit The lowest the limit can fall to
+	 * @param maxLimit The highest the limit can grow to
+	 * @param latencyThreshold The latency in milliseconds above which a call is treated as dropped
+	 * @param backoffRatio The ratio the limit is multiplied by after a dropped call, between 0.5 and 1
+	 */
+	public AimdLimit(int minLimit, int maxLimit, long latencyThreshold, double backoffRatio) {
+		if(backoffRatio < 0.5 || backoffRatio >= 1) {
+			throw new IllegalArgumentException("Backoff ratio must be at least 0.5 and less than 1");
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.latencyThreshold = TimeUnit.MILLISECONDS.toNanos(latencyThreshold);
+		this.backoffRatio = backoffRatio;
+	}
+
+	@Override
+	public int update(int limit, long rtt, int inFlight, boolean dropped) {
+		if(dropped || rtt > latencyThreshold) {
+			limit = (int) (limit * backoffRatio);
+		}
+		else if(inFlight * 2 >= limit) {
+			// Only grow while the limit is being used
+			limit++;
+		}
+		return Math.min(maxLimit, Math.max(minLimit, limit));
+	}
+
+}
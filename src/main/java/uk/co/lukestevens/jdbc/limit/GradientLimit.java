@@ -0,0 +1,74 @@
+package uk.co.lukestevens.jdbc.limit;
+
+/**
+ * A limit that follows the gradient between the long term average latency and
+ * the latency of each call. While calls are as fast as usual the limit grows,
+ * allowing a small queue of about the square root of the limit. Once calls are
+ * slower than the tolerance allows, the limit shrinks in proportion, so it settles
+ * near the point where more concurrency only adds latency.<br>
+ * Changes are smoothed, and the long term average drifts down after a period of
+ * high latency so the limit can recover.
+ *
+ * @author luke.stevens
+ */
+public class GradientLimit implements LimitAlgorithm {
+
+	// Long term average over roughly the last 600 calls
+	private static final double LONG_WINDOW_ALPHA = 2.0 / 601;
+	private static final double SMOOTHING = 0.2;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+
+	private double longRtt = 0;
+	private double estimate = 0;
+
+	/**
+	 * Creates a new gradient limit
+	 * @param minLimit The lowest the limit can fall to
+	 * @param maxLimit The highest the limit can grow to
+	 * @param tolerance How many times slower than the long term average
+	 * calls can be before the limit is reduced, at least 1
+	 */
+	public GradientLimit(int minLimit, int maxLimit, double tolerance) {
+		if(tolerance < 1) {
+			throw new IllegalArgumentException("Tolerance must be at least 1");
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.tolerance = tolerance;
+	}
+
+	@Override
+	public int update(int limit, long rtt, int inFlight, boolean dropped) {
+		// The estimate is kept as a fraction, so smoothed changes are not lost to rounding
+		if(estimate == 0 || (int) estimate != limit) {
+			estimate = limit;
+		}
+		double shortRtt = Math.max(1, rtt);
+		longRtt = longRtt == 0? shortRtt : longRtt + (shortRtt - longRtt) * LONG_WINDOW_ALPHA;
+
+		// Let the average recover after a burst of slow calls
+		if(longRtt / shortRtt > 2) {
+			longRtt *= 0.95;
+		}
+
+		double target;
+		if(dropped) {
+			target = estimate * 0.5;
+		}
+		else if(inFlight * 2 < estimate) {
+			// The limit is not being used, so there is nothing to learn
+			return limit;
+		}
+		else {
+			double gradient = Math.max(0.5, Math.min(1, tolerance * longRtt / shortRtt));
+			target = estimate * gradient + Math.sqrt(estimate);
+		}
+
+		estimate = Math.min(maxLimit, Math.max(minLimit, estimate * (1 - SMOOTHING) + target * SMOOTHING));
+		return (int) estimate;
+	}
+
+}
@@ -0,0 +1,43 @@
+package uk.co.lukestevens.jdbc.limit;
+
+/**
+ * An interface defining how a {@link LimitedDatabase} adjusts the number
+ * of calls it allows in flight, after each call completes. Calls to an
+ * algorithm are never made concurrently, so implementations can keep state.
+ *
+ * @author luke.stevens
+ */
+@FunctionalInterface
+public interface LimitAlgorithm {
+
+	/**
+	 * @param limit The current limit
+	 * @param rtt How long the call took in nanoseconds
+	 * @param inFlight The number of calls in flight when the call started, including itself
+	 * @param dropped Whether the call failed because the database was overloaded,
+	 * for example by timing out
+	 * @return The new limit
+	 */
+	int update(int limit, long rtt, int inFlight, boolean dropped);
+
+	/**
+	 * @param latencyThreshold The latency in milliseconds above which
+	 * a call is treated as dropped
+	 * @return An additive increase, multiplicative decrease algorithm with a limit
+	 * between 1 and 1000, which backs off by 10% for each dropped call
+	 * @see AimdLimit
+	 */
+	static LimitAlgorithm aimd(long latencyThreshold) {
+		return new AimdLimit(1, 1000, latencyThreshold, 0.9);
+	}
+
+	/**
+	 * @return A gradient algorithm with a limit between 1 and 1000, which tolerates
+	 * latency up to twice the long term average before reducing the limit
+	 * @see GradientLimit
+	 */
+	static LimitAlgorithm gradient() {
+		return new GradientLimit(1, 1000, 2.0);
+	}
+
+}
@@ -0,0 +1,23 @@
+package uk.co.lukestevens.jdbc.limit;
+
+import java.sql.SQLTransientException;
+
+/**
+ * Thrown by a {@link LimitedDatabase} when a call is rejected because
+ * too many calls are in flight. The call was not sent to the database,
+ * so it is safe to retry later.
+ *
+ * @author luke.stevens
+ */
+public class LimitExceededException extends SQLTransientException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param reason A description of why the call was rejected
+	 */
+	public LimitExceededException(String reason) {
+		super(reason);
+	}
+
+}
@@ -0,0 +1,271 @@
+package uk.co.lukestevens.jdbc.limit;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import uk.co.lukestevens.db.Database;
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.result.WrappedDatabaseResult;
+
+/**
+ * A wrapper around a {@link Database} that limits the number of queries and
+ * updates in flight. The limit is adjusted after every call by a {@link LimitAlgorithm},
+ * using how long the call took, so it rises while the database keeps up and falls
+ * as soon as calls slow down. This keeps throughput near its peak when the database
+ * is overloaded, rather than letting calls pile up until they all time out.<br>
+ * Calls over the limit wait in a bounded queue for up to the queue timeout, and
+ * are rejected with a {@link LimitExceededException} if the queue is full or the
+ * timeout passes. A query is in flight until its result is closed, but the limit
+ * is adjusted from how long the query took to return its result, so the time
+ * spent reading the result does not count as database latency.
+ *
+ * @author luke.stevens
+ */
+public class LimitedDatabase implements Database {
+
+	private final Database database;
+	private final LimitAlgorithm algorithm;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+
+	private int limit;
+	private int inFlight = 0;
+	private int queued = 0;
+	private volatile int maxQueue = 0;
+	private volatile long queueTimeout = 0;
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * Creates a new limited database using a gradient limit, starting at 10 calls in flight
+	 * @param database The database to limit calls to
+	 */
+	public LimitedDatabase(Database database) {
+		this(database, LimitAlgorithm.gradient(), 10);
+	}
+
+	/**
+	 * Creates a new limited database
+	 * @param database The database to limit calls to
+	 * @param algorithm Adjusts the limit after each call
+	 * @param initialLimit The number of calls allowed in flight until the limit is adjusted
+	 */
+	public LimitedDatabase(Database database, LimitAlgorithm algorithm, int initialLimit) {
+		if(initialLimit < 1) {
+			throw new IllegalArgumentException("Initial limit must be at least 1");
+		}
+		this.database = database;
+		this.algorithm = algorithm;
+		this.limit = initialLimit;
+	}
+
+	@Override
+	public DatabaseResult query(String query, Object... params) throws SQLException {
+		int started = this.acquire();
+		long start = System.nanoTime();
+		DatabaseResult result;
+		try {
+			result = database.query(query, params);
+		} catch (SQLException | RuntimeException e) {
+			this.adjust(start, started, e);
+			this.finish();
+			throw e;
+		}
+
+		this.adjust(start, started, null);
+		if(result instanceof WrappedDatabaseResult) {
+			// The query holds its connection until its result is closed
+			((WrappedDatabaseResult) result).onClose(this::finish);
+		}
+		else {
+			this.finish();
+		}
+		return result;
+	}
+
+	@Override
+	public Optional<Long> update(String query, Object... params) throws SQLException {
+		int started = this.acquire();
+		long start = System.nanoTime();
+		try {
+			Optional<Long> result = database.update(query, params);
+			this.adjust(start, started, null);
+			return result;
+		} catch (SQLException | RuntimeException e) {
+			this.adjust(start, started, e);
+			throw e;
+		} finally {
+			this.finish();
+		}
+	}
+
+	/**
+	 * Waits for a call to be allowed in flight
+	 * @return The number of calls in flight, including this one
+	 * @throws LimitExceededException If the queue is full, or the call waited
+	 * longer than the queue timeout
+	 * @throws SQLException If the thread is interrupted while waiting
+	 */
+	int acquire() throws SQLException {
+		lock.lock();
+		try {
+			// Calls already waiting go first, unless the queue is full
+			if(inFlight < limit && (queued == 0 || queued >= maxQueue)) {
+				calls.increment();
+				return ++inFlight;
+			}
+			if(queued >= maxQueue) {
+				rejected.increment();
+				throw new LimitExceededException("Rejected call, as " + inFlight + " calls are in flight with a limit of " + limit);
+			}
+
+			queued++;
+			try {
+				long nanos = TimeUnit.MILLISECONDS.toNanos(queueTimeout);
+				while(inFlight >= limit) {
+					if(nanos <= 0) {
+						rejected.increment();
+						throw new LimitExceededException("Timed out after " + queueTimeout
+								+ "ms waiting for one of " + inFlight + " calls in flight to finish");
+					}
+					nanos = available.awaitNanos(nanos);
+				}
+				calls.increment();
+				return ++inFlight;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while waiting to call the database", e);
+			} finally {
+				queued--;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adjusts the limit from how long a call took, once the database has responded
+	 * @param start When the call started, from {@link System#nanoTime()}
+	 * @param started The number of calls in flight when the call started
+	 * @param error The exception thrown by the call, or null if it succeeded
+	 */
+	void adjust(long start, int started, Exception error) {
+		long rtt = System.nanoTime() - start;
+		boolean overloaded = error instanceof SQLTransientException;
+		if(overloaded) {
+			dropped.increment();
+		}
+
+		lock.lock();
+		try {
+			int previous = limit;
+			limit = Math.max(1, algorithm.update(limit, rtt, started, overloaded));
+			if(limit > previous) {
+				available.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Marks a call as no longer in flight, letting a queued call start
+	 */
+	void finish() {
+		lock.lock();
+		try {
+			inFlight--;
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param maxQueue The number of calls that can wait for another call to finish,
+	 * once the limit has been reached (default 0, rejecting calls straight away)
+	 */
+	public void setMaxQueue(int maxQueue) {
+		this.maxQueue = maxQueue;
+	}
+
+	/**
+	 * @param queueTimeout How long in milliseconds a queued call waits
+	 * before it is rejected (default 0)
+	 */
+	public void setQueueTimeout(long queueTimeout) {
+		this.queueTimeout = queueTimeout;
+	}
+
+	/**
+	 * @return The number of calls currently allowed in flight
+	 */
+	public int getLimit() {
+		lock.lock();
+		try {
+			return limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of calls in flight
+	 */
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of calls waiting for another call to finish
+	 */
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return queued;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of calls allowed through to the database
+	 */
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	/**
+	 * @return The number of calls rejected because the limit was reached
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * @return The number of calls that failed with a transient error,
+	 * such as a timeout, which reduced the limit
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "LimitedDatabase[limit=" + this.getLimit() + ", inFlight=" + this.getInFlight()
+				+ ", queued=" + this.getQueueDepth() + "]";
+	}
+
+}
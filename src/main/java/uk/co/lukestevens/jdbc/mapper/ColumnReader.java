@@ -0,0 +1,134 @@
+package uk.co.lukestevens.jdbc.mapper;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Date;
+
+/**
+ * An interface defining how a single column is read from
+ * a result set into the type expected by a mapped class
+ *
+ * @author luke.stevens
+ */
+@FunctionalInterface
+interface ColumnReader {
+
+	/**
+	 * @param rs The result set, positioned on the current row
+	 * @param index The index of the column to read
+	 * @return The column value, converted to the target type
+	 * @throws SQLException If a database error occurs
+	 */
+	Object read(ResultSet rs, int index) throws SQLException;
+
+	/**
+	 * Chooses the typed getter to use for a target type once, so
+	 * no type checks are needed when reading each row
+	 * @param type The type the column should be read as
+	 * @return A reader for the type
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static ColumnReader forType(Class<?> type) {
+		if(type == int.class) {
+			return ResultSet::getInt;
+		}
+		if(type == long.class) {
+			return ResultSet::getLong;
+		}
+		if(type == double.class) {
+			return ResultSet::getDouble;
+		}
+		if(type == float.class) {
+			return ResultSet::getFloat;
+		}
+		if(type == short.class) {
+			return ResultSet::getShort;
+		}
+		if(type == byte.class) {
+			return ResultSet::getByte;
+		}
+		if(type == boolean.class) {
+			return ResultSet::getBoolean;
+		}
+		if(type == Integer.class) {
+			return (rs, i) -> nullable(rs, rs.getInt(i));
+		}
+		if(type == Long.class) {
+			return (rs, i) -> nullable(rs, rs.getLong(i));
+		}
+		if(type == Double.class) {
+			return (rs, i) -> nullable(rs, rs.getDouble(i));
+		}
+		if(type == Float.class) {
+			return (rs, i) -> nullable(rs, rs.getFloat(i));
+		}
+		if(type == Short.class) {
+			return (rs, i) -> nullable(rs, rs.getShort(i));
+		}
+		if(type == Byte.class) {
+			return (rs, i) -> nullable(rs, rs.getByte(i));
+		}
+		if(type == Boolean.class) {
+			return (rs, i) -> nullable(rs, rs.getBoolean(i));
+		}
+		if(type == String.class) {
+			return ResultSet::getString;
+		}
+		if(type == BigDecimal.class) {
+			return ResultSet::getBigDecimal;
+		}
+		if(type == byte[].class) {
+			return ResultSet::getBytes;
+		}
+		if(type == Timestamp.class || type == Date.class) {
+			return ResultSet::getTimestamp;
+		}
+		if(type == java.sql.Date.class) {
+			return ResultSet::getDate;
+		}
+		if(type == LocalDateTime.class) {
+			return (rs, i) -> {
+				Timestamp ts = rs.getTimestamp(i);
+				return ts == null? null : ts.toLocalDateTime();
+			};
+		}
+		if(type == LocalDate.class) {
+			return (rs, i) -> {
+				java.sql.Date date = rs.getDate(i);
+				return date == null? null : date.toLocalDate();
+			};
+		}
+		if(type == LocalTime.class) {
+			return (rs, i) -> {
+				java.sql.Time time = rs.getTime(i);
+				return time == null? null : time.toLocalTime();
+			};
+		}
+		if(type == Instant.class) {
+			return (rs, i) -> {
+				Timestamp ts = rs.getTimestamp(i);
+				return ts == null? null : ts.toInstant();
+			};
+		}
+		if(type.isEnum()) {
+			// Enums are persisted by their string value
+			Class<? extends Enum> enumType = (Class<? extends Enum>) type;
+			return (rs, i) -> {
+				String value = rs.getString(i);
+				return value == null? null : Enum.valueOf(enumType, value);
+			};
+		}
+		return (rs, i) -> rs.getObject(i, type);
+	}
+
+	static Object nullable(ResultSet rs, Object value) throws SQLException {
+		return rs.wasNull()? null : value;
+	}
+
+}
@@ -0,0 +1,258 @@
+package uk.co.lukestevens.jdbc.mapper;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import javax.persistence.Column;
+
+/**
+ * Compiles mappers that convert rows of a given column shape into
+ * instances of a class. Columns are matched to setters or constructor
+ * parameters once, and setters are bound using generated lambdas where
+ * possible, so no reflection or column name lookups happen per row.
+ *
+ * @author luke.stevens
+ */
+class MapperCompiler {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	/**
+	 * A mapper compiled for a single class and column shape
+	 */
+	@FunctionalInterface
+	interface CompiledMapper<T> {
+		T map(ResultSet rs) throws SQLException;
+	}
+
+	/**
+	 * Compiles a mapper for a class. If the class has a no-args constructor, columns are
+	 * mapped to setters with a matching name, ignoring case and underscores, or the
+	 * name in a {@link Column} annotation on the matching field. Otherwise columns are
+	 * mapped by position to a constructor with the same number of parameters.
+	 * @param type The class to map rows to
+	 * @param columns The labels of the columns in the result set
+	 * @return The compiled mapper
+	 * @throws SQLException If the columns cannot be mapped to the class
+	 */
+	static <T> CompiledMapper<T> compile(Class<T> type, String[] columns) throws SQLException {
+		try {
+			Constructor<T> noArgs = findNoArgsConstructor(type);
+			if(noArgs != null) {
+				CompiledMapper<T> mapper = compileSetters(type, noArgs, columns);
+				if(mapper != null) {
+					return mapper;
+				}
+			}
+
+			for(Constructor<?> constructor : type.getConstructors()) {
+				if(constructor.getParameterCount() == columns.length) {
+					return compileConstructor(type, constructor);
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new SQLException("Cannot access members of " + type.getName(), e);
+		}
+
+		throw new SQLException("Cannot map columns " + String.join(", ", columns) + " to " + type.getName());
+	}
+
+	static <T> Constructor<T> findNoArgsConstructor(Class<T> type) {
+		try {
+			Constructor<T> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return constructor;
+		} catch (NoSuchMethodException | SecurityException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Compiles a mapper that creates an instance with a no-args constructor,
+	 * and populates it using setters
+	 * @return The compiled mapper, or null if no columns match a setter
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> CompiledMapper<T> compileSetters(Class<T> type, Constructor<T> constructor, String[] columns) throws IllegalAccessException {
+		Map<String, Method> setters = findSetters(type);
+
+		List<Integer> indexes = new ArrayList<>();
+		List<ColumnReader> readers = new ArrayList<>();
+		List<BiConsumer<Object, Object>> consumers = new ArrayList<>();
+		for(int i = 0; i < columns.length; i++) {
+			Method setter = setters.get(normalise(columns[i]));
+			if(setter != null) {
+				indexes.add(i + 1);
+				readers.add(ColumnReader.forType(setter.getParameterTypes()[0]));
+				consumers.add(bindSetter(setter));
+			}
+		}
+
+		if(indexes.isEmpty()) {
+			return null;
+		}
+
+		Supplier<Object> factory = bindConstructor(constructor);
+		int[] columnIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+		ColumnReader[] columnReaders = readers.toArray(new ColumnReader[0]);
+		BiConsumer<Object, Object>[] setterConsumers = consumers.toArray(new BiConsumer[0]);
+		return rs -> {
+			Object t = factory.get();
+			for(int i = 0; i < columnIndexes.length; i++) {
+				setterConsumers[i].accept(t, columnReaders[i].read(rs, columnIndexes[i]));
+			}
+			return (T) t;
+		};
+	}
+
+	/**
+	 * Compiles a mapper that passes every column to a constructor by position
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> CompiledMapper<T> compileConstructor(Class<T> type, Constructor<?> constructor) throws IllegalAccessException {
+		constructor.setAccessible(true);
+		Class<?>[] parameters = constructor.getParameterTypes();
+		ColumnReader[] readers = new ColumnReader[parameters.length];
+		for(int i = 0; i < parameters.length; i++) {
+			readers[i] = ColumnReader.forType(parameters[i]);
+		}
+
+		MethodHandle handle = LOOKUP.unreflectConstructor(constructor)
+				.asSpreader(Object[].class, parameters.length)
+				.asType(MethodType.methodType(Object.class, Object[].class));
+		return rs -> {
+			Object[] args = new Object[readers.length];
+			for(int i = 0; i < readers.length; i++) {
+				args[i] = readers[i].read(rs, i + 1);
+			}
+			try {
+				return (T) handle.invokeExact(args);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new SQLException("Failed to construct " + type.getName(), e);
+			}
+		};
+	}
+
+	/**
+	 * @return All single argument setters on a class, keyed by
+	 * their normalised property name and any mapped column name
+	 */
+	static Map<String, Method> findSetters(Class<?> type) {
+		Map<String, Method> setters = new HashMap<>();
+		for(Method method : type.getMethods()) {
+			String name = method.getName();
+			if(name.length() > 3 && name.startsWith("set") && method.getParameterCount() == 1
+					&& !Modifier.isStatic(method.getModifiers())) {
+				setters.put(normalise(name.substring(3)), method);
+			}
+		}
+
+		// Allow columns to be mapped using the same annotations as hibernate
+		for(Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for(Field field : c.getDeclaredFields()) {
+				Column column = field.getAnnotation(Column.class);
+				Method setter = setters.get(normalise(field.getName()));
+				if(column != null && !column.name().isEmpty() && setter != null) {
+					setters.putIfAbsent(normalise(column.name()), setter);
+				}
+			}
+		}
+		return setters;
+	}
+
+	static String normalise(String name) {
+		return name.replace("_", "").toLowerCase(Locale.ROOT);
+	}
+
+	@SuppressWarnings("unchecked")
+	static Supplier<Object> bindConstructor(Constructor<?> constructor) throws IllegalAccessException {
+		MethodHandle handle = LOOKUP.unreflectConstructor(constructor);
+		if(canGenerateLambda(constructor.getDeclaringClass(), constructor.getModifiers())) {
+			try {
+				CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get",
+						MethodType.methodType(Supplier.class),
+						MethodType.methodType(Object.class),
+						handle,
+						MethodType.methodType(constructor.getDeclaringClass()));
+				return (Supplier<Object>) site.getTarget().invokeExact();
+			} catch (Throwable e) {
+				// Fall back to invoking the method handle directly
+			}
+		}
+
+		MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+		return () -> {
+			try {
+				return generic.invokeExact();
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException("Failed to construct " + constructor.getDeclaringClass().getName(), e);
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	static BiConsumer<Object, Object> bindSetter(Method setter) throws IllegalAccessException {
+		setter.setAccessible(true);
+		MethodHandle handle = LOOKUP.unreflect(setter);
+		Class<?> parameter = setter.getParameterTypes()[0];
+		if(canGenerateLambda(setter.getDeclaringClass(), setter.getModifiers())) {
+			try {
+				CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+						MethodType.methodType(BiConsumer.class),
+						MethodType.methodType(void.class, Object.class, Object.class),
+						handle,
+						MethodType.methodType(void.class, setter.getDeclaringClass(), MethodType.methodType(parameter).wrap().returnType()));
+				return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+			} catch (Throwable e) {
+				// Fall back to invoking the method handle directly
+			}
+		}
+
+		MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		return (t, value) -> {
+			try {
+				generic.invokeExact(t, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException("Failed to call " + setter, e);
+			}
+		};
+	}
+
+	/**
+	 * Lambdas can only be generated for public members of public classes that
+	 * are visible from this library's class loader
+	 */
+	static boolean canGenerateLambda(Class<?> type, int modifiers) {
+		if(!Modifier.isPublic(type.getModifiers()) || !Modifier.isPublic(modifiers)) {
+			return false;
+		}
+		try {
+			return Class.forName(type.getName(), false, MapperCompiler.class.getClassLoader()) == type;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+}
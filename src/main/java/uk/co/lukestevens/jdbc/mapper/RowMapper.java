@@ -0,0 +1,64 @@
+package uk.co.lukestevens.jdbc.mapper;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import uk.co.lukestevens.db.ResultParser;
+import uk.co.lukestevens.jdbc.mapper.MapperCompiler.CompiledMapper;
+
+/**
+ * A {@link ResultParser} that maps each row to an instance of a class.
+ * The columns of each result set are matched to the class once, on the
+ * first row parsed, so subsequent rows are mapped without any column
+ * name lookups. Instances should be created using {@link RowMappers#forClass(Class)}
+ *
+ * @author luke.stevens
+ *
+ * @param <T> The type of object to map rows to
+ */
+public class RowMapper<T> implements ResultParser<T> {
+	
+	private final Class<T> type;
+	private volatile Binding<T> binding;
+
+	/**
+	 * Creates a new row mapper
+	 * @param type The class to map rows to
+	 */
+	RowMapper(Class<T> type) {
+		this.type = type;
+	}
+
+	@Override
+	public T parse(ResultSet rs) throws SQLException {
+		Binding<T> current = binding;
+		if(current == null || current.rs.get() != rs) {
+			current = new Binding<>(rs, RowMappers.compile(type, rs.getMetaData()));
+			binding = current;
+		}
+		return current.mapper.map(rs);
+	}
+	
+	/**
+	 * @return The class this mapper maps rows to
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+	
+	/**
+	 * The compiled mapper used for the most recent result set
+	 */
+	static class Binding<T> {
+		
+		final WeakReference<ResultSet> rs;
+		final CompiledMapper<T> mapper;
+		
+		Binding(ResultSet rs, CompiledMapper<T> mapper) {
+			this.rs = new WeakReference<>(rs);
+			this.mapper = mapper;
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package uk.co.lukestevens.jdbc.mapper;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import uk.co.lukestevens.jdbc.mapper.MapperCompiler.CompiledMapper;
+
+/**
+ * A static utilities class for creating {@link RowMapper}s, which
+ * can be used in place of hand-written result parsers:
+ * <pre>
+ * List&lt;Foo&gt; foos = result.parseResultSet(RowMappers.forClass(Foo.class));
+ * </pre>
+ * Mappers are compiled once for each class and column shape, and cached.
+ * 
+ * @author luke.stevens
+ */
+public class RowMappers {
+	
+	private static final Map<Class<?>, RowMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+	private static final Map<Shape, CompiledMapper<?>> COMPILED = new ConcurrentHashMap<>();
+	
+	/**
+	 * Gets a row mapper for a class. If the class has a no-args constructor, columns
+	 * are mapped to setters with a matching name, ignoring case and underscores, or
+	 * the name in a {@link javax.persistence.Column} annotation on the matching field.
+	 * Otherwise, columns are passed by position to a public constructor with the same
+	 * number of parameters.
+	 * @param type The class to map rows to
+	 * @return A row mapper for the class
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> RowMapper<T> forClass(Class<T> type) {
+		return (RowMapper<T>) MAPPERS.computeIfAbsent(type, RowMapper::new);
+	}
+	
+	/**
+	 * Clears all cached mappers
+	 */
+	public static void clearCache() {
+		MAPPERS.clear();
+		COMPILED.clear();
+	}
+	
+	/**
+	 * Gets the compiled mapper for a class and column shape, compiling it if necessary
+	 * @param type The class to map rows to
+	 * @param metadata The metadata of the result set being mapped
+	 * @return The compiled mapper
+	 * @throws SQLException If the columns cannot be mapped to the class
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> CompiledMapper<T> compile(Class<T> type, ResultSetMetaData metadata) throws SQLException {
+		String[] columns = new String[metadata.getColumnCount()];
+		for(int i = 0; i < columns.length; i++) {
+			columns[i] = metadata.getColumnLabel(i + 1);
+		}
+		
+		Shape shape = new Shape(type, columns);
+		CompiledMapper<T> mapper = (CompiledMapper<T>) COMPILED.get(shape);
+		if(mapper == null) {
+			mapper = MapperCompiler.compile(type, columns);
+			COMPILED.putIfAbsent(shape, mapper);
+		}
+		return mapper;
+	}
+	
+	/**
+	 * The key compiled mappers are cached by
+	 */
+	static class Shape {
+		
+		final Class<?> type;
+		final String[] columns;
+		final int hash;
+		
+		Shape(Class<?> type, String[] columns) {
+			this.type = type;
+			this.columns = columns;
+			this.hash = 31 * type.hashCode() + Arrays.hashCode(columns);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Shape)) {
+				return false;
+			}
+			Shape other = (Shape) obj;
+			return type == other.type && Arrays.equals(columns, other.columns);
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+package uk.co.lukestevens.jdbc.metrics;
+
+/**
+ * An interface for recording how long each phase of a database call takes.
+ * Implementations can be set on a database using
+ * {@link uk.co.lukestevens.jdbc.AbstractDatabase#setMetrics(DatabaseMetrics)},
+ * either using the in-process {@link InMemoryDatabaseMetrics}, or an adapter
+ * to an external metrics library.<br>
+ * Methods are called on the thread making the database call,
+ * so implementations must be thread safe and should not block.
+ *
+ * @author luke.stevens
+ */
+public interface DatabaseMetrics {
+
+	/**
+	 * The SQL recorded against the acquire phase of a transaction, which
+	 * gets its connection before any statement is known
+	 */
+	String TRANSACTION = "<transaction>";
+
+	/**
+	 * The phases of a database call that are timed
+	 */
+	enum Phase {
+		/** Getting a connection to the database */
+		ACQUIRE,
+		/** Preparing a statement and binding its parameters */
+		PREPARE,
+		/** Executing a statement */
+		EXECUTE,
+		/** Reading a query's result, from execution until the result is closed */
+		ITERATE
+	}
+
+	/**
+	 * Records the time taken by a phase of a database call
+	 * @param phase The phase of the call
+	 * @param sql The SQL being executed
+	 * @param nanos The time taken in nanoseconds
+	 * @param success Whether the phase completed without an exception
+	 */
+	void record(Phase phase, String sql, long nanos, boolean success);
+
+	/**
+	 * Records the number of rows read from a query's result, once it is closed
+	 * @param sql The SQL that was executed
+	 * @param rows The number of rows read
+	 */
+	default void recordRows(String sql, long rows) {
+		// Not recorded by default
+	}
+
+	/**
+	 * Records how long the database took to warm up, once it has finished
+	 * @param nanos The time taken in nanoseconds
+	 */
+	default void recordWarmUp(long nanos) {
+		// Not recorded by default
+	}
+
+}
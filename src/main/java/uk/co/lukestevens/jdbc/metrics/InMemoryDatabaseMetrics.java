@@ -0,0 +1,120 @@
+package uk.co.lukestevens.jdbc.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The default in-process implementation of {@link DatabaseMetrics}, which
+ * keeps a {@link LatencyHistogram} for each phase of every normalised SQL statement.
+ * Recording only uses lock-free counters, so it is cheap enough to leave enabled.<br>
+ * To bound memory, once the maximum number of statements has been reached any
+ * new statements are recorded together under {@link #OTHER}.
+ *
+ * @author luke.stevens
+ */
+public class InMemoryDatabaseMetrics implements DatabaseMetrics {
+
+	/**
+	 * The default maximum number of statements recorded separately
+	 */
+	public static final int DEFAULT_MAX_STATEMENTS = 1000;
+
+	/**
+	 * The SQL under which statements are recorded once the maximum number has been reached
+	 */
+	public static final String OTHER = "<other>";
+
+	private final int maxStatements;
+	private final Map<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+
+	// Avoids normalising the same SQL on every call
+	private final Map<String, StatementMetrics> bySql = new ConcurrentHashMap<>();
+	private volatile long warmUpNanos = -1;
+
+	/**
+	 * Creates a new metrics instance, recording up to
+	 * {@value #DEFAULT_MAX_STATEMENTS} statements separately
+	 */
+	public InMemoryDatabaseMetrics() {
+		this(DEFAULT_MAX_STATEMENTS);
+	}
+
+	/**
+	 * Creates a new metrics instance
+	 * @param maxStatements The maximum number of statements recorded separately
+	 */
+	public InMemoryDatabaseMetrics(int maxStatements) {
+		this.maxStatements = maxStatements;
+	}
+
+	@Override
+	public void record(Phase phase, String sql, long nanos, boolean success) {
+		this.getOrCreate(sql).record(phase, nanos, success);
+	}
+
+	@Override
+	public void recordRows(String sql, long rows) {
+		this.getOrCreate(sql).recordRows(rows);
+	}
+
+	@Override
+	public void recordWarmUp(long nanos) {
+		this.warmUpNanos = nanos;
+	}
+
+	StatementMetrics getOrCreate(String sql) {
+		StatementMetrics metrics = bySql.get(sql);
+		if(metrics != null) {
+			return metrics;
+		}
+
+		String normalised = SqlNormaliser.normalise(sql);
+		metrics = statements.get(normalised);
+		if(metrics == null) {
+			String key = statements.size() < maxStatements? normalised : OTHER;
+			metrics = statements.computeIfAbsent(key, StatementMetrics::new);
+		}
+
+		// Unnormalised SQL can vary without bound, so stop caching it eventually
+		if(bySql.size() < maxStatements * 4) {
+			bySql.put(sql, metrics);
+		}
+		return metrics;
+	}
+
+	/**
+	 * @param sql The SQL of a statement, which will be normalised
+	 * @return The metrics for the statement, or null if it has not been recorded
+	 */
+	public StatementMetrics getStatement(String sql) {
+		StatementMetrics metrics = bySql.get(sql);
+		return metrics != null? metrics : statements.get(SqlNormaliser.normalise(sql));
+	}
+
+	/**
+	 * @return The metrics of every statement recorded, keyed by normalised SQL
+	 */
+	public Map<String, StatementMetrics> getStatements() {
+		return Collections.unmodifiableMap(statements);
+	}
+
+	/**
+	 * @return How long the database took to warm up in milliseconds,
+	 * or -1 if a warm-up has not been recorded
+	 */
+	public long getWarmUpDuration() {
+		long nanos = warmUpNanos;
+		return nanos < 0? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * Removes all recorded metrics
+	 */
+	public void reset() {
+		bySql.clear();
+		statements.clear();
+	}
+
+}
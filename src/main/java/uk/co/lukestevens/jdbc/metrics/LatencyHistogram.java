@@ -0,0 +1,142 @@
+package uk.co.lukestevens.jdbc.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies. Values are recorded in microsecond
+ * buckets whose width grows with their magnitude, so every value is counted
+ * to within 12.5% of its true value using a small, fixed amount of memory,
+ * in the same way as an HDR histogram.
+ *
+ * @author luke.stevens
+ */
+public class LatencyHistogram {
+
+	// Each power of two is split into 2^3 buckets of equal width
+	static final int SUB_BUCKET_BITS = 3;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// Values up to 2^37 microseconds, around 38 hours, have their own bucket
+	static final int MAX_EXPONENT = 36;
+	static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency
+	 * @param nanos The latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+		buckets.incrementAndGet(indexOf(micros));
+		total.add(nanos);
+
+		long current;
+		while(nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+			// Retry until the max is at least this value
+		}
+	}
+
+	static int indexOf(long micros) {
+		if(micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if(exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return The smallest value in microseconds counted in a bucket
+	 */
+	static long lowestValue(int index) {
+		if(index < SUB_BUCKETS) {
+			return index;
+		}
+		int group = index / SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (group - 1);
+	}
+
+	/**
+	 * @return The number of microseconds counted in a bucket
+	 */
+	static long bucketWidth(int index) {
+		return index < SUB_BUCKETS? 1 : 1L << (index / SUB_BUCKETS - 1);
+	}
+
+	/**
+	 * @return The number of latencies recorded
+	 */
+	public long getCount() {
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			count += buckets.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * @return The total of all latencies recorded, in nanoseconds
+	 */
+	public long getTotal() {
+		return total.sum();
+	}
+
+	/**
+	 * @return The mean latency in nanoseconds, or 0 if none have been recorded
+	 */
+	public double getMean() {
+		long count = getCount();
+		return count == 0? 0 : (double) getTotal() / count;
+	}
+
+	/**
+	 * @return The largest latency recorded in nanoseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Gets the latency at a percentile, such as 99 for the 99th percentile.
+	 * This is accurate to the width of the bucket the latency was counted in,
+	 * apart from the 100th percentile which is the exact maximum.
+	 * @param percentile The percentile, between 0 and 100
+	 * @return The latency in nanoseconds, or 0 if none have been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if(percentile >= 100) {
+			return getMax();
+		}
+		
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			count += counts[i];
+		}
+		if(count == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if(seen >= target) {
+				long midpoint = lowestValue(i) + bucketWidth(i) / 2;
+				return Math.min(TimeUnit.MICROSECONDS.toNanos(midpoint), getMax());
+			}
+		}
+		return getMax();
+	}
+
+}
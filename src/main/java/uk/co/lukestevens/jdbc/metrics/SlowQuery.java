@@ -0,0 +1,118 @@
+package uk.co.lukestevens.jdbc.metrics;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics.Phase;
+
+/**
+ * A statement recorded by a {@link SlowQueryLog} for taking
+ * longer than its threshold
+ *
+ * @author luke.stevens
+ */
+public class SlowQuery {
+
+	private final long timestamp;
+	private final Phase phase;
+	private final String sql;
+	private final List<String> parameterTypes;
+	private final long nanos;
+	private final long rowCount;
+	private final StackTraceElement callSite;
+	private volatile String plan;
+
+	SlowQuery(Phase phase, String sql, List<String> parameterTypes, long nanos, long rowCount, StackTraceElement callSite) {
+		this.timestamp = System.currentTimeMillis();
+		this.phase = phase;
+		this.sql = sql;
+		this.parameterTypes = parameterTypes;
+		this.nanos = nanos;
+		this.rowCount = rowCount;
+		this.callSite = callSite;
+	}
+
+	/**
+	 * @return The time the statement was recorded, in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return The phase that was slow, either {@link Phase#EXECUTE} or {@link Phase#ITERATE}
+	 */
+	public Phase getPhase() {
+		return phase;
+	}
+
+	/**
+	 * @return The SQL of the statement
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return The class names of each bound parameter, or null if the parameters were
+	 * bound by a {@link uk.co.lukestevens.jdbc.binder.StatementBinder} so are not known
+	 */
+	public List<String> getParameterTypes() {
+		return parameterTypes;
+	}
+
+	/**
+	 * @return How long the phase took in milliseconds
+	 */
+	public long getDuration() {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * @return The number of rows read from the result, or -1 if the statement
+	 * was slow to execute, before any rows were read
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return The first stack frame outside of this library when the phase finished,
+	 * or null if it could not be found
+	 */
+	public StackTraceElement getCallSite() {
+		return callSite;
+	}
+
+	/**
+	 * @return The query plan of the statement, or null if it has not been explained
+	 */
+	public String getPlan() {
+		return plan;
+	}
+
+	void setPlan(String plan) {
+		this.plan = plan;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Slow query: ")
+				.append(phase).append(" took ").append(getDuration()).append("ms");
+		if(rowCount >= 0) {
+			sb.append(", ").append(rowCount).append(" rows");
+		}
+		if(callSite != null) {
+			sb.append(", at ").append(callSite);
+		}
+		sb.append("\n\t").append(sql);
+		if(parameterTypes != null) {
+			sb.append("\n\tParameters: ").append(parameterTypes);
+		}
+		if(plan != null) {
+			sb.append("\n\tPlan: ").append(plan.replace("\n", "\n\t"));
+		}
+		return sb.toString();
+	}
+
+}
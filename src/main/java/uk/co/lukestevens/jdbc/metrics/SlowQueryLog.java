@@ -0,0 +1,299 @@
+package uk.co.lukestevens.jdbc.metrics;
+
+import java.io.Closeable;
+import java.security.CodeSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import uk.co.lukestevens.jdbc.binder.ParameterBinders;
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics.Phase;
+import uk.co.lukestevens.jdbc.pool.ConnectionSource;
+
+/**
+ * Records statements that take longer than a threshold to execute, or to read
+ * the result of. Slow statements are logged as warnings with their SQL, bound
+ * parameter types, row count, and call site, and the most recent are kept in memory.<br>
+ * Only a sample of slow statements are recorded, up to a maximum number each second,
+ * so a sudden slowdown does not add the cost of recording to every call. If an
+ * explain source is set, each recorded statement is explained on a separate
+ * connection in the background, and logged with its query plan.
+ *
+ * @author luke.stevens
+ */
+public class SlowQueryLog implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+	private static final CodeSource LIBRARY = SlowQueryLog.class.getProtectionDomain().getCodeSource();
+
+	private final long thresholdNanos;
+	private double sampleRate = 1.0;
+	private int maxPerSecond = 10;
+	private int historySize = 100;
+	private ConnectionSource explainSource;
+	private String explainPrefix = "EXPLAIN ";
+
+	private final Deque<SlowQuery> history = new ArrayDeque<>();
+	private final LongAdder slowCount = new LongAdder();
+	private final LongAdder droppedCount = new LongAdder();
+	private final Map<String, Boolean> libraryClasses = new ConcurrentHashMap<>();
+
+	private long window = 0;
+	private int recordedInWindow = 0;
+	private ExecutorService explainer;
+
+	/**
+	 * Creates a new slow query log
+	 * @param threshold The time in milliseconds after which a
+	 * statement's execution or iteration is considered slow
+	 */
+	public SlowQueryLog(long threshold) {
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(threshold);
+	}
+
+	/**
+	 * Checks whether a phase of a statement was slow, and records it if so.
+	 * Only the execute and iterate phases are checked.
+	 * @param phase The phase of the database call
+	 * @param sql The SQL being executed
+	 * @param params The parameters bound to the statement, or null if they are not known
+	 * @param nanos How long the phase took in nanoseconds
+	 * @param rowCount The number of rows read, or -1 if no rows have been read
+	 */
+	public void record(Phase phase, String sql, Object[] params, long nanos, long rowCount) {
+		if(nanos <= thresholdNanos || (phase != Phase.EXECUTE && phase != Phase.ITERATE)) {
+			return;
+		}
+
+		slowCount.increment();
+		if(!isSampled() || !tryAcquire()) {
+			droppedCount.increment();
+			return;
+		}
+
+		SlowQuery slowQuery = new SlowQuery(phase, sql, parameterTypes(params), nanos, rowCount, findCallSite());
+		if(explainSource != null && params != null && phase == Phase.EXECUTE) {
+			try {
+				getExplainer().execute(() -> {
+					slowQuery.setPlan(explain(sql, params));
+					log(slowQuery);
+				});
+				return;
+			} catch (RejectedExecutionException e) {
+				// Too many statements waiting to be explained, so log without a plan
+			}
+		}
+		log(slowQuery);
+	}
+
+	boolean isSampled() {
+		return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+	}
+
+	/**
+	 * @return Whether another statement can be recorded in the current second
+	 */
+	synchronized boolean tryAcquire() {
+		long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+		if(now != window) {
+			window = now;
+			recordedInWindow = 0;
+		}
+		if(recordedInWindow >= maxPerSecond) {
+			return false;
+		}
+		recordedInWindow++;
+		return true;
+	}
+
+	void log(SlowQuery slowQuery) {
+		synchronized (history) {
+			history.addFirst(slowQuery);
+			while(history.size() > historySize) {
+				history.removeLast();
+			}
+		}
+		LOGGER.warning(slowQuery.toString());
+	}
+
+	static List<String> parameterTypes(Object[] params) {
+		if(params == null) {
+			return null;
+		}
+		List<String> types = new ArrayList<>(params.length);
+		for(Object param : params) {
+			types.add(param == null? "null" : param.getClass().getName());
+		}
+		return Collections.unmodifiableList(types);
+	}
+
+	/**
+	 * @return The first frame of the current stack outside of the JDK and this library
+	 */
+	StackTraceElement findCallSite() {
+		for(StackTraceElement element : new Throwable().getStackTrace()) {
+			if(!libraryClasses.computeIfAbsent(element.getClassName(), SlowQueryLog::isLibraryClass)) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+	static boolean isLibraryClass(String className) {
+		int lambda = className.indexOf("$$Lambda");
+		if(lambda > 0) {
+			return isLibraryClass(className.substring(0, lambda));
+		}
+		if(className.startsWith("java.") || className.startsWith("javax.")
+				|| className.startsWith("sun.") || className.startsWith("jdk.")) {
+			return true;
+		}
+		try {
+			Class<?> type = Class.forName(className, false, SlowQueryLog.class.getClassLoader());
+			CodeSource source = type.getProtectionDomain().getCodeSource();
+			return source == null || (LIBRARY != null && Objects.equals(source.getLocation(), LIBRARY.getLocation()));
+		} catch (ClassNotFoundException | LinkageError | SecurityException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Explains a statement on a connection from the explain source
+	 * @param sql The SQL of the statement
+	 * @param params The parameters bound to the statement
+	 * @return The query plan, or null if the statement could not be explained
+	 */
+	String explain(String sql, Object[] params) {
+		try(Connection conn = explainSource.openConnection();
+				PreparedStatement stmt = conn.prepareStatement(explainPrefix + sql)) {
+			for(int i = 0; i < params.length; i++) {
+				ParameterBinders.bind(stmt, i + 1, params[i]);
+			}
+			StringBuilder plan = new StringBuilder();
+			try(ResultSet rs = stmt.executeQuery()) {
+				while(rs.next()) {
+					if(plan.length() > 0) {
+						plan.append('\n');
+					}
+					plan.append(rs.getString(1));
+				}
+			}
+			return plan.toString();
+		} catch (SQLException | RuntimeException e) {
+			LOGGER.log(Level.FINE, "Failed to explain slow query", e);
+			return null;
+		}
+	}
+
+	synchronized ExecutorService getExplainer() {
+		if(explainer == null) {
+			// Explains are dropped rather than queued without bound
+			explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(Math.max(1, maxPerSecond)),
+					runnable -> {
+						Thread thread = new Thread(runnable, "db-lib-slow-query-explainer");
+						thread.setDaemon(true);
+						return thread;
+					});
+		}
+		return explainer;
+	}
+
+	/**
+	 * @return The most recently recorded slow statements, newest first
+	 */
+	public List<SlowQuery> getHistory() {
+		synchronized (history) {
+			return new ArrayList<>(history);
+		}
+	}
+
+	/**
+	 * @return The number of slow statements detected, whether or not they were recorded
+	 */
+	public long getSlowCount() {
+		return slowCount.sum();
+	}
+
+	/**
+	 * @return The number of slow statements that were not recorded,
+	 * because they were not sampled or exceeded the rate limit
+	 */
+	public long getDroppedCount() {
+		return droppedCount.sum();
+	}
+
+	/**
+	 * @return The time in milliseconds after which a phase is considered slow
+	 */
+	public long getThreshold() {
+		return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+	}
+
+	/**
+	 * @param sampleRate The fraction of slow statements to record, between 0 and 1 (default 1)
+	 */
+	public void setSampleRate(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * @param maxPerSecond The maximum number of slow statements to record each second (default 10)
+	 */
+	public void setMaxPerSecond(int maxPerSecond) {
+		this.maxPerSecond = maxPerSecond;
+	}
+
+	/**
+	 * @param historySize The number of recent slow statements to keep in memory (default 100)
+	 */
+	public void setHistorySize(int historySize) {
+		this.historySize = historySize;
+	}
+
+	/**
+	 * @param explainSource The source of connections used to explain slow statements,
+	 * or null to not explain them (default null). This should not be the pool used
+	 * to run the statements, so explaining cannot exhaust it.
+	 */
+	public void setExplainSource(ConnectionSource explainSource) {
+		this.explainSource = explainSource;
+	}
+
+	/**
+	 * @param explainPrefix The SQL prepended to a statement to explain it (default <code>EXPLAIN </code>)
+	 */
+	public void setExplainPrefix(String explainPrefix) {
+		this.explainPrefix = explainPrefix;
+	}
+
+	/**
+	 * Stops the background thread used to explain slow statements
+	 */
+	@Override
+	public synchronized void close() {
+		if(explainer != null) {
+			explainer.shutdown();
+			explainer = null;
+		}
+	}
+
+}
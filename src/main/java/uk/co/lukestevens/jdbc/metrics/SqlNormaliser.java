@@ -0,0 +1,33 @@
+package uk.co.lukestevens.jdbc.metrics;
+
+import java.util.regex.Pattern;
+
+/**
+ * Normalises SQL so statements that only differ by their literal
+ * values or formatting are recorded together
+ *
+ * @author luke.stevens
+ */
+class SqlNormaliser {
+
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w$.])-?\\d+(?:\\.\\d+)?\\b");
+	private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+	private static final Pattern REPEATED_ROWS = Pattern.compile("\\(\\?\\)(?:\\s*,\\s*\\(\\?\\))+");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	/**
+	 * Replaces literals with parameters, collapses lists of parameters,
+	 * and collapses whitespace
+	 * @param sql The SQL to normalise
+	 * @return The normalised SQL
+	 */
+	static String normalise(String sql) {
+		String normalised = STRING_LITERAL.matcher(sql).replaceAll("?");
+		normalised = NUMBER_LITERAL.matcher(normalised).replaceAll("?");
+		normalised = PARAMETER_LIST.matcher(normalised).replaceAll("(?)");
+		normalised = REPEATED_ROWS.matcher(normalised).replaceAll("(?)");
+		return WHITESPACE.matcher(normalised).replaceAll(" ").trim();
+	}
+
+}
@@ -0,0 +1,68 @@
+package uk.co.lukestevens.jdbc.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics.Phase;
+
+/**
+ * The latencies, failures, and rows read for a single normalised SQL statement
+ *
+ * @author luke.stevens
+ */
+public class StatementMetrics {
+
+	private final String sql;
+	private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+	private final LongAdder[] failures = new LongAdder[Phase.values().length];
+	private final LongAdder rows = new LongAdder();
+
+	StatementMetrics(String sql) {
+		this.sql = sql;
+		for(int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+			failures[i] = new LongAdder();
+		}
+	}
+
+	void record(Phase phase, long nanos, boolean success) {
+		latencies[phase.ordinal()].record(nanos);
+		if(!success) {
+			failures[phase.ordinal()].increment();
+		}
+	}
+
+	void recordRows(long rows) {
+		this.rows.add(rows);
+	}
+
+	/**
+	 * @return The normalised SQL of the statement
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @param phase A phase of a database call
+	 * @return The latencies of that phase for this statement
+	 */
+	public LatencyHistogram getLatency(Phase phase) {
+		return latencies[phase.ordinal()];
+	}
+
+	/**
+	 * @param phase A phase of a database call
+	 * @return The number of times that phase failed for this statement
+	 */
+	public long getFailures(Phase phase) {
+		return failures[phase.ordinal()].sum();
+	}
+
+	/**
+	 * @return The total number of rows read from the results of this statement
+	 */
+	public long getRows() {
+		return rows.sum();
+	}
+
+}
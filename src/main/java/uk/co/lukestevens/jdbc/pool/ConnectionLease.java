@@ -0,0 +1,88 @@
+package uk.co.lukestevens.jdbc.pool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A record of a connection borrowed from a {@link ConnectionPool},
+ * used to find connections that have been borrowed but not returned.
+ *
+ * @author luke.stevens
+ */
+public class ConnectionLease {
+
+	private final PooledConnection.LeaseHandler handler;
+	private final String threadName;
+	private final long acquiredAt;
+	private final long acquiredNanos;
+	private final Throwable acquiredBy;
+
+	volatile boolean reported = false;
+
+	/**
+	 * @param handler The handler for the borrowed connection
+	 * @param captureStackTrace Whether to record the stack trace of the borrower
+	 */
+	ConnectionLease(PooledConnection.LeaseHandler handler, boolean captureStackTrace) {
+		this.handler = handler;
+		this.threadName = Thread.currentThread().getName();
+		this.acquiredAt = System.currentTimeMillis();
+		this.acquiredNanos = System.nanoTime();
+		this.acquiredBy = captureStackTrace? new Throwable("Connection borrowed here") : null;
+	}
+
+	/**
+	 * @return The name of the thread that borrowed the connection
+	 */
+	public String getThreadName() {
+		return threadName;
+	}
+
+	/**
+	 * @return The time the connection was borrowed, in milliseconds since the epoch
+	 */
+	public long getAcquiredAt() {
+		return acquiredAt;
+	}
+
+	/**
+	 * @return How long in milliseconds the connection has been borrowed for
+	 */
+	public long getHeldFor() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - acquiredNanos);
+	}
+
+	/**
+	 * @return The stack trace of the borrower, or null if stack
+	 * traces are not recorded by the pool
+	 */
+	public StackTraceElement[] getStackTrace() {
+		return acquiredBy == null? null : acquiredBy.getStackTrace();
+	}
+
+	/**
+	 * @return A throwable recording where the connection was
+	 * borrowed, or null if stack traces are not recorded by the pool
+	 */
+	Throwable getAcquiredBy() {
+		return acquiredBy;
+	}
+
+	long getAcquiredNanos() {
+		return acquiredNanos;
+	}
+
+	/**
+	 * Closes the borrowed connection, discarding it rather than returning
+	 * it to the pool. Any further use by the borrower will fail.
+	 * @return Whether the connection was closed, or false if it had already been returned
+	 */
+	public boolean forceClose() {
+		return handler.forceClose();
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionLease[thread=" + threadName + ", heldFor=" + getHeldFor() + "ms]";
+	}
+
+}
@@ -0,0 +1,410 @@
+package uk.co.lukestevens.jdbc.pool;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded pool of database connections. Idle connections are held
+ * in a lock-free deque, and the number of connections in use is bounded
+ * by a semaphore so borrowing and returning connections does not contend
+ * on a single lock.<br>
+ * Connections are validated when borrowed, and are retired once they exceed
+ * their maximum lifetime or have been idle for too long.<br>
+ * Every borrowed connection is tracked as a {@link ConnectionLease}. If a leak
+ * detection threshold is set, connections borrowed for longer than it are
+ * reported, and optionally closed.
+ *
+ * @author luke.stevens
+ */
+public class ConnectionPool implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+	private final ConnectionSource source;
+	private final PoolSettings settings;
+
+	// Most recently used connections are kept at the head
+	private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+	private final Semaphore permits;
+	private final AtomicInteger totalConnections = new AtomicInteger();
+	private final ScheduledExecutorService housekeeper;
+	private final LongAdder statementCacheHits = new LongAdder();
+	private final LongAdder statementCacheMisses = new LongAdder();
+	private final Set<ConnectionLease> leases = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a new connection pool, and starts a background thread
+	 * to fill and evict idle connections
+	 * @param source The source used to open new connections
+	 * @param settings The settings for this pool
+	 */
+	public ConnectionPool(ConnectionSource source, PoolSettings settings) {
+		this.source = source;
+		this.settings = settings;
+		this.permits = new Semaphore(settings.getMaxSize());
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "db-lib-pool-housekeeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.housekeeper.scheduleWithFixedDelay(
+				() -> runSafely("housekeeping", this::housekeep), 0, settings.getHousekeepingInterval(), TimeUnit.MILLISECONDS);
+		
+		long leakThreshold = settings.getLeakDetectionThreshold();
+		if(leakThreshold > 0) {
+			long interval = Math.max(1, Math.min(leakThreshold / 2, settings.getHousekeepingInterval()));
+			this.housekeeper.scheduleWithFixedDelay(
+					() -> runSafely("leak detection", this::detectLeaks), interval, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Runs a background task, logging any exception rather than letting
+	 * it cancel every later run of the task
+	 * @param name The name of the task, for logging
+	 * @param task The task to run
+	 */
+	static void runSafely(String name, Runnable task) {
+		try {
+			task.run();
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Connection pool " + name + " failed", e);
+		}
+	}
+
+	/**
+	 * Borrows a connection from the pool, opening a new one if no idle
+	 * connections are available. Closing the returned connection will return
+	 * it to the pool.
+	 * @return A connection to the database
+	 * @throws SQLException If a connection cannot be opened, or the pool
+	 * is exhausted for longer than the connection timeout
+	 */
+	public Connection getConnection() throws SQLException {
+		if(closed) {
+			throw new SQLException("Connection pool has been closed");
+		}
+
+		// One deadline covers both waiting for a permit and waiting for a connection
+		long timeout = settings.getConnectionTimeout();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		try {
+			if(!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+				throw new SQLTransientConnectionException(
+						"Timed out after " + timeout + "ms waiting for a connection");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for a connection", e);
+		}
+
+		try {
+			while(true) {
+				PooledConnection entry;
+				while((entry = idle.pollFirst()) != null) {
+					if(isUsable(entry, System.nanoTime())) {
+						return entry.lease();
+					}
+					retire(entry);
+				}
+				
+				entry = openConnection();
+				if(entry != null) {
+					return entry.lease();
+				}
+				
+				// Every slot is reserved by connections being opened in the background
+				if(System.nanoTime() - deadline > 0) {
+					throw new SQLTransientConnectionException(
+							"Timed out after " + timeout + "ms waiting for a connection");
+				}
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+			}
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Records a new lease of a connection
+	 * @param lease The lease
+	 */
+	void track(ConnectionLease lease) {
+		leases.add(lease);
+	}
+
+	/**
+	 * Returns a connection to the pool once its lease has been closed
+	 * @param entry The connection being returned
+	 * @param lease The lease being closed
+	 */
+	void release(PooledConnection entry, ConnectionLease lease) {
+		leases.remove(lease);
+		if(lease.reported) {
+			LOGGER.info("Previously reported leaked connection was returned after "
+					+ lease.getHeldFor() + "ms by thread " + lease.getThreadName());
+		}
+		try {
+			entry.reset();
+			if(closed || isExpired(entry, System.nanoTime())) {
+				retire(entry);
+			}
+			else {
+				entry.lastAccessed = System.nanoTime();
+				idle.offerFirst(entry);
+				
+				// The pool may have been closed while this connection was returned
+				if(closed && idle.remove(entry)) {
+					retire(entry);
+				}
+			}
+		} catch (SQLException | RuntimeException e) {
+			LOGGER.log(Level.FINE, "Discarding connection that could not be reset", e);
+			retire(entry);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Discards a connection whose lease has been forcibly closed, while
+	 * it may still be in use by the borrower
+	 * @param entry The connection being discarded
+	 * @param lease The lease being closed
+	 */
+	void abandon(PooledConnection entry, ConnectionLease lease) {
+		leases.remove(lease);
+		try {
+			// The statement cache belongs to the borrower's thread, and is discarded with the connection
+			totalConnections.decrementAndGet();
+			entry.closeConnectionQuietly();
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Reports every connection borrowed for longer than the leak detection threshold,
+	 * and closes them if the pool is configured to
+	 */
+	void detectLeaks() {
+		long threshold = TimeUnit.MILLISECONDS.toNanos(settings.getLeakDetectionThreshold());
+		long now = System.nanoTime();
+		for(ConnectionLease lease : leases) {
+			if(now - lease.getAcquiredNanos() <= threshold) {
+				continue;
+			}
+			if(settings.isLeakForceClose()) {
+				if(lease.forceClose()) {
+					LOGGER.log(Level.WARNING, "Closed connection leaked by thread " + lease.getThreadName()
+							+ " after " + lease.getHeldFor() + "ms", lease.getAcquiredBy());
+				}
+			}
+			else if(!lease.reported) {
+				lease.reported = true;
+				LOGGER.log(Level.WARNING, "Connection leak detected: borrowed by thread " + lease.getThreadName()
+						+ " " + lease.getHeldFor() + "ms ago", lease.getAcquiredBy());
+			}
+		}
+	}
+
+	/**
+	 * Opens a new physical connection, if doing so would not exceed
+	 * the maximum size of the pool
+	 * @return The new pooled connection, or null if the pool is full
+	 * @throws SQLException If a connection cannot be opened
+	 */
+	PooledConnection openConnection() throws SQLException {
+		int total;
+		do {
+			total = totalConnections.get();
+			if(total >= settings.getMaxSize()) {
+				return null;
+			}
+		} while(!totalConnections.compareAndSet(total, total + 1));
+		
+		Connection connection = null;
+		try {
+			connection = source.openConnection();
+			return new PooledConnection(this, connection);
+		} catch (SQLException | RuntimeException e) {
+			totalConnections.decrementAndGet();
+			if(connection != null) {
+				connection.close();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Permanently closes a connection and removes it from the pool
+	 * @param entry The connection to close
+	 */
+	void retire(PooledConnection entry) {
+		totalConnections.decrementAndGet();
+		entry.closeQuietly();
+	}
+
+	boolean isExpired(PooledConnection entry, long now) {
+		long maxLifetime = settings.getMaxLifetime();
+		return maxLifetime > 0 && now - entry.createdAt > TimeUnit.MILLISECONDS.toNanos(maxLifetime);
+	}
+
+	boolean isUsable(PooledConnection entry, long now) {
+		if(isExpired(entry, now)) {
+			return false;
+		}
+		if(now - entry.lastAccessed < TimeUnit.MILLISECONDS.toNanos(settings.getValidationInterval())) {
+			return true;
+		}
+		try {
+			return entry.connection.isValid(settings.getValidationTimeout());
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Evicts idle or expired connections, and opens new ones
+	 * until there are at least the minimum number of idle connections
+	 */
+	void housekeep() {
+		long now = System.nanoTime();
+		long idleTimeout = TimeUnit.MILLISECONDS.toNanos(settings.getIdleTimeout());
+
+		// Iterate from least recently used so the warmest connections are kept
+		Iterator<PooledConnection> it = idle.descendingIterator();
+		while(it.hasNext()) {
+			PooledConnection entry = it.next();
+			boolean idleTooLong = idleTimeout > 0
+					&& now - entry.lastAccessed > idleTimeout
+					&& totalConnections.get() > settings.getMinIdle();
+			if((idleTooLong || isExpired(entry, now)) && idle.removeLastOccurrence(entry)) {
+				retire(entry);
+			}
+		}
+
+		try {
+			fill(settings.getMinIdle());
+		} catch (SQLException | RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Failed to open idle connection", e);
+		}
+	}
+
+	/**
+	 * Opens new connections until the pool holds at least the given number
+	 * of idle connections, or is full
+	 * @param target The number of idle connections to open
+	 * @throws SQLException If a connection cannot be opened
+	 */
+	void fill(int target) throws SQLException {
+		PooledConnection entry;
+		while(!closed && idle.size() < target && (entry = openConnection()) != null) {
+			idle.offerLast(entry);
+		}
+	}
+
+	/**
+	 * @return The settings for this pool
+	 */
+	public PoolSettings getSettings() {
+		return settings;
+	}
+
+	/**
+	 * @return The total number of open connections, idle or in use
+	 */
+	public int getTotalConnections() {
+		return totalConnections.get();
+	}
+
+	/**
+	 * @return The number of idle connections available to be borrowed
+	 */
+	public int getIdleConnections() {
+		return idle.size();
+	}
+
+	/**
+	 * @return The number of connections currently borrowed from the pool
+	 */
+	public int getActiveConnections() {
+		return settings.getMaxSize() - permits.availablePermits();
+	}
+
+	/**
+	 * @return A snapshot of every connection currently borrowed from the pool,
+	 * longest held first
+	 */
+	public List<ConnectionLease> getLeases() {
+		List<ConnectionLease> snapshot = new ArrayList<>(leases);
+		snapshot.sort(Comparator.comparingLong(ConnectionLease::getAcquiredNanos));
+		return snapshot;
+	}
+
+	/**
+	 * @return The number of prepared statements served from a connection's statement cache
+	 */
+	public long getStatementCacheHits() {
+		return statementCacheHits.sum();
+	}
+
+	/**
+	 * @return The number of cacheable prepared statements that were not found
+	 * in a connection's statement cache
+	 */
+	public long getStatementCacheMisses() {
+		return statementCacheMisses.sum();
+	}
+
+	void recordStatementCacheHit() {
+		statementCacheHits.increment();
+	}
+
+	void recordStatementCacheMiss() {
+		statementCacheMisses.increment();
+	}
+
+	/**
+	 * @return Whether this pool has been closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Closes all idle connections and stops the pool from handing out new
+	 * ones. Connections that are in use will be closed when they are returned.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		housekeeper.shutdownNow();
+		PooledConnection entry;
+		while((entry = idle.pollFirst()) != null) {
+			retire(entry);
+		}
+	}
+
+}
@@ -0,0 +1,21 @@
+package uk.co.lukestevens.jdbc.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * An interface defining how new physical connections
+ * to the database should be opened
+ * 
+ * @author luke.stevens
+ */
+@FunctionalInterface
+public interface ConnectionSource {
+	
+	/**
+	 * @return A new connection to the database
+	 * @throws SQLException If a database error occurs
+	 */
+	Connection openConnection() throws SQLException;
+
+}
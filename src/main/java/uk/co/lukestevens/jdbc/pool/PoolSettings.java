@@ -0,0 +1,212 @@
+package uk.co.lukestevens.jdbc.pool;
+
+import uk.co.lukestevens.config.Config;
+
+/**
+ * Settings used to size and maintain a {@link ConnectionPool}.
+ * All durations are in milliseconds, apart from the validation
+ * timeout which is in seconds to match {@link java.sql.Connection#isValid(int)}
+ *
+ * @author luke.stevens
+ */
+public class PoolSettings {
+
+	private int minIdle = 0;
+	private int maxSize = 10;
+	private long connectionTimeout = 30_000;
+	private long idleTimeout = 600_000;
+	private long maxLifetime = 1_800_000;
+	private long validationInterval = 500;
+	private int validationTimeout = 5;
+	private long housekeepingInterval = 30_000;
+	private int statementCacheSize = 0;
+	private long leakDetectionThreshold = 0;
+	private boolean leakStackTraces = false;
+	private boolean leakForceClose = false;
+
+	/**
+	 * Creates pool settings from a set of config properties. Any
+	 * of the following properties that are not specified will use
+	 * their default values:
+	 * <ul>
+	 * 	<li><code>database.pool.min_idle</code> - The number of idle connections the pool tries to maintain (default 0)</li>
+	 * 	<li><code>database.pool.max_size</code> - The maximum number of connections, idle or in use (default 10)</li>
+	 * 	<li><code>database.pool.connection_timeout</code> - How long to wait for a connection before failing (default 30s)</li>
+	 * 	<li><code>database.pool.idle_timeout</code> - How long a connection can be idle before it is evicted (default 10m)</li>
+	 * 	<li><code>database.pool.max_lifetime</code> - The maximum lifetime of a connection (default 30m)</li>
+	 * 	<li><code>database.pool.validation_interval</code> - Connections used more recently than this are not validated on borrow (default 500ms)</li>
+	 * 	<li><code>database.pool.validation_timeout</code> - The timeout in seconds for validating a connection (default 5)</li>
+	 * 	<li><code>database.pool.housekeeping_interval</code> - How often idle connections are evicted (default 30s)</li>
+	 * 	<li><code>database.pool.statement_cache_size</code> - The number of prepared statements cached per connection (default 0, disabled)</li>
+	 * 	<li><code>database.pool.leak_detection_threshold</code> - How long a connection can be borrowed before it is reported as leaked (default 0, disabled)</li>
+	 * 	<li><code>database.pool.leak_stack_traces</code> - Whether to record the stack trace of every borrower, to report where leaked connections were borrowed (default false)</li>
+	 * 	<li><code>database.pool.leak_force_close</code> - Whether leaked connections are closed, rather than only reported (default false)</li>
+	 * </ul>
+	 * @param config The Config instance
+	 * @return A new PoolSettings instance
+	 */
+	public static PoolSettings fromConfig(Config config) {
+		PoolSettings settings = new PoolSettings();
+		settings.setMinIdle((int) getLong(config, "min_idle", settings.minIdle));
+		settings.setMaxSize((int) getLong(config, "max_size", settings.maxSize));
+		settings.setConnectionTimeout(getLong(config, "connection_timeout", settings.connectionTimeout));
+		settings.setIdleTimeout(getLong(config, "idle_timeout", settings.idleTimeout));
+		settings.setMaxLifetime(getLong(config, "max_lifetime", settings.maxLifetime));
+		settings.setValidationInterval(getLong(config, "validation_interval", settings.validationInterval));
+		settings.setValidationTimeout((int) getLong(config, "validation_timeout", settings.validationTimeout));
+		settings.setHousekeepingInterval(getLong(config, "housekeeping_interval", settings.housekeepingInterval));
+		settings.setStatementCacheSize((int) getLong(config, "statement_cache_size", settings.statementCacheSize));
+		settings.setLeakDetectionThreshold(getLong(config, "leak_detection_threshold", settings.leakDetectionThreshold));
+		settings.setLeakStackTraces(getBoolean(config, "leak_stack_traces", settings.leakStackTraces));
+		settings.setLeakForceClose(getBoolean(config, "leak_force_close", settings.leakForceClose));
+		return settings;
+	}
+
+	static long getLong(Config config, String property, long defaultValue) {
+		String value = config.getAsStringOrDefault("database.pool." + property, null);
+		return value == null? defaultValue : Long.parseLong(value.trim());
+	}
+
+	static boolean getBoolean(Config config, String property, boolean defaultValue) {
+		String value = config.getAsStringOrDefault("database.pool." + property, null);
+		return value == null? defaultValue : Boolean.parseBoolean(value.trim());
+	}
+
+	/**
+	 * @return The number of idle connections the pool tries to maintain
+	 */
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+	}
+
+	/**
+	 * @return The maximum number of connections, idle or in use
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return How long in milliseconds to wait for a connection before failing
+	 */
+	public long getConnectionTimeout() {
+		return connectionTimeout;
+	}
+
+	public void setConnectionTimeout(long connectionTimeout) {
+		this.connectionTimeout = connectionTimeout;
+	}
+
+	/**
+	 * @return How long in milliseconds a connection can be idle before it is evicted
+	 */
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * @return The maximum lifetime of a connection in milliseconds
+	 */
+	public long getMaxLifetime() {
+		return maxLifetime;
+	}
+
+	public void setMaxLifetime(long maxLifetime) {
+		this.maxLifetime = maxLifetime;
+	}
+
+	/**
+	 * @return The time in milliseconds since a connection was last used
+	 * after which it is validated before being borrowed
+	 */
+	public long getValidationInterval() {
+		return validationInterval;
+	}
+
+	public void setValidationInterval(long validationInterval) {
+		this.validationInterval = validationInterval;
+	}
+
+	/**
+	 * @return The timeout in seconds for validating a connection
+	 */
+	public int getValidationTimeout() {
+		return validationTimeout;
+	}
+
+	public void setValidationTimeout(int validationTimeout) {
+		this.validationTimeout = validationTimeout;
+	}
+
+	/**
+	 * @return How often in milliseconds idle connections are checked for eviction
+	 */
+	public long getHousekeepingInterval() {
+		return housekeepingInterval;
+	}
+
+	public void setHousekeepingInterval(long housekeepingInterval) {
+		this.housekeepingInterval = housekeepingInterval;
+	}
+
+	/**
+	 * @return The maximum number of prepared statements cached per connection,
+	 * or 0 if statements should not be cached
+	 */
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	public void setStatementCacheSize(int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	/**
+	 * @return How long in milliseconds a connection can be borrowed before it is
+	 * reported as leaked, or 0 if leaks should not be detected
+	 */
+	public long getLeakDetectionThreshold() {
+		return leakDetectionThreshold;
+	}
+
+	public void setLeakDetectionThreshold(long leakDetectionThreshold) {
+		this.leakDetectionThreshold = leakDetectionThreshold;
+	}
+
+	/**
+	 * @return Whether the stack trace of every borrower is recorded, so leaked
+	 * connections can be reported with where they were borrowed
+	 */
+	public boolean isLeakStackTraces() {
+		return leakStackTraces;
+	}
+
+	public void setLeakStackTraces(boolean leakStackTraces) {
+		this.leakStackTraces = leakStackTraces;
+	}
+
+	/**
+	 * @return Whether connections borrowed for longer than the leak detection
+	 * threshold are closed, rather than only reported
+	 */
+	public boolean isLeakForceClose() {
+		return leakForceClose;
+	}
+
+	public void setLeakForceClose(boolean leakForceClose) {
+		this.leakForceClose = leakForceClose;
+	}
+
+}
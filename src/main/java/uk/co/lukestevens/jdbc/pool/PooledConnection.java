@@ -0,0 +1,215 @@
+package uk.co.lukestevens.jdbc.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A physical connection managed by a {@link ConnectionPool}. Each
+ * time the connection is borrowed a new proxy is handed out, which
+ * returns the connection to the pool when closed rather than closing
+ * the underlying connection.
+ *
+ * @author luke.stevens
+ */
+class PooledConnection {
+
+	final ConnectionPool pool;
+	final Connection connection;
+	final long createdAt;
+	final StatementCache statementCache;
+
+	volatile long lastAccessed;
+
+	// Only accessed by the thread currently leasing this connection
+	final List<Statement> openStatements = new ArrayList<>();
+	boolean dirtyAutoCommit;
+	boolean dirtyReadOnly;
+	boolean dirtyIsolation;
+
+	private final boolean defaultAutoCommit;
+	private final boolean defaultReadOnly;
+	private final int defaultIsolation;
+
+	/**
+	 * Creates a new pooled connection, recording the initial state of the
+	 * connection so it can be restored when returned to the pool
+	 * @param pool The pool that owns this connection
+	 * @param connection The physical database connection
+	 * @throws SQLException If the connection state cannot be read
+	 */
+	PooledConnection(ConnectionPool pool, Connection connection) throws SQLException {
+		this.pool = pool;
+		this.connection = connection;
+		this.createdAt = System.nanoTime();
+		this.lastAccessed = createdAt;
+		this.defaultAutoCommit = connection.getAutoCommit();
+		this.defaultReadOnly = connection.isReadOnly();
+		this.defaultIsolation = connection.getTransactionIsolation();
+		
+		int cacheSize = pool.getSettings().getStatementCacheSize();
+		this.statementCache = cacheSize > 0? new StatementCache(connection, pool, cacheSize) : null;
+	}
+
+	/**
+	 * @return A new proxy for this connection, to be handed out to a borrower
+	 */
+	Connection lease() {
+		LeaseHandler handler = new LeaseHandler();
+		pool.track(handler.lease);
+		return (Connection) Proxy.newProxyInstance(
+				Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class },
+				handler);
+	}
+
+	/**
+	 * Closes any statements opened during the last lease and restores
+	 * the connection to its initial state
+	 * @throws SQLException If the connection could not be reset
+	 */
+	void reset() throws SQLException {
+		for(Statement stmt : openStatements) {
+			stmt.close();
+		}
+		openStatements.clear();
+
+		if(dirtyAutoCommit) {
+			if(!connection.getAutoCommit()) {
+				connection.rollback();
+			}
+			connection.setAutoCommit(defaultAutoCommit);
+			dirtyAutoCommit = false;
+		}
+		if(dirtyReadOnly) {
+			connection.setReadOnly(defaultReadOnly);
+			dirtyReadOnly = false;
+		}
+		if(dirtyIsolation) {
+			connection.setTransactionIsolation(defaultIsolation);
+			dirtyIsolation = false;
+		}
+	}
+
+	/**
+	 * Closes the physical connection, ignoring any errors
+	 */
+	void closeQuietly() {
+		if(statementCache != null) {
+			statementCache.clear();
+		}
+		this.closeConnectionQuietly();
+	}
+
+	/**
+	 * Closes the physical connection, ignoring any errors, without touching
+	 * the statement cache. This is safe to call while the connection is in use
+	 * by another thread, as closing the connection closes its statements.
+	 */
+	void closeConnectionQuietly() {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			// The connection is being discarded anyway
+		}
+	}
+
+	/**
+	 * Handles calls to a single lease of this connection
+	 */
+	class LeaseHandler implements InvocationHandler {
+
+		final ConnectionLease lease = new ConnectionLease(this, pool.getSettings().isLeakStackTraces());
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		/**
+		 * Closes the physical connection without waiting for the borrower to return it
+		 * @return Whether the connection was closed, or false if it had already been returned
+		 */
+		boolean forceClose() {
+			if(closed.compareAndSet(false, true)) {
+				pool.abandon(PooledConnection.this, lease);
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					if(closed.compareAndSet(false, true)) {
+						pool.release(PooledConnection.this, lease);
+					}
+					return null;
+				case "isClosed":
+					return closed.get() || connection.isClosed();
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Pooled" + connection.toString();
+				default:
+					break;
+			}
+
+			if(closed.get()) {
+				throw new SQLException("Connection is closed");
+			}
+
+			switch (method.getName()) {
+				case "setAutoCommit":
+					dirtyAutoCommit = true;
+					break;
+				case "setReadOnly":
+					dirtyReadOnly = true;
+					break;
+				case "setTransactionIsolation":
+					dirtyIsolation = true;
+					break;
+				default:
+					break;
+			}
+
+			Object result;
+			if(isCacheable(method)) {
+				int autoGeneratedKeys = args.length == 1? Statement.NO_GENERATED_KEYS : (Integer) args[1];
+				result = statementCache.prepareStatement((Connection) proxy, (String) args[0], autoGeneratedKeys);
+			}
+			else {
+				try {
+					result = method.invoke(connection, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+
+			if(result instanceof Statement) {
+				openStatements.add((Statement) result);
+			}
+			return result;
+		}
+		
+		/**
+		 * @return Whether the method is a call to prepare a statement that can
+		 * be served from the statement cache
+		 */
+		boolean isCacheable(Method method) {
+			if(statementCache == null || !method.getName().equals("prepareStatement")) {
+				return false;
+			}
+			Class<?>[] types = method.getParameterTypes();
+			return types.length == 1 || (types.length == 2 && types[1] == int.class);
+		}
+
+	}
+
+}
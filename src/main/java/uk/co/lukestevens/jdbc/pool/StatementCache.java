@@ -0,0 +1,284 @@
+package uk.co.lukestevens.jdbc.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A bounded, least recently used cache of prepared statements for
+ * a single pooled connection. Statements are keyed by their SQL text
+ * and generated key mode, and are handed out as proxies that return
+ * the statement to the cache when closed.<br>
+ * A connection is only used by one thread at a time, so this class is
+ * not thread safe.
+ *
+ * @author luke.stevens
+ */
+class StatementCache {
+
+	private final Connection connection;
+	private final ConnectionPool pool;
+	private final LinkedHashMap<Key, CachedStatement> statements;
+
+	/**
+	 * Creates a new statement cache
+	 * @param connection The physical connection to prepare statements with
+	 * @param pool The pool to record cache hits and misses against
+	 * @param maxSize The maximum number of statements to cache
+	 */
+	StatementCache(Connection connection, ConnectionPool pool, int maxSize) {
+		this.connection = connection;
+		this.pool = pool;
+		this.statements = new LinkedHashMap<Key, CachedStatement>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CachedStatement> eldest) {
+				if(size() > maxSize) {
+					eldest.getValue().evict();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Gets a prepared statement from the cache, preparing a new one if
+	 * it is not cached. If the cached statement is already in use, an
+	 * uncached statement is prepared instead.
+	 * @param owner The pooled connection the statement is prepared through, which
+	 * the statement returns from <code>getConnection</code> rather than the physical connection
+	 * @param sql The SQL to prepare
+	 * @param autoGeneratedKeys The generated key mode, see {@link java.sql.Statement}
+	 * @return A prepared statement. Closing it will return it to the cache
+	 * @throws SQLException If the statement cannot be prepared
+	 */
+	PreparedStatement prepareStatement(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+		Key key = new Key(sql, autoGeneratedKeys);
+		CachedStatement cached = statements.get(key);
+		if(cached != null && !cached.inUse && (cached.evicted || cached.statement.isClosed())) {
+			// The statement was closed directly rather than through its proxy, or couldn't be reset
+			statements.remove(key);
+			cached = null;
+		}
+		
+		if(cached == null) {
+			pool.recordStatementCacheMiss();
+			cached = new CachedStatement(connection.prepareStatement(sql, autoGeneratedKeys));
+			statements.put(key, cached);
+		}
+		else if(cached.inUse) {
+			pool.recordStatementCacheMiss();
+			return connection.prepareStatement(sql, autoGeneratedKeys);
+		}
+		else {
+			pool.recordStatementCacheHit();
+		}
+		return cached.checkout(owner);
+	}
+
+	/**
+	 * @return The number of statements currently cached
+	 */
+	int size() {
+		return statements.size();
+	}
+
+	/**
+	 * Closes all cached statements and empties the cache
+	 */
+	void clear() {
+		Iterator<CachedStatement> it = statements.values().iterator();
+		while(it.hasNext()) {
+			it.next().evict();
+			it.remove();
+		}
+	}
+
+	/**
+	 * A statement held in the cache
+	 */
+	static class CachedStatement {
+
+		// Setters for state that would otherwise carry over to the next checkout
+		private static final Set<String> STATE_SETTERS = new HashSet<>(Arrays.asList(
+				"setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows", "setMaxFieldSize", "setQueryTimeout"));
+
+		final PreparedStatement statement;
+		boolean inUse = false;
+		boolean evicted = false;
+		boolean batched = false;
+		boolean modified = false;
+
+		int fetchSize;
+		int fetchDirection;
+		int maxRows;
+		int maxFieldSize;
+		int queryTimeout;
+
+		CachedStatement(PreparedStatement statement) {
+			this.statement = statement;
+		}
+
+		PreparedStatement checkout(Connection owner) {
+			inUse = true;
+			return (PreparedStatement) Proxy.newProxyInstance(
+					PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class },
+					new CheckoutHandler(owner));
+		}
+
+		void checkin() throws SQLException {
+			inUse = false;
+			if(evicted) {
+				statement.close();
+				return;
+			}
+
+			try {
+				ResultSet rs = statement.getResultSet();
+				if(rs != null) {
+					rs.close();
+				}
+				statement.clearParameters();
+				if(batched) {
+					// Rows left over from a failed batch
+					statement.clearBatch();
+					batched = false;
+				}
+				if(modified) {
+					statement.setFetchSize(fetchSize);
+					statement.setFetchDirection(fetchDirection);
+					statement.setMaxRows(maxRows);
+					statement.setMaxFieldSize(maxFieldSize);
+					statement.setQueryTimeout(queryTimeout);
+					modified = false;
+				}
+			} catch (SQLException e) {
+				// The statement can't be reset, so is closed and prepared again next time
+				evicted = true;
+				statement.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Records the statement's state before it is first changed, so it can be restored on checkin
+		 */
+		void saveState() throws SQLException {
+			fetchSize = statement.getFetchSize();
+			fetchDirection = statement.getFetchDirection();
+			maxRows = statement.getMaxRows();
+			maxFieldSize = statement.getMaxFieldSize();
+			queryTimeout = statement.getQueryTimeout();
+			modified = true;
+		}
+
+		void evict() {
+			evicted = true;
+			if(!inUse) {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					// The statement is being discarded anyway
+				}
+			}
+		}
+
+		/**
+		 * Handles calls to a single checkout of this statement
+		 */
+		class CheckoutHandler implements InvocationHandler {
+
+			private final Connection owner;
+			private boolean closed = false;
+
+			CheckoutHandler(Connection owner) {
+				this.owner = owner;
+			}
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				switch (method.getName()) {
+					case "close":
+						if(!closed) {
+							closed = true;
+							checkin();
+						}
+						return null;
+					case "isClosed":
+						return closed || statement.isClosed();
+					case "equals":
+						return proxy == args[0];
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					default:
+						break;
+				}
+
+				if(closed) {
+					throw new SQLException("Statement is closed");
+				}
+				if("getConnection".equals(method.getName())) {
+					// Closing the physical connection would close it behind the pool's back
+					return owner;
+				}
+				if("addBatch".equals(method.getName())) {
+					batched = true;
+				}
+				else if(!modified && STATE_SETTERS.contains(method.getName())) {
+					saveState();
+				}
+
+				try {
+					return method.invoke(statement, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The key statements are cached by
+	 */
+	static class Key {
+
+		final String sql;
+		final int autoGeneratedKeys;
+
+		Key(String sql, int autoGeneratedKeys) {
+			this.sql = sql;
+			this.autoGeneratedKeys = autoGeneratedKeys;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * sql.hashCode() + autoGeneratedKeys;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return autoGeneratedKeys == other.autoGeneratedKeys && Objects.equals(sql, other.sql);
+		}
+	}
+
+}
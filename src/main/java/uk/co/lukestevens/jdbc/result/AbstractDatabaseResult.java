@@ -37,10 +37,18 @@ public abstract class AbstractDatabaseResult implements Closeable {
 	@Override
 	public void close() throws IOException {
 		try {
-			con.close();
+			this.closeConnection();
 		} catch (SQLException e) {
 			throw new IOException(e);
 		}
 	}
+	
+	/**
+	 * Closes the connection when this result is closed
+	 * @throws SQLException If a database error occurs
+	 */
+	protected void closeConnection() throws SQLException {
+		con.close();
+	}
 
 }
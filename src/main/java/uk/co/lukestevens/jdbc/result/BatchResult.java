@@ -0,0 +1,66 @@
+package uk.co.lukestevens.jdbc.result;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a batch update, containing the update counts
+ * and generated keys for every row in the batch.
+ *
+ * @author luke.stevens
+ */
+public class BatchResult {
+
+	private final List<Long> generatedKeys = new ArrayList<>();
+	private final List<int[]> updateCounts = new ArrayList<>();
+	private int rowCount = 0;
+
+	/**
+	 * Adds the update counts from an executed batch
+	 * @param counts The update counts, in row order
+	 */
+	public void addUpdateCounts(int[] counts) {
+		updateCounts.add(counts);
+		rowCount += counts.length;
+	}
+
+	/**
+	 * Adds a key generated by an executed batch
+	 * @param key The generated key
+	 */
+	public void addGeneratedKey(long key) {
+		generatedKeys.add(key);
+	}
+
+	/**
+	 * @return The keys generated by the batch update, in row order.
+	 * This will be empty if the query did not generate any keys.
+	 */
+	public List<Long> getGeneratedKeys() {
+		return Collections.unmodifiableList(generatedKeys);
+	}
+
+	/**
+	 * @return The update count for each row, in row order. This may contain
+	 * {@link java.sql.Statement#SUCCESS_NO_INFO} if the driver does not report
+	 * how many rows were updated.
+	 */
+	public int[] getUpdateCounts() {
+		int[] counts = new int[rowCount];
+		int offset = 0;
+		for(int[] batch : updateCounts) {
+			System.arraycopy(batch, 0, counts, offset, batch.length);
+			offset += batch.length;
+		}
+		return counts;
+	}
+
+	/**
+	 * @return The number of rows in the batch
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+}
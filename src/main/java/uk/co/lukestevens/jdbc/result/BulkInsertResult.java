@@ -0,0 +1,63 @@
+package uk.co.lukestevens.jdbc.result;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of a bulk insert, containing the number of
+ * rows inserted and how long they took to insert.
+ *
+ * @author luke.stevens
+ */
+public class BulkInsertResult {
+
+	private final long rowCount;
+	private final long statementCount;
+	private final long nanos;
+
+	/**
+	 * Creates a new bulk insert result
+	 * @param rowCount The number of rows inserted
+	 * @param statementCount The number of insert statements executed
+	 * @param nanos How long the insert took in nanoseconds
+	 */
+	public BulkInsertResult(long rowCount, long statementCount, long nanos) {
+		this.rowCount = rowCount;
+		this.statementCount = statementCount;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return The number of rows inserted
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return The number of insert statements executed
+	 */
+	public long getStatementCount() {
+		return statementCount;
+	}
+
+	/**
+	 * @return How long the insert took in milliseconds
+	 */
+	public long getDuration() {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * @return The average number of rows inserted each second
+	 */
+	public double getRowsPerSecond() {
+		return nanos == 0? 0 : rowCount * 1e9 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Inserted %d rows in %d statements in %dms (%.0f rows/s)",
+				rowCount, statementCount, getDuration(), getRowsPerSecond());
+	}
+
+}
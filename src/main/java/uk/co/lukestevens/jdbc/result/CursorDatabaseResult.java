@@ -0,0 +1,39 @@
+package uk.co.lukestevens.jdbc.result;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A database result for a cursor opened inside a read-only
+ * transaction, which ends the transaction when closed.
+ * 
+ * @author luke.stevens
+ */
+public class CursorDatabaseResult extends WrappedDatabaseResult {
+	
+	private final boolean autoCommit;
+
+	/**
+	 * Creates a new CursorDatabaseResult, wrapping
+	 * the ResultSet and Connection
+	 * @param con The database connection
+	 * @param stmt The statement that created the ResultSet
+	 * @param rs the database ResultSet
+	 * @param autoCommit The auto-commit mode to restore on
+	 * the connection once the cursor is closed
+	 */
+	public CursorDatabaseResult(Connection con, Statement stmt, ResultSet rs, boolean autoCommit) {
+		super(con, stmt, rs);
+		this.autoCommit = autoCommit;
+	}
+	
+	@Override
+	protected void closeResultSet() throws SQLException {
+		super.closeResultSet();
+		con.commit();
+		con.setAutoCommit(autoCommit);
+	}
+
+}
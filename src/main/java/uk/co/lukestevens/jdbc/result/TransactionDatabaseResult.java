@@ -0,0 +1,31 @@
+package uk.co.lukestevens.jdbc.result;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * A database result for a query run inside a transaction, which
+ * leaves the connection open for the rest of the transaction when closed.
+ * 
+ * @author luke.stevens
+ */
+public class TransactionDatabaseResult extends WrappedDatabaseResult {
+
+	/**
+	 * Creates a new TransactionDatabaseResult, wrapping
+	 * the ResultSet and Connection
+	 * @param con The connection of the transaction
+	 * @param stmt The statement that created the ResultSet
+	 * @param rs the database ResultSet
+	 */
+	public TransactionDatabaseResult(Connection con, Statement stmt, ResultSet rs) {
+		super(con, stmt, rs);
+	}
+	
+	@Override
+	protected void closeConnection() {
+		// The connection is closed when the transaction ends
+	}
+
+}
@@ -2,11 +2,19 @@ package uk.co.lukestevens.jdbc.result;
 
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import uk.co.lukestevens.db.DatabaseResult;
 import uk.co.lukestevens.db.ResultParser;
@@ -22,7 +30,11 @@ import uk.co.lukestevens.db.ResultSetAction;
  */
 public class WrappedDatabaseResult extends AbstractDatabaseResult implements DatabaseResult {
 	
+	private final Statement stmt;
 	private final ResultSet rs;
+	private final List<Runnable> closeHandlers = new ArrayList<>(0);
+	private boolean closed = false;
+	private long rowCount = 0;
 	
 	/**
 	 * Creates a new DatabaseResult, wrapping
@@ -31,7 +43,20 @@ public class WrappedDatabaseResult extends AbstractDatabaseResult implements Dat
 	 * @param rs the database ResultSet
 	 */
 	public WrappedDatabaseResult(Connection con, ResultSet rs) {
+		this(con, null, rs);
+	}
+	
+	/**
+	 * Creates a new DatabaseResult, wrapping
+	 * the ResultSet, the Statement that created it, and Connection
+	 * @param con The database connection
+	 * @param stmt The statement that created the ResultSet, which will
+	 * be closed with this result
+	 * @param rs the database ResultSet
+	 */
+	public WrappedDatabaseResult(Connection con, Statement stmt, ResultSet rs) {
 		super(con);
+		this.stmt = stmt;
 		this.rs = rs;
 	}
 
@@ -43,6 +68,7 @@ public class WrappedDatabaseResult extends AbstractDatabaseResult implements Dat
 	@Override
 	public void processResultSet(ResultSetAction action) throws SQLException, IOException {
 		while(rs.next()) {
+			rowCount++;
 			action.execute(rs);
 		}
 	}
@@ -53,5 +79,137 @@ public class WrappedDatabaseResult extends AbstractDatabaseResult implements Dat
 		this.processResultSet(rs -> list.add(parser.parse(rs)));
 		return list;
 	}
+	
+	/**
+	 * Creates an iterator that parses each row of the result set as it
+	 * is requested, rather than reading every row into memory. This
+	 * result is closed once the iterator has been exhausted.<br>
+	 * Any database errors while iterating are thrown as an {@link UncheckedIOException}
+	 * @param parser The parser used to convert each row
+	 * @return An iterator over the parsed rows
+	 */
+	public <T> Iterator<T> iterator(ResultParser<T> parser) {
+		return new ResultIterator<>(parser);
+	}
+	
+	/**
+	 * Creates a stream that parses each row of the result set as it
+	 * is consumed, rather than reading every row into memory. This result
+	 * is closed when the stream is closed or has been exhausted, so the
+	 * stream should be used in a try-with-resources statement.<br>
+	 * Any database errors while streaming are thrown as an {@link UncheckedIOException}
+	 * @param parser The parser used to convert each row
+	 * @return A stream of the parsed rows
+	 */
+	public <T> Stream<T> stream(ResultParser<T> parser) {
+		Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(
+				this.iterator(parser), Spliterator.ORDERED);
+		return StreamSupport.stream(spliterator, false).onClose(() -> {
+			try {
+				this.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+	
+	/**
+	 * @return The number of rows read from the result set by this result's
+	 * parse, process, iterator, and stream methods
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+	
+	/**
+	 * Adds a handler which is run once this result has been closed
+	 * @param closeHandler The handler to run
+	 * @return This result
+	 */
+	public WrappedDatabaseResult onClose(Runnable closeHandler) {
+		closeHandlers.add(closeHandler);
+		return this;
+	}
+	
+	/**
+	 * Closes the result set and statement, as well as the connection
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		
+		try {
+			this.closeResultSet();
+		} catch (SQLException e) {
+			throw new IOException(e);
+		} finally {
+			try {
+				super.close();
+			} finally {
+				for(Runnable closeHandler : closeHandlers) {
+					closeHandler.run();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Closes the result set, and the statement that created it if known
+	 * @throws SQLException If a database error occurs
+	 */
+	protected void closeResultSet() throws SQLException {
+		rs.close();
+		if(stmt != null) {
+			stmt.close();
+		}
+	}
+	
+	/**
+	 * An iterator that lazily parses rows from the result set
+	 */
+	class ResultIterator<T> implements Iterator<T> {
+		
+		private final ResultParser<T> parser;
+		private Boolean hasNext = null;
+		
+		ResultIterator(ResultParser<T> parser) {
+			this.parser = parser;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(hasNext == null) {
+				try {
+					hasNext = rs.next();
+					if(!hasNext) {
+						close();
+					}
+				} catch (SQLException e) {
+					throw new UncheckedIOException(new IOException(e));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			return hasNext;
+		}
+
+		@Override
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			hasNext = null;
+			rowCount++;
+			try {
+				return parser.parse(rs);
+			} catch (SQLException e) {
+				throw new UncheckedIOException(new IOException(e));
+			}
+		}
+		
+	}
 
 }
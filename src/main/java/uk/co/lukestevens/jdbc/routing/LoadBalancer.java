@@ -0,0 +1,49 @@
+package uk.co.lukestevens.jdbc.routing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An interface defining how a {@link RoutingDatabase}
+ * chooses which replica to send a query to
+ *
+ * @author luke.stevens
+ */
+@FunctionalInterface
+public interface LoadBalancer {
+
+	/**
+	 * @param replicas The healthy replicas, which will never be empty
+	 * @return The replica to send the query to
+	 */
+	Replica choose(List<Replica> replicas);
+
+	/**
+	 * @return A load balancer that sends queries to each replica in turn
+	 */
+	static LoadBalancer roundRobin() {
+		AtomicInteger next = new AtomicInteger();
+		return replicas -> replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+	}
+
+	/**
+	 * @return A load balancer that sends queries to the replica serving the
+	 * fewest queries. Ties are broken in turn, so idle replicas share the load.
+	 */
+	static LoadBalancer leastOutstanding() {
+		AtomicInteger next = new AtomicInteger();
+		return replicas -> {
+			int size = replicas.size();
+			int offset = Math.floorMod(next.getAndIncrement(), size);
+			Replica best = null;
+			for(int i = 0; i < size; i++) {
+				Replica replica = replicas.get((offset + i) % size);
+				if(best == null || replica.getOutstanding() < best.getOutstanding()) {
+					best = replica;
+				}
+			}
+			return best;
+		};
+	}
+
+}
@@ -0,0 +1,108 @@
+package uk.co.lukestevens.jdbc.routing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import uk.co.lukestevens.jdbc.AbstractDatabase;
+
+/**
+ * A read replica used by a {@link RoutingDatabase}, tracking the number
+ * of queries it is serving and whether it is healthy
+ *
+ * @author luke.stevens
+ */
+public class Replica {
+
+	private final AbstractDatabase database;
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+	private final LongAdder queries = new LongAdder();
+	private volatile long ejectedUntil = 0;
+	private volatile boolean ejected = false;
+
+	Replica(AbstractDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * @return The database for this replica
+	 */
+	public AbstractDatabase getDatabase() {
+		return database;
+	}
+
+	/**
+	 * @return The number of queries this replica is currently serving,
+	 * including results that have not yet been closed
+	 */
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+
+	/**
+	 * @return The total number of queries sent to this replica
+	 */
+	public long getQueries() {
+		return queries.sum();
+	}
+
+	/**
+	 * @return The number of consecutive connection failures of this replica
+	 */
+	public int getConsecutiveFailures() {
+		return consecutiveFailures.get();
+	}
+
+	/**
+	 * @return Whether this replica can currently be sent queries. An ejected replica
+	 * is retried once its ejection has expired, and is healthy again after a success.
+	 */
+	public boolean isHealthy() {
+		return !ejected || System.nanoTime() - ejectedUntil > 0;
+	}
+
+	/**
+	 * @return Whether this replica has been ejected after too many failures,
+	 * and has not succeeded since
+	 */
+	public boolean isEjected() {
+		return ejected;
+	}
+
+	void start() {
+		queries.increment();
+		outstanding.incrementAndGet();
+	}
+
+	void finish() {
+		outstanding.decrementAndGet();
+	}
+
+	void recordSuccess() {
+		if(consecutiveFailures.get() != 0) {
+			consecutiveFailures.set(0);
+		}
+		ejected = false;
+	}
+
+	/**
+	 * Records a connection failure, ejecting this replica if it has failed too many times
+	 * @param maxFailures The number of consecutive failures after which this replica is ejected
+	 * @param ejectNanos How long in nanoseconds to eject this replica for
+	 * @return Whether this replica was ejected by this failure
+	 */
+	boolean recordFailure(int maxFailures, long ejectNanos) {
+		if(consecutiveFailures.incrementAndGet() >= maxFailures) {
+			ejectedUntil = System.nanoTime() + ejectNanos;
+			ejected = true;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "Replica[" + database + ", outstanding=" + getOutstanding() + ", healthy=" + isHealthy() + "]";
+	}
+
+}
@@ -0,0 +1,217 @@
+package uk.co.lukestevens.jdbc.routing;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import uk.co.lukestevens.db.Database;
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.AbstractDatabase;
+import uk.co.lukestevens.jdbc.result.WrappedDatabaseResult;
+
+/**
+ * A database that splits reads and writes, sending updates to a primary
+ * database and queries to a set of read replicas chosen by a {@link LoadBalancer}.<br>
+ * After a thread updates the database, its queries are sent to the primary for
+ * the sticky window, so it reads its own writes despite any replication lag.
+ * Replicas that fail to connect too many times in a row are ejected for a while,
+ * and their queries are sent to the primary instead.
+ *
+ * @author luke.stevens
+ */
+public class RoutingDatabase implements Database {
+
+	private static final Logger LOGGER = Logger.getLogger(RoutingDatabase.class.getName());
+
+	private final AbstractDatabase primary;
+	private final List<Replica> replicas;
+	private final LoadBalancer loadBalancer;
+	private final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[] { Long.MIN_VALUE });
+
+	private volatile long stickyWindow = 1000;
+	private volatile int maxFailures = 3;
+	private volatile long ejectDuration = 30_000;
+
+	/**
+	 * Creates a new routing database, balancing queries across replicas in turn
+	 * @param primary The database to send updates to
+	 * @param replicas The databases to send queries to
+	 */
+	public RoutingDatabase(AbstractDatabase primary, List<? extends AbstractDatabase> replicas) {
+		this(primary, replicas, LoadBalancer.roundRobin());
+	}
+
+	/**
+	 * Creates a new routing database
+	 * @param primary The database to send updates to
+	 * @param replicas The databases to send queries to
+	 * @param loadBalancer Chooses which replica to send each query to
+	 */
+	public RoutingDatabase(AbstractDatabase primary, List<? extends AbstractDatabase> replicas, LoadBalancer loadBalancer) {
+		this.primary = primary;
+		this.loadBalancer = loadBalancer;
+		List<Replica> list = new ArrayList<>(replicas.size());
+		for(AbstractDatabase replica : replicas) {
+			list.add(new Replica(replica));
+		}
+		this.replicas = Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Queries a replica, or the primary if this thread has updated the database
+	 * within the sticky window or no replicas are healthy. If the replica fails
+	 * to connect, the query is retried on the primary.
+	 */
+	@Override
+	public DatabaseResult query(String query, Object... params) throws SQLException {
+		Replica replica = this.isSticky()? null : this.chooseReplica();
+		if(replica == null) {
+			return primary.query(query, params);
+		}
+
+		replica.start();
+		DatabaseResult result;
+		try {
+			result = replica.getDatabase().query(query, params);
+		} catch (SQLException e) {
+			replica.finish();
+			if(!isConnectionFailure(e)) {
+				throw e;
+			}
+			if(replica.recordFailure(maxFailures, TimeUnit.MILLISECONDS.toNanos(ejectDuration))) {
+				LOGGER.log(Level.WARNING, "Ejecting replica after " + replica.getConsecutiveFailures()
+						+ " connection failures: " + replica.getDatabase(), e);
+			}
+			return primary.query(query, params);
+		} catch (RuntimeException e) {
+			replica.finish();
+			throw e;
+		}
+
+		replica.recordSuccess();
+		if(result instanceof WrappedDatabaseResult) {
+			// The query is outstanding until its result has been read and closed
+			((WrappedDatabaseResult) result).onClose(replica::finish);
+		}
+		else {
+			replica.finish();
+		}
+		return result;
+	}
+
+	/**
+	 * Queries the primary database, regardless of any replicas
+	 * @param query The SQL query to execute
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @return The result of the query
+	 * @throws SQLException If a database error occurs
+	 */
+	public DatabaseResult queryPrimary(String query, Object... params) throws SQLException {
+		return primary.query(query, params);
+	}
+
+	/**
+	 * Updates the primary database, and sends this thread's queries
+	 * to the primary until the sticky window has passed
+	 */
+	@Override
+	public Optional<Long> update(String query, Object... params) throws SQLException {
+		try {
+			return primary.update(query, params);
+		} finally {
+			lastWrite.get()[0] = System.nanoTime();
+		}
+	}
+
+	/**
+	 * @return Whether this thread has updated the database within the sticky window
+	 */
+	boolean isSticky() {
+		long window = TimeUnit.MILLISECONDS.toNanos(stickyWindow);
+		long last = lastWrite.get()[0];
+		return window > 0 && last != Long.MIN_VALUE && System.nanoTime() - last < window;
+	}
+
+	/**
+	 * @return A healthy replica chosen by the load balancer, or null if there are none
+	 */
+	Replica chooseReplica() {
+		List<Replica> healthy = replicas;
+		for(int i = 0; i < replicas.size(); i++) {
+			if(!replicas.get(i).isHealthy()) {
+				// Only copy the list when a replica is unhealthy
+				healthy = new ArrayList<>(replicas.size());
+				for(Replica replica : replicas) {
+					if(replica.isHealthy()) {
+						healthy.add(replica);
+					}
+				}
+				break;
+			}
+		}
+		return healthy.isEmpty()? null : loadBalancer.choose(healthy);
+	}
+
+	/**
+	 * @return Whether an exception was caused by failing to connect to or communicate
+	 * with the database, rather than by the query itself. A {@link SQLTransientConnectionException}
+	 * without a connection SQL state is not a failure, as it is what a connection pool throws
+	 * when it is busy, and ejecting a busy replica would only move its load to the others.
+	 */
+	static boolean isConnectionFailure(SQLException e) {
+		if(e instanceof SQLNonTransientConnectionException
+				|| e instanceof SQLRecoverableException) {
+			return true;
+		}
+		String state = e.getSQLState();
+		return state != null && state.startsWith("08");
+	}
+
+	/**
+	 * @return The primary database
+	 */
+	public AbstractDatabase getPrimary() {
+		return primary;
+	}
+
+	/**
+	 * @return The read replicas, in the order they were given
+	 */
+	public List<Replica> getReplicas() {
+		return replicas;
+	}
+
+	/**
+	 * @param stickyWindow How long in milliseconds after updating the database a thread's
+	 * queries are sent to the primary, or 0 to always send queries to replicas (default 1s)
+	 */
+	public void setStickyWindow(long stickyWindow) {
+		this.stickyWindow = stickyWindow;
+	}
+
+	/**
+	 * @param maxFailures The number of consecutive connection failures
+	 * after which a replica is ejected (default 3)
+	 */
+	public void setMaxFailures(int maxFailures) {
+		this.maxFailures = maxFailures;
+	}
+
+	/**
+	 * @param ejectDuration How long in milliseconds an ejected replica is
+	 * sent no queries, before it is tried again (default 30s)
+	 */
+	public void setEjectDuration(long ejectDuration) {
+		this.ejectDuration = ejectDuration;
+	}
+
+}
@@ -0,0 +1,382 @@
+package uk.co.lukestevens.jdbc.scan;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+import uk.co.lukestevens.db.Database;
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.db.ResultParser;
+import uk.co.lukestevens.db.ResultSetAction;
+
+/**
+ * Reads a whole table in parallel, by splitting it into ranges of a numeric or
+ * time key and querying each range concurrently on its own connection.<br>
+ * Ranges are run on a fork-join pool. There are more ranges than threads by
+ * default, so a thread that finishes its ranges steals the ones still waiting
+ * behind a slow range, rather than sitting idle. Rows with a null key are read
+ * as one more partition.
+ *
+ * @author luke.stevens
+ */
+public class ParallelScan {
+
+	/**
+	 * How the key range of a table is split into partitions
+	 */
+	public enum Partitioning {
+		/**
+		 * Splits the range between the minimum and maximum key into equal
+		 * widths. This needs one cheap query, but partitions can be very uneven
+		 * if the keys are not spread evenly.
+		 */
+		RANGE,
+
+		/**
+		 * Splits the keys into partitions with the same number of rows, using
+		 * the NTILE window function. This reads every key once before the scan,
+		 * but works for keys of any type.
+		 */
+		QUANTILE
+	}
+
+	private final Database database;
+	private final String table;
+	private final String keyColumn;
+
+	private String columns = "*";
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private int partitions = 0;
+	private Partitioning partitioning = Partitioning.RANGE;
+
+	/**
+	 * Creates a new parallel scan
+	 * @param database The database to read the table from
+	 * @param table The table to read
+	 * @param keyColumn The column to split the table by. This should be indexed.
+	 */
+	public ParallelScan(Database database, String table, String keyColumn) {
+		this.database = database;
+		this.table = table;
+		this.keyColumn = keyColumn;
+	}
+
+	/**
+	 * Reads every row of the table, passing each one to an action. The action is
+	 * called from several threads at once, so must be thread safe.
+	 * @param action The action to run for each row
+	 * @return The stats of the scan
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be closed
+	 */
+	public ScanResult<Void> scan(ResultSetAction action) throws SQLException, IOException {
+		return this.run(() -> null, (container, rs) -> action.execute(rs), (left, right) -> null, container -> null);
+	}
+
+	/**
+	 * Reads every row of the table, collecting the parsed rows. Each partition is
+	 * collected separately, and the partitions are combined in key order, so the
+	 * collector does not need to be concurrent.
+	 * @param parser The parser to convert each row into an object
+	 * @param collector The collector to reduce the parsed rows
+	 * @return The collected result and stats of the scan
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be closed
+	 */
+	public <T, A, R> ScanResult<R> scan(ResultParser<T> parser, Collector<T, A, R> collector) throws SQLException, IOException {
+		BiConsumer<A, T> accumulator = collector.accumulator();
+		return this.run(collector.supplier(), (container, rs) -> accumulator.accept(container, parser.parse(rs)),
+				collector.combiner(), collector.finisher());
+	}
+
+	<A, R> ScanResult<R> run(Supplier<A> supplier, RowReader<A> reader, BinaryOperator<A> combiner, Function<A, R> finisher) throws SQLException, IOException {
+		long start = System.nanoTime();
+		List<Partition> ranges = this.getPartitions();
+		PartitionStats[] stats = new PartitionStats[ranges.size()];
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			Scan<A> scan = new Scan<>(ranges, stats, supplier, reader, combiner);
+			A result = pool.invoke(scan.new Task(0, ranges.size()));
+			return new ScanResult<>(finisher.apply(result), Arrays.asList(stats), System.nanoTime() - start);
+		} catch (ScanException e) {
+			Throwable cause = e.getCause();
+			while(cause instanceof ScanException) {
+				cause = cause.getCause();
+			}
+			if(cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			throw (IOException) cause;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Splits the key range of the table into partitions, with a last
+	 * partition for null keys
+	 * @return The partitions, in key order
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be closed
+	 */
+	List<Partition> getPartitions() throws SQLException, IOException {
+		Object[] range = new Object[2];
+		try(DatabaseResult result = database.query("SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM " + table)) {
+			result.processResultSet(rs -> {
+				range[0] = rs.getObject(1);
+				range[1] = rs.getObject(2);
+			});
+		}
+
+		List<Partition> list = new ArrayList<>();
+		if(range[0] != null) {
+			List<Object> bounds = partitioning == Partitioning.QUANTILE? this.getQuantiles() : this.getRanges(range[0], range[1]);
+			bounds.add(range[1]);
+			for(int i = 0; i < bounds.size() - 1; i++) {
+				boolean last = i == bounds.size() - 2;
+				list.add(new Partition(keyColumn + " >= ? AND " + keyColumn + (last? " <= ?" : " < ?"), bounds.get(i), bounds.get(i + 1)));
+			}
+		}
+		list.add(new Partition(keyColumn + " IS NULL"));
+		return list;
+	}
+
+	/**
+	 * @return The lower bound of each partition, evenly spaced between the minimum and maximum key
+	 */
+	List<Object> getRanges(Object min, Object max) {
+		int count = this.getPartitionCount();
+		List<Object> bounds = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			Object bound;
+			if(min instanceof BigInteger) {
+				BigInteger lower = (BigInteger) min;
+				BigInteger width = ((BigInteger) max).subtract(lower);
+				bound = lower.add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count)));
+			}
+			else if(min instanceof Integer || min instanceof Long || min instanceof Short || min instanceof Byte) {
+				// The width of a long range may not fit in a long
+				BigInteger lower = BigInteger.valueOf(((Number) min).longValue());
+				BigInteger width = BigInteger.valueOf(((Number) max).longValue()).subtract(lower);
+				bound = lower.add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count))).longValue();
+			}
+			else if(min instanceof Number) {
+				double lower = ((Number) min).doubleValue();
+				double width = ((Number) max).doubleValue() - lower;
+				bound = i == 0? min : lower + width * i / count;
+			}
+			else if(min instanceof Date) {
+				long lower = ((Date) min).getTime();
+				long width = ((Date) max).getTime() - lower;
+				bound = i == 0? min : new Timestamp(lower + (long) ((double) width * i / count));
+			}
+			else {
+				throw new IllegalArgumentException("Cannot split keys of type " + min.getClass().getName()
+						+ " into ranges, use quantile partitioning instead");
+			}
+
+			// Narrow ranges may have fewer distinct bounds than partitions
+			if(bounds.isEmpty() || !bounds.get(bounds.size() - 1).equals(bound)) {
+				bounds.add(bound);
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * @return The lowest key of each partition, splitting the keys into
+	 * partitions with the same number of rows
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be closed
+	 */
+	List<Object> getQuantiles() throws SQLException, IOException {
+		String sql = "SELECT MIN(" + keyColumn + ") FROM (SELECT " + keyColumn
+				+ ", NTILE(" + this.getPartitionCount() + ") OVER (ORDER BY " + keyColumn + ") AS scan_bucket FROM "
+				+ table + " WHERE " + keyColumn + " IS NOT NULL) scan_sample GROUP BY scan_bucket ORDER BY 1";
+
+		List<Object> bounds = new ArrayList<>();
+		try(DatabaseResult result = database.query(sql)) {
+			result.processResultSet(rs -> {
+				Object bound = rs.getObject(1);
+				if(bounds.isEmpty() || !bounds.get(bounds.size() - 1).equals(bound)) {
+					bounds.add(bound);
+				}
+			});
+		}
+		return bounds;
+	}
+
+	int getPartitionCount() {
+		return partitions > 0? partitions : parallelism * 4;
+	}
+
+	/**
+	 * @param columns The columns to select, separated by commas (default *)
+	 */
+	public void setColumns(String columns) {
+		this.columns = columns;
+	}
+
+	/**
+	 * @param parallelism The number of partitions read at once, each on its
+	 * own connection (default the number of processors)
+	 */
+	public void setParallelism(int parallelism) {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param partitions The number of partitions to split the key range into
+	 * (default four times the parallelism). Having more partitions than threads
+	 * lets idle threads take work from slow partitions.
+	 */
+	public void setPartitions(int partitions) {
+		if(partitions < 1) {
+			throw new IllegalArgumentException("Partitions must be at least 1");
+		}
+		this.partitions = partitions;
+	}
+
+	/**
+	 * @param partitioning How the key range is split into partitions (default {@link Partitioning#RANGE})
+	 */
+	public void setPartitioning(Partitioning partitioning) {
+		this.partitioning = partitioning;
+	}
+
+	/**
+	 * Reads one row of a partition into its container
+	 */
+	@FunctionalInterface
+	interface RowReader<A> {
+		void read(A container, ResultSet rs) throws SQLException;
+	}
+
+	/**
+	 * A range of keys, read by one query
+	 */
+	static class Partition {
+
+		final String condition;
+		final Object[] params;
+
+		Partition(String condition, Object... params) {
+			this.condition = condition;
+			this.params = params;
+		}
+
+		@Override
+		public String toString() {
+			String text = condition;
+			for(Object param : params) {
+				text = text.replaceFirst("\\?", String.valueOf(param));
+			}
+			return text;
+		}
+	}
+
+	/**
+	 * A running scan, shared by the tasks reading its partitions
+	 */
+	class Scan<A> {
+
+		private final List<Partition> ranges;
+		private final PartitionStats[] stats;
+		private final Supplier<A> supplier;
+		private final RowReader<A> reader;
+		private final BinaryOperator<A> combiner;
+		private final AtomicBoolean failed = new AtomicBoolean();
+
+		Scan(List<Partition> ranges, PartitionStats[] stats, Supplier<A> supplier, RowReader<A> reader, BinaryOperator<A> combiner) {
+			this.ranges = ranges;
+			this.stats = stats;
+			this.supplier = supplier;
+			this.reader = reader;
+			this.combiner = combiner;
+		}
+
+		A read(int index) {
+			A container = supplier.get();
+			if(failed.get()) {
+				// Another partition has failed, so the result will be discarded
+				return container;
+			}
+
+			Partition partition = ranges.get(index);
+			long[] rows = { 0 };
+			long start = System.nanoTime();
+			String sql = "SELECT " + columns + " FROM " + table + " WHERE " + partition.condition;
+			try(DatabaseResult result = database.query(sql, partition.params)) {
+				result.processResultSet(rs -> {
+					reader.read(container, rs);
+					rows[0]++;
+				});
+			} catch (SQLException | IOException e) {
+				failed.set(true);
+				throw new ScanException(e);
+			}
+			stats[index] = new PartitionStats(partition.toString(), rows[0], System.nanoTime() - start, Thread.currentThread().getName());
+			return container;
+		}
+
+		/**
+		 * Reads a range of partitions, by splitting it in half until a single partition
+		 * is left. The first half is forked, so an idle thread can steal it.
+		 */
+		class Task extends RecursiveTask<A> {
+
+			private static final long serialVersionUID = 1L;
+
+			private final int from;
+			private final int to;
+
+			Task(int from, int to) {
+				this.from = from;
+				this.to = to;
+			}
+
+			@Override
+			protected A compute() {
+				if(to - from == 1) {
+					return read(from);
+				}
+				int mid = (from + to) >>> 1;
+				Task left = new Task(from, mid);
+				left.fork();
+				A right = new Task(mid, to).compute();
+				return combiner.apply(left.join(), right);
+			}
+		}
+	}
+
+	/**
+	 * Carries a checked exception out of a fork-join task
+	 */
+	static class ScanException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		ScanException(Exception cause) {
+			super(cause);
+		}
+	}
+
+}
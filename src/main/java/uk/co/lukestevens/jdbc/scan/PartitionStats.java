@@ -0,0 +1,65 @@
+package uk.co.lukestevens.jdbc.scan;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long one partition of a {@link ParallelScan} took to read, and how many rows it read
+ *
+ * @author luke.stevens
+ */
+public class PartitionStats {
+
+	private final String condition;
+	private final long rowCount;
+	private final long nanos;
+	private final String threadName;
+
+	PartitionStats(String condition, long rowCount, long nanos, String threadName) {
+		this.condition = condition;
+		this.rowCount = rowCount;
+		this.nanos = nanos;
+		this.threadName = threadName;
+	}
+
+	/**
+	 * @return The condition selecting the rows of this partition, with its bounds
+	 */
+	public String getCondition() {
+		return condition;
+	}
+
+	/**
+	 * @return The number of rows read
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return How long the partition took to query and read in milliseconds
+	 */
+	public long getDuration() {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * @return The number of rows read each second
+	 */
+	public double getRowsPerSecond() {
+		return nanos == 0? 0 : rowCount * 1e9 / nanos;
+	}
+
+	/**
+	 * @return The name of the thread that read the partition
+	 */
+	public String getThreadName() {
+		return threadName;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d rows in %dms (%.0f rows/s) on %s",
+				condition, rowCount, getDuration(), getRowsPerSecond(), threadName);
+	}
+
+}
@@ -0,0 +1,63 @@
+package uk.co.lukestevens.jdbc.scan;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of a {@link ParallelScan}, with the throughput of each partition
+ *
+ * @author luke.stevens
+ */
+public class ScanResult<R> {
+
+	private final R value;
+	private final List<PartitionStats> partitions;
+	private final long nanos;
+
+	ScanResult(R value, List<PartitionStats> partitions, long nanos) {
+		this.value = value;
+		this.partitions = Collections.unmodifiableList(partitions);
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return The result of the collector, or null if rows were passed to an action
+	 */
+	public R getValue() {
+		return value;
+	}
+
+	/**
+	 * @return The stats of each partition, in key order
+	 */
+	public List<PartitionStats> getPartitions() {
+		return partitions;
+	}
+
+	/**
+	 * @return The total number of rows read
+	 */
+	public long getRowCount() {
+		long rows = 0;
+		for(PartitionStats partition : partitions) {
+			rows += partition.getRowCount();
+		}
+		return rows;
+	}
+
+	/**
+	 * @return How long the whole scan took in milliseconds
+	 */
+	public long getDuration() {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * @return The number of rows read each second across every partition
+	 */
+	public double getRowsPerSecond() {
+		return nanos == 0? 0 : this.getRowCount() * 1e9 / nanos;
+	}
+
+}
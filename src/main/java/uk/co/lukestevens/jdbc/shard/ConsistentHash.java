@@ -0,0 +1,62 @@
+package uk.co.lukestevens.jdbc.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A consistent hash ring, placing each node at many points on the ring
+ * so keys are spread evenly. Adding or removing a node only moves the
+ * keys placed on that node, rather than rehashing every key.
+ *
+ * @author luke.stevens
+ */
+class ConsistentHash<T> {
+
+	private final TreeMap<Long, T> ring = new TreeMap<>();
+
+	/**
+	 * Creates a new hash ring
+	 * @param nodes The nodes to place on the ring, by name. Names rather than
+	 * positions are hashed, so a node keeps its keys when others are added.
+	 * @param virtualNodes The number of points on the ring for each node
+	 */
+	ConsistentHash(Map<String, T> nodes, int virtualNodes) {
+		if(nodes.isEmpty()) {
+			throw new IllegalArgumentException("At least one node is required");
+		}
+		for(Map.Entry<String, T> node : nodes.entrySet()) {
+			for(int i = 0; i < virtualNodes; i++) {
+				ring.put(hash(node.getKey() + "#" + i), node.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @param key The key to place
+	 * @return The node the key is placed on, the first clockwise from its hash
+	 */
+	T get(Object key) {
+		Map.Entry<Long, T> node = ring.ceilingEntry(hash(String.valueOf(key)));
+		return node != null? node.getValue() : ring.firstEntry().getValue();
+	}
+
+	/**
+	 * Hashes a string with 64 bit FNV-1a, then mixes the bits so
+	 * similar keys are spread across the ring
+	 */
+	static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for(byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+}
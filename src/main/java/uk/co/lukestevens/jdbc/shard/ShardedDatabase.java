@@ -0,0 +1,300 @@
+package uk.co.lukestevens.jdbc.shard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.db.ResultParser;
+import uk.co.lukestevens.jdbc.AbstractDatabase;
+
+/**
+ * A database split across several shards, each an {@link AbstractDatabase}.
+ * Rows are placed on a shard by a shard key, using consistent hashing so that
+ * adding a shard only moves the keys placed on it.<br>
+ * Queries and updates for a single key are sent to that key's shard. Queries
+ * without a shard key are sent to every shard in parallel, and their results merged.<br>
+ * This is not a {@link uk.co.lukestevens.db.Database}, as an update without a shard
+ * key has no single shard to go to, and a query of every shard has no single
+ * connection or result set.
+ *
+ * @author luke.stevens
+ */
+public class ShardedDatabase implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(ShardedDatabase.class.getName());
+	static final int VIRTUAL_NODES = 160;
+
+	private final Map<String, AbstractDatabase> shards;
+	private final ConsistentHash<String> ring;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a new sharded database, naming each shard by its position in the list.
+	 * New shards should only be added to the end of the list, so existing shards keep their names.
+	 * @param shards The databases to split rows across
+	 */
+	public ShardedDatabase(List<? extends AbstractDatabase> shards) {
+		this(name(shards));
+	}
+
+	/**
+	 * Creates a new sharded database, querying shards in parallel on a fork join pool
+	 * @param shards The databases to split rows across, by name. Keys are placed by
+	 * the name of each shard, so names should not change once rows have been placed.
+	 */
+	public ShardedDatabase(Map<String, ? extends AbstractDatabase> shards) {
+		this(shards, new ForkJoinPool(shards.size()));
+	}
+
+	/**
+	 * Creates a new sharded database
+	 * @param shards The databases to split rows across, by name. Keys are placed by
+	 * the name of each shard, so names should not change once rows have been placed.
+	 * @param executor The executor to query shards in parallel on. This will be shut
+	 * down when this database is closed.
+	 */
+	public ShardedDatabase(Map<String, ? extends AbstractDatabase> shards, ExecutorService executor) {
+		this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+		this.executor = executor;
+
+		Map<String, String> names = new LinkedHashMap<>();
+		for(String name : shards.keySet()) {
+			names.put(name, name);
+		}
+		this.ring = new ConsistentHash<>(names, VIRTUAL_NODES);
+	}
+
+	static Map<String, AbstractDatabase> name(List<? extends AbstractDatabase> shards) {
+		Map<String, AbstractDatabase> named = new LinkedHashMap<>();
+		for(int i = 0; i < shards.size(); i++) {
+			named.put("shard-" + i, shards.get(i));
+		}
+		return named;
+	}
+
+	/**
+	 * @param shardKey The shard key of a row
+	 * @return The name of the shard the row is placed on
+	 */
+	public String getShardName(Object shardKey) {
+		return ring.get(shardKey);
+	}
+
+	/**
+	 * @param shardKey The shard key of a row
+	 * @return The database the row is placed on
+	 */
+	public AbstractDatabase getShard(Object shardKey) {
+		return shards.get(ring.get(shardKey));
+	}
+
+	/**
+	 * @return Every shard, by name
+	 */
+	public Map<String, AbstractDatabase> getShards() {
+		return shards;
+	}
+
+	/**
+	 * Queries the shard a key is placed on
+	 * @param shardKey The shard key of the rows being queried
+	 * @param query The SQL query to execute
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @return The result of the query
+	 * @throws SQLException If a database error occurs
+	 */
+	public DatabaseResult queryShard(Object shardKey, String query, Object...params) throws SQLException {
+		return this.getShard(shardKey).query(query, params);
+	}
+
+	/**
+	 * Updates the shard a key is placed on
+	 * @param shardKey The shard key of the rows being updated
+	 * @param query The SQL query to execute
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @return The generated key of the updated row, if one exists
+	 * @throws SQLException If a database error occurs
+	 */
+	public Optional<Long> updateShard(Object shardKey, String query, Object...params) throws SQLException {
+		return this.getShard(shardKey).update(query, params);
+	}
+
+	/**
+	 * Queries every shard in parallel. The results are read from each shard in turn,
+	 * and should be closed to release every shard's connection.
+	 * @param query The SQL query to execute
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @return A {@link ShardedResult} of every shard's result
+	 * @throws SQLException If a database error occurs on any shard
+	 */
+	public ShardedResult queryAll(String query, Object... params) throws SQLException {
+		return new ShardedResult(this.scatter(shard -> shard.query(query, params), result -> {
+			// Release the connections of the shards that succeeded
+			try {
+				result.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Failed to close shard result", e);
+			}
+		}));
+	}
+
+	/**
+	 * Queries every shard in parallel, merging their results in order. Each shard
+	 * only needs to read enough rows to fill the limit, so the query should sort
+	 * its rows the same way as the comparator, and limit them if possible.
+	 * @param query The SQL query to execute
+	 * @param parser The parser used to convert each row
+	 * @param comparator The order of the rows
+	 * @param limit The maximum number of rows to return, or a negative number for all rows
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @return The parsed rows of every shard, in order
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be read
+	 */
+	public <T> List<T> queryMerged(String query, ResultParser<T> parser, Comparator<? super T> comparator, int limit, Object...params) throws SQLException, IOException {
+		try(ShardedResult result = this.queryAll(query, params)) {
+			return result.merge(parser, comparator, limit);
+		}
+	}
+
+	/**
+	 * Runs an update against every shard in parallel, for example a schema change.
+	 * Updates to rows must use {@link #updateShard(Object, String, Object...)} instead,
+	 * as rows inserted by this method would be written to every shard.<br>
+	 * The update is not atomic across shards, so if it fails on one shard it may
+	 * already have been applied to others.
+	 * @param query The SQL query to execute
+	 * @param params A variable array of parameters to substitute
+	 * into the SQL query
+	 * @throws SQLException If a database error occurs on any shard
+	 */
+	public void updateAll(String query, Object... params) throws SQLException {
+		this.scatter(shard -> shard.update(query, params), key -> {});
+	}
+
+	/**
+	 * Runs a call against every shard in parallel, waiting for them all to finish
+	 * @param call The call to run against each shard
+	 * @param release Releases the result of a shard that succeeded, if another shard failed
+	 * @return The result of each shard, in the order of the shards
+	 * @throws SQLException If the call failed on any shard. Failures of
+	 * other shards are added as suppressed exceptions.
+	 */
+	<T> List<T> scatter(ShardCall<T> call, Consumer<T> release) throws SQLException {
+		List<Slot<T>> slots = new ArrayList<>(shards.size());
+		List<Future<T>> futures = new ArrayList<>(shards.size());
+		for(AbstractDatabase shard : shards.values()) {
+			Slot<T> slot = new Slot<>();
+			slots.add(slot);
+			futures.add(executor.submit(() -> {
+				T result = call.call(shard);
+				if(!slot.offer(result)) {
+					// The caller has stopped waiting, so nothing else will release this result
+					release.accept(result);
+				}
+				return result;
+			}));
+		}
+
+		List<T> results = new ArrayList<>(futures.size());
+		SQLException error = null;
+		for(Future<T> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for(Future<T> pending : futures) {
+					pending.cancel(true);
+				}
+				for(Slot<T> slot : slots) {
+					T result = slot.abandon();
+					if(result != null) {
+						release.accept(result);
+					}
+				}
+				SQLException interrupted = new SQLException("Interrupted while waiting for shards", e);
+				if(error != null) {
+					interrupted.addSuppressed(error);
+				}
+				throw interrupted;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				SQLException sqlError = cause instanceof SQLException? (SQLException) cause : new SQLException(cause);
+				if(error == null) {
+					error = sqlError;
+				}
+				else {
+					error.addSuppressed(sqlError);
+				}
+			}
+		}
+
+		if(error != null) {
+			results.forEach(release);
+			throw error;
+		}
+		return results;
+	}
+
+	@FunctionalInterface
+	interface ShardCall<T> {
+		T call(AbstractDatabase shard) throws SQLException;
+	}
+
+	/**
+	 * Hands the result of one shard's call to the caller, unless the caller has
+	 * stopped waiting, in which case the call releases its own result
+	 */
+	static class Slot<T> {
+
+		private T result;
+		private boolean abandoned = false;
+
+		/**
+		 * @return Whether the caller will receive the result
+		 */
+		synchronized boolean offer(T result) {
+			if(abandoned) {
+				return false;
+			}
+			this.result = result;
+			return true;
+		}
+
+		/**
+		 * @return The result if the call has already finished, which the caller must release
+		 */
+		synchronized T abandon() {
+			abandoned = true;
+			return result;
+		}
+	}
+
+	/**
+	 * Shuts down the executor used to query shards in parallel
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+}
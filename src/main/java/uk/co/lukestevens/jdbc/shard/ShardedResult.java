@@ -0,0 +1,218 @@
+package uk.co.lukestevens.jdbc.shard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.db.ResultParser;
+import uk.co.lukestevens.db.ResultSetAction;
+import uk.co.lukestevens.jdbc.result.WrappedDatabaseResult;
+
+/**
+ * The results of a query run against every shard of a {@link ShardedDatabase},
+ * read as if they were a single result. Rows are read from each shard in turn,
+ * or merged in order by {@link #merge(ResultParser, Comparator, int)}.<br>
+ * There is no single connection or result set, so this is not a {@link DatabaseResult}.
+ * The result of each shard can be read directly using {@link #getResults()}.
+ *
+ * @author luke.stevens
+ */
+public class ShardedResult implements Closeable {
+
+	private final List<DatabaseResult> results;
+
+	/**
+	 * Creates a new sharded result
+	 * @param results The result from each shard
+	 */
+	public ShardedResult(List<DatabaseResult> results) {
+		this.results = Collections.unmodifiableList(new ArrayList<>(results));
+	}
+
+	/**
+	 * @return The result from each shard, in the order of the shards
+	 */
+	public List<DatabaseResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * Performs an action on every row of each shard in turn
+	 * @param action The action to perform on each row
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be read
+	 */
+	public void processResultSet(ResultSetAction action) throws SQLException, IOException {
+		for(DatabaseResult result : results) {
+			result.processResultSet(action);
+		}
+	}
+
+	/**
+	 * Parses every row of each shard in turn
+	 * @param parser The parser used to convert each row
+	 * @return The parsed rows of every shard
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If a result cannot be read
+	 */
+	public <T> List<T> parseResultSet(ResultParser<T> parser) throws SQLException, IOException {
+		List<T> list = new ArrayList<>();
+		this.processResultSet(rs -> list.add(parser.parse(rs)));
+		return list;
+	}
+
+	/**
+	 * Creates a stream that lazily parses the rows of each shard in turn. This result
+	 * is closed when the stream is closed, so the stream should be used in a
+	 * try-with-resources statement.<br>
+	 * Any database errors while streaming are thrown as an {@link UncheckedIOException}
+	 * @param parser The parser used to convert each row
+	 * @return A stream of the parsed rows
+	 */
+	public <T> Stream<T> stream(ResultParser<T> parser) {
+		Iterator<T> iterator = new Iterator<T>() {
+
+			int shard = 0;
+			Iterator<T> current = Collections.emptyIterator();
+
+			@Override
+			public boolean hasNext() {
+				while(!current.hasNext() && shard < results.size()) {
+					current = iterator(results.get(shard++), parser);
+				}
+				return current.hasNext();
+			}
+
+			@Override
+			public T next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return current.next();
+			}
+		};
+
+		Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED);
+		return StreamSupport.stream(spliterator, false).onClose(() -> {
+			try {
+				this.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Merges the rows of every shard in order, reading only as many rows from each
+	 * shard as are needed. Each shard's rows must already be sorted by the comparator,
+	 * for example with the same <code>ORDER BY</code> clause.
+	 * @param parser The parser used to convert each row
+	 * @param comparator The order of the rows
+	 * @param limit The maximum number of rows to return, or a negative number for all rows
+	 * @return The parsed rows of every shard, in order
+	 * @throws SQLException If a database error occurs
+	 * @throws IOException If the result cannot be read
+	 */
+	public <T> List<T> merge(ResultParser<T> parser, Comparator<? super T> comparator, int limit) throws SQLException, IOException {
+		PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, results.size()),
+				(a, b) -> comparator.compare(a.row, b.row));
+		List<T> merged = new ArrayList<>();
+		try {
+			for(DatabaseResult result : results) {
+				Head<T> head = new Head<>(iterator(result, parser));
+				if(head.advance()) {
+					heads.add(head);
+				}
+			}
+			while(!heads.isEmpty() && (limit < 0 || merged.size() < limit)) {
+				Head<T> head = heads.poll();
+				merged.add(head.row);
+				if(head.advance()) {
+					heads.add(head);
+				}
+			}
+		} catch (UncheckedIOException e) {
+			Throwable cause = e.getCause().getCause();
+			if(cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			throw e.getCause();
+		}
+		return merged;
+	}
+
+	/**
+	 * @return An iterator over the parsed rows of a shard,
+	 * read lazily if the shard's result supports it
+	 */
+	static <T> Iterator<T> iterator(DatabaseResult result, ResultParser<T> parser) {
+		if(result instanceof WrappedDatabaseResult) {
+			return ((WrappedDatabaseResult) result).iterator(parser);
+		}
+		try {
+			return result.parseResultSet(parser).iterator();
+		} catch (SQLException e) {
+			throw new UncheckedIOException(new IOException(e));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Closes the result of every shard
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException error = null;
+		for(DatabaseResult result : results) {
+			try {
+				result.close();
+			} catch (IOException e) {
+				if(error == null) {
+					error = e;
+				}
+				else {
+					error.addSuppressed(e);
+				}
+			}
+		}
+		if(error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * The next unmerged row of a shard
+	 */
+	static class Head<T> {
+
+		final Iterator<T> rows;
+		T row;
+
+		Head(Iterator<T> rows) {
+			this.rows = rows;
+		}
+
+		boolean advance() {
+			if(!rows.hasNext()) {
+				return false;
+			}
+			row = rows.next();
+			return true;
+		}
+	}
+
+}
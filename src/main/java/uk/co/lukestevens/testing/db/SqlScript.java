@@ -0,0 +1,117 @@
+package uk.co.lukestevens.testing.db;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Splits SQL scripts into separate statements, caching the statements
+ * of each script file so it is only read and parsed once
+ *
+ * @author Luke Stevens
+ */
+class SqlScript {
+
+	private static final Map<String, List<String>> CACHE = new ConcurrentHashMap<>();
+
+	private SqlScript() {}
+
+	/**
+	 * Loads the statements of a file in the sql resources folder
+	 * @param file The file name, without the folder or .sql suffix
+	 * @return The statements in the file, in order
+	 * @throws IOException If the file does not exist or cannot be read
+	 */
+	static List<String> load(String file) throws IOException {
+		try {
+			return CACHE.computeIfAbsent(file, name -> {
+				try {
+					return Collections.unmodifiableList(parse(read(name)));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	static String read(String file) throws IOException {
+		String path = "/sql/" + file + ".sql";
+		InputStream input = SqlScript.class.getResourceAsStream(path);
+		if(input == null) {
+			throw new FileNotFoundException("SQL file not found: " + path);
+		}
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))){
+			return reader.lines().collect(Collectors.joining(System.lineSeparator()));
+		}
+	}
+
+	/**
+	 * Splits a script into statements at each semicolon, ignoring semicolons in
+	 * quoted strings, identifiers, dollar quoted bodies and comments. Comments
+	 * are removed.
+	 * @param sql The script to split
+	 * @return The non-empty statements, without their semicolons
+	 */
+	static List<String> parse(String sql) {
+		List<String> statements = new ArrayList<>();
+		StringBuilder statement = new StringBuilder();
+		int i = 0;
+		while(i < sql.length()) {
+			char c = sql.charAt(i);
+			int end;
+			if(c == '\'' || c == '"') {
+				end = sql.indexOf(c, i + 1);
+				end = end < 0? sql.length() : end + 1;
+			}
+			else if(sql.startsWith("$$", i)) {
+				end = sql.indexOf("$$", i + 2);
+				end = end < 0? sql.length() : end + 2;
+			}
+			else if(sql.startsWith("--", i)) {
+				end = sql.indexOf('\n', i);
+				i = end < 0? sql.length() : end;
+				continue;
+			}
+			else if(sql.startsWith("/*", i)) {
+				end = sql.indexOf("*/", i + 2);
+				i = end < 0? sql.length() : end + 2;
+				statement.append(' ');
+				continue;
+			}
+			else if(c == ';') {
+				add(statements, statement);
+				i++;
+				continue;
+			}
+			else {
+				end = i + 1;
+			}
+			// Doubled quotes are read as two adjacent quoted sections
+			statement.append(sql, i, end);
+			i = end;
+		}
+		add(statements, statement);
+		return statements;
+	}
+
+	static void add(List<String> statements, StringBuilder statement) {
+		String trimmed = statement.toString().trim();
+		if(!trimmed.isEmpty()) {
+			statements.add(trimmed);
+		}
+		statement.setLength(0);
+	}
+
+}
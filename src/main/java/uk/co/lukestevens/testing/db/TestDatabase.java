@@ -1,27 +1,61 @@
 package uk.co.lukestevens.testing.db;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import uk.co.lukestevens.jdbc.AbstractDatabase;
 
 /**
  * A test database with hardcoded credentials to use a H2
- * in memory database for testing
+ * in memory database for testing.<br>
+ * Fixtures can be saved as a named snapshot once, and restored
+ * before each test rather than re-running every fixture file.
+ * Snapshots are shared by every test database in the JVM.<br>
+ * Each name is a separate database, so tests can run in parallel using
+ * their own databases, typically borrowed from a {@link TestDatabasePool}.
  * 
  * @author Luke Stevens
  */
-public class TestDatabase extends AbstractDatabase {
+public class TestDatabase extends AbstractDatabase implements Closeable {
 	
-	final String url = "jdbc:h2:mem:test;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+	private static final Map<String, List<String>> SNAPSHOTS = new ConcurrentHashMap<>();
+	static final String SHARED_NAME = "test";
+	
+	final String name;
+	final String url;
 	final String username = "sa";
 	final String password = "";
+	TestDatabasePool pool;
+	
+	/**
+	 * Creates a test database using the shared database named 'test'.
+	 * Other test databases in the JVM may be using the shared database,
+	 * so it is not shut down when this is closed.
+	 */
+	public TestDatabase() {
+		this(SHARED_NAME);
+	}
+	
+	/**
+	 * Creates a test database using the in memory database with the given name.
+	 * The database is created when first connected to, and kept until it is closed.
+	 * @param name The name of the database
+	 */
+	public TestDatabase(String name) {
+		this.name = name;
+		this.url = "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+	}
 	
 	@Override
 	protected Connection getConnection() throws SQLException {
@@ -29,25 +63,142 @@ public class TestDatabase extends AbstractDatabase {
 	}
 	
 	/**
-	 * Executes a sql file in the sql resources folder
+	 * Executes a sql file in the sql resources folder. Each file is only read
+	 * once, and its statements are executed in order on a single connection,
+	 * stopping at the first statement that fails.
 	 * @param file The file name. Note the folder and .sql suffix does not need to be included.
 	 * To execute /sql/setup.sql you would use the string 'setup'
-	 * @throws IOException
-	 * @throws SQLException
+	 * @throws IOException If the file does not exist or cannot be read
+	 * @throws SQLException If a statement in the file fails
 	 */
 	public void executeFile(String file) throws IOException, SQLException {
-		String sql = null;
-		try (InputStream input = TestDatabase.class.getResourceAsStream("/sql/" + file + ".sql");
-			BufferedReader reader = new BufferedReader(new InputStreamReader(input))){
-				
-			StringBuilder builder = new StringBuilder();
-			reader.lines().forEach(line -> builder.append(line + System.lineSeparator()));	
-			sql = builder.toString();
+		this.execute(SqlScript.load(file));
+	}
+	
+	/**
+	 * Saves the current contents of the database as a named snapshot,
+	 * replacing any existing snapshot with the same name
+	 * @param name The name of the snapshot
+	 * @throws SQLException If a database error occurs
+	 */
+	public void snapshot(String name) throws SQLException {
+		List<String> statements = new ArrayList<>();
+		try(Connection conn = this.getConnection();
+			Statement stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery("SCRIPT NOPASSWORDS NOSETTINGS")) {
+			
+			while(rs.next()) {
+				statements.add(rs.getString(1));
+			}
+		}
+		SNAPSHOTS.put(name, Collections.unmodifiableList(statements));
+	}
+	
+	/**
+	 * Replaces the contents of the database with a snapshot
+	 * @param name The name of the snapshot
+	 * @throws IllegalArgumentException If no snapshot with this name has been saved
+	 * @throws SQLException If a database error occurs
+	 */
+	public void restore(String name) throws SQLException {
+		List<String> statements = SNAPSHOTS.get(name);
+		if(statements == null) {
+			throw new IllegalArgumentException("No snapshot named " + name);
+		}
+		this.reset();
+		this.execute(statements);
+	}
+	
+	/**
+	 * @param name The name of the snapshot
+	 * @return Whether a snapshot with this name has been saved
+	 */
+	public boolean hasSnapshot(String name) {
+		return SNAPSHOTS.containsKey(name);
+	}
+	
+	/**
+	 * Loads fixture files into an empty database. The first time a set of files is
+	 * loaded, the files are executed in order and the result saved as a snapshot.
+	 * Later calls restore that snapshot instead.
+	 * @param files The fixture file names, as passed to {@link #executeFile(String)}
+	 * @throws IOException If a file does not exist or cannot be read
+	 * @throws SQLException If a database error occurs
+	 */
+	public void loadFixtures(String...files) throws IOException, SQLException {
+		String name = "fixtures:" + String.join(",", files);
+		if(this.hasSnapshot(name)) {
+			this.restore(name);
+			return;
 		}
 		
-		this.update(sql);
+		this.reset();
+		for(String file : files) {
+			this.executeFile(file);
+		}
+		this.snapshot(name);
+	}
+	
+	/**
+	 * Drops every table, sequence and other object in the database
+	 * @throws SQLException If a database error occurs
+	 */
+	public void reset() throws SQLException {
+		this.execute(Collections.singletonList("DROP ALL OBJECTS"));
+	}
+	
+	/**
+	 * Executes statements one at a time rather than as a JDBC batch, as a batch
+	 * cannot contain statements that return results, such as <code>CALL</code>,
+	 * and may carry on past a statement that fails
+	 */
+	void execute(List<String> statements) throws SQLException {
+		try(Connection conn = this.getConnection();
+			Statement stmt = conn.createStatement()) {
+			
+			for(String sql : statements) {
+				stmt.execute(sql);
+			}
+		}
+	}
+	
+	/**
+	 * @return The name of the in memory database
+	 */
+	public String getName() {
+		return name;
 	}
 	
+	/**
+	 * Returns this database to the pool it was borrowed from. If it was not
+	 * borrowed from a pool, a named database is shut down and its contents
+	 * discarded. The shared database named 'test' is left running.
+	 * @throws IOException If the database cannot be shut down
+	 */
+	@Override
+	public void close() throws IOException {
+		if(pool != null) {
+			pool.release(this);
+			return;
+		}
+		if(SHARED_NAME.equals(name)) {
+			return;
+		}
+		try {
+			this.shutdown();
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	void shutdown() throws SQLException {
+		this.execute(Collections.singletonList("SHUTDOWN"));
+	}
+	
+	/**
+	 * @return The connection properties of this database, for configuring
+	 * other libraries such as Hibernate to use the same database
+	 */
 	public Properties getProperties() {
 		Properties props = new Properties();
 		props.put("database.url", url);
@@ -0,0 +1,151 @@
+package uk.co.lukestevens.testing.db;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of isolated, uniquely named in memory test databases, each with the same
+ * fixtures loaded. Tests borrow a database, and closing it resets its fixtures and
+ * returns it to the pool, so tests running in parallel never share a database and
+ * new databases are only created when every pooled database is in use.<br>
+ * Fixtures are loaded from files in the sql resources folder, which are only run
+ * once. Every other database restores a snapshot of them.
+ *
+ * @author Luke Stevens
+ */
+public class TestDatabasePool implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(TestDatabasePool.class.getName());
+	private static final AtomicInteger POOL_IDS = new AtomicInteger();
+
+	private final String prefix = "test-" + POOL_IDS.incrementAndGet() + "-";
+	private final AtomicInteger databaseIds = new AtomicInteger();
+	private final String[] files;
+	private final ConcurrentLinkedDeque<TestDatabase> idle = new ConcurrentLinkedDeque<>();
+	private final List<TestDatabase> created = new ArrayList<>();
+	private final Set<TestDatabase> borrowed = ConcurrentHashMap.newKeySet();
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a new pool of test databases
+	 * @param files The fixture files to load into every database, as passed
+	 * to {@link TestDatabase#executeFile(String)}
+	 */
+	public TestDatabasePool(String...files) {
+		this.files = files;
+	}
+
+	/**
+	 * Creates databases up front, so tests do not wait for fixtures to load
+	 * @param count The number of idle databases to add to the pool
+	 * @throws IOException If a fixture file does not exist or cannot be read
+	 * @throws SQLException If a database error occurs
+	 */
+	public void prepare(int count) throws IOException, SQLException {
+		for(int i = 0; i < count; i++) {
+			idle.push(this.create());
+		}
+	}
+
+	/**
+	 * Borrows an idle database from the pool, or creates a new one if every
+	 * database is in use. The database should be closed once the test has finished.
+	 * @return A database with only the pool's fixtures loaded
+	 * @throws IOException If a fixture file does not exist or cannot be read
+	 * @throws SQLException If a database error occurs
+	 */
+	public TestDatabase acquire() throws IOException, SQLException {
+		if(closed) {
+			throw new IllegalStateException("Test database pool has been closed");
+		}
+		TestDatabase database = idle.poll();
+		if(database == null) {
+			database = this.create();
+		}
+		borrowed.add(database);
+		return database;
+	}
+
+	TestDatabase create() throws IOException, SQLException {
+		TestDatabase database = new TestDatabase(prefix + databaseIds.incrementAndGet());
+		database.loadFixtures(files);
+		database.pool = this;
+		synchronized(created) {
+			created.add(database);
+		}
+		return database;
+	}
+
+	/**
+	 * Restores a database's fixtures, and returns it to the pool. If its fixtures
+	 * cannot be restored, the database is discarded. Releasing a database that
+	 * is not borrowed, for example by closing it twice, does nothing.
+	 * @param database A database borrowed from this pool
+	 */
+	void release(TestDatabase database) {
+		if(!borrowed.remove(database)) {
+			return;
+		}
+		try {
+			if(closed) {
+				this.discard(database);
+				return;
+			}
+			database.loadFixtures(files);
+			idle.push(database);
+		} catch (IOException | SQLException e) {
+			LOGGER.log(Level.WARNING, "Discarding test database " + database.getName(), e);
+			this.discard(database);
+		}
+	}
+
+	void discard(TestDatabase database) {
+		synchronized(created) {
+			created.remove(database);
+		}
+		try {
+			database.shutdown();
+		} catch (SQLException e) {
+			// The database is already unusable
+		}
+	}
+
+	/**
+	 * @return The number of databases waiting to be borrowed
+	 */
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * @return The number of databases created by this pool and not yet discarded
+	 */
+	public int getSize() {
+		synchronized(created) {
+			return created.size();
+		}
+	}
+
+	/**
+	 * Shuts down every database created by this pool. Databases still borrowed
+	 * are shut down when they are closed.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		TestDatabase database;
+		while((database = idle.poll()) != null) {
+			this.discard(database);
+		}
+	}
+
+}
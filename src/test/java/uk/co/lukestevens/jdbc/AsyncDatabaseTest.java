@@ -0,0 +1,166 @@
+package uk.co.lukestevens.jdbc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AsyncDatabaseTest {
+
+	ResultSet rs = mock(ResultSet.class);
+	ResultSet keys = mock(ResultSet.class);
+	PreparedStatement stmt = mock(PreparedStatement.class);
+	Connection connection = mock(Connection.class);
+	AbstractDatabase database = mock(AbstractDatabase.class, CALLS_REAL_METHODS);
+	AsyncDatabase async = new AsyncDatabase(database, 1, 1);
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		when(database.getConnection()).thenReturn(connection);
+		when(connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS))
+			.thenReturn(stmt);
+	}
+
+	@AfterEach
+	public void close() {
+		async.close();
+	}
+
+	@Test
+	public void testQueryAsync() throws Exception {
+		when(stmt.executeQuery()).thenReturn(rs);
+		when(rs.next()).thenReturn(true, true, false);
+		when(rs.getString(1)).thenReturn("a", "b");
+
+		List<String> result = async.queryAsync("sql", r -> r.getString(1), 1).get(5, TimeUnit.SECONDS);
+
+		assertEquals(Arrays.asList("a", "b"), result);
+		verify(stmt).setInt(1, 1);
+		verify(rs).close();
+		verify(connection).close();
+	}
+
+	@Test
+	public void testUpdateAsync() throws Exception {
+		when(stmt.getGeneratedKeys()).thenReturn(keys);
+		when(keys.next()).thenReturn(true);
+		when(keys.getLong(1)).thenReturn(12L);
+
+		Optional<Long> id = async.updateAsync("sql", "value").get(5, TimeUnit.SECONDS);
+
+		assertEquals(Optional.of(12L), id);
+		verify(stmt).setString(1, "value");
+		verify(connection).close();
+	}
+
+	@Test
+	public void testFailedQueryCompletesExceptionally() throws Exception {
+		SQLException error = new SQLException("bad query");
+		when(stmt.executeQuery()).thenThrow(error);
+
+		CompletableFuture<List<String>> future = async.queryAsync("sql", r -> r.getString(1));
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+		assertEquals(error, e.getCause());
+		verify(connection).close();
+		assertEquals(0, async.getInFlight());
+	}
+
+	@Test
+	public void testCallsRejectedWhenQueueFull() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(stmt.executeQuery()).thenAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			return rs;
+		});
+
+		CompletableFuture<List<String>> running = async.queryAsync("sql", r -> r.getString(1));
+		started.await(5, TimeUnit.SECONDS);
+		CompletableFuture<List<String>> queued = async.queryAsync("sql", r -> r.getString(1));
+		CompletableFuture<List<String>> rejected = async.queryAsync("sql", r -> r.getString(1));
+
+		assertEquals(2, async.getInFlight());
+		ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof RejectedExecutionException);
+
+		release.countDown();
+		running.get(5, TimeUnit.SECONDS);
+		queued.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testCancelCancelsRunningStatement() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch cancelled = new CountDownLatch(1);
+		when(stmt.executeQuery()).thenAnswer(invocation -> {
+			started.countDown();
+			cancelled.await();
+			throw new SQLException("cancelled");
+		});
+		doAnswer(invocation -> {
+			cancelled.countDown();
+			return null;
+		}).when(stmt).cancel();
+
+		CompletableFuture<List<String>> future = async.queryAsync("sql", r -> r.getString(1));
+		started.await(5, TimeUnit.SECONDS);
+
+		assertTrue(future.cancel(true));
+		assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+		verify(stmt).cancel();
+	}
+
+	@Test
+	public void testCancelBeforeRunningSkipsCall() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		when(stmt.executeQuery()).thenAnswer(invocation -> {
+			release.await();
+			return rs;
+		});
+
+		CompletableFuture<List<String>> running = async.queryAsync("sql", r -> r.getString(1));
+		CompletableFuture<List<String>> queued = async.queryAsync("sql", r -> r.getString(1));
+		queued.cancel(true);
+		release.countDown();
+		running.get(5, TimeUnit.SECONDS);
+
+		verify(database, timeout(5000).times(1)).getConnection();
+		assertTrue(queued.isCancelled());
+	}
+
+	@Test
+	public void testWithVirtualThreads() throws Exception {
+		AsyncDatabase virtual;
+		try {
+			virtual = AsyncDatabase.withVirtualThreads(database, 10, 0);
+		} catch (UnsupportedOperationException e) {
+			// Virtual threads are only available on newer JVMs
+			return;
+		}
+		try {
+			when(stmt.executeQuery()).thenReturn(rs);
+			assertTrue(virtual.queryAsync("sql", r -> r.getString(1)).get(5, TimeUnit.SECONDS).isEmpty());
+		} finally {
+			virtual.close();
+		}
+	}
+
+}
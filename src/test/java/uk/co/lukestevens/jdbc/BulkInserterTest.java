@@ -0,0 +1,135 @@
+package uk.co.lukestevens.jdbc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.result.BulkInsertResult;
+
+public class BulkInserterTest {
+
+	static SimpleDatabase database = new SimpleDatabase("jdbc:h2:mem:bulkinsert;DB_CLOSE_DELAY=-1", "sa", "");
+
+	BulkInserter inserter = new BulkInserter(database, "item", "id", "name", "price");
+
+	@BeforeAll
+	public static void setupDatabase() throws SQLException {
+		database.update("CREATE TABLE item(id INT PRIMARY KEY, name VARCHAR(16), price DOUBLE)");
+	}
+
+	@BeforeEach
+	public void clearTable() throws SQLException {
+		database.update("DELETE FROM item");
+	}
+
+	static Stream<Object[]> rows(int count) {
+		return IntStream.rangeClosed(1, count).mapToObj(i -> new Object[] { i, "item" + i, i * 0.5 });
+	}
+
+	static int count() throws SQLException, IOException {
+		try(DatabaseResult result = database.query("SELECT COUNT(*) FROM item")) {
+			return result.parseResultSet(rs -> rs.getInt(1)).get(0);
+		}
+	}
+
+	@Test
+	public void testChunkSize() {
+		assertEquals(666, inserter.getChunkSize());
+		inserter.setMaxRows(100);
+		assertEquals(100, inserter.getChunkSize());
+		inserter.setMaxParameters(10);
+		assertEquals(3, inserter.getChunkSize());
+		assertEquals("INSERT INTO item (id, name, price) VALUES (?, ?, ?), (?, ?, ?)", inserter.getStatement(2));
+	}
+
+	@Test
+	public void testInsert() throws SQLException, IOException {
+		inserter.setMaxRows(64);
+		BulkInsertResult result = inserter.insert(rows(1000));
+
+		// 15 full chunks of 64, then 40 rows split into 32 and 8
+		assertEquals(1000, result.getRowCount());
+		assertEquals(17, result.getStatementCount());
+		assertTrue(result.getRowsPerSecond() > 0);
+		assertEquals(1000, count());
+
+		try(DatabaseResult names = database.query("SELECT name, price FROM item WHERE id = ?", 999)) {
+			assertEquals(Arrays.asList("item999:499.5"), names.parseResultSet(rs -> rs.getString(1) + ":" + rs.getDouble(2)));
+		}
+	}
+
+	@Test
+	public void testInsertParallel() throws SQLException, IOException {
+		inserter.setMaxRows(100);
+		inserter.setParallelism(4);
+		BulkInsertResult result = inserter.insert(rows(10_000));
+
+		assertEquals(10_000, result.getRowCount());
+		assertEquals(100, result.getStatementCount());
+		assertEquals(10_000, count());
+	}
+
+	@Test
+	public void testFailureRolledBack() throws IOException, SQLException {
+		inserter.setMaxRows(10);
+		Stream<Object[]> duplicate = Stream.concat(rows(50), rows(1));
+		assertThrows(SQLException.class, () -> inserter.insert(duplicate));
+		assertEquals(0, count());
+	}
+
+	@Test
+	public void testParallelFailureStopsReading() throws IOException, SQLException {
+		inserter.setMaxRows(10);
+		inserter.setParallelism(2);
+
+		// An endless stream can only finish if inserting stops reading it
+		Stream<Object[]> endless = Stream.iterate(1, i -> i + 1)
+				.map(i -> new Object[] { i, i == 500? "a name too long for the column" : "item", 1.0 });
+		assertThrows(SQLException.class, () -> inserter.insert(endless));
+		assertEquals(0, count());
+	}
+
+	@Test
+	public void testRowLengthChecked() throws IOException, SQLException {
+		assertThrows(IllegalArgumentException.class, () -> inserter.insert(Collections.singletonList(new Object[] { 1, "item" })));
+		assertEquals(0, count());
+	}
+
+	@Test
+	public void testParallelCommitFailureKeepsCommittedConnections() throws SQLException {
+		Connection first = mock(Connection.class);
+		Connection second = mock(Connection.class);
+		PreparedStatement stmt = mock(PreparedStatement.class);
+		for(Connection conn : Arrays.asList(first, second)) {
+			when(conn.getAutoCommit()).thenReturn(true);
+			when(conn.prepareStatement(anyString())).thenReturn(stmt);
+		}
+		doThrow(new SQLException("Commit failed")).when(second).commit();
+
+		AbstractDatabase mocked = mock(AbstractDatabase.class, CALLS_REAL_METHODS);
+		when(mocked.getConnection()).thenReturn(first, second);
+		BulkInserter parallel = new BulkInserter(mocked, "item", "id", "name", "price");
+		parallel.setParallelism(2);
+
+		assertThrows(SQLException.class, () -> parallel.insert(rows(10)));
+		verify(first).commit();
+		verify(first, never()).rollback();
+		verify(second).rollback();
+		verify(first).close();
+		verify(second).close();
+	}
+
+}
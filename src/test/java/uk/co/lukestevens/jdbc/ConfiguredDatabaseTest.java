@@ -0,0 +1,178 @@
+package uk.co.lukestevens.jdbc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.config.Config;
+import uk.co.lukestevens.db.DatabaseResult;
+
+public class ConfiguredDatabaseTest {
+
+	static final String BLUE_URL = "jdbc:h2:mem:configured-blue;DB_CLOSE_DELAY=-1";
+	static final String GREEN_URL = "jdbc:h2:mem:configured-green;DB_CLOSE_DELAY=-1";
+
+	Map<String, String> properties = new ConcurrentHashMap<>();
+	Config config = mock(Config.class);
+	ConfiguredDatabase database;
+
+	@BeforeAll
+	public static void setupDatabases() throws SQLException {
+		for(String url : new String[] { BLUE_URL, GREEN_URL }) {
+			SimpleDatabase db = new SimpleDatabase(url, "sa", "");
+			db.update("CREATE TABLE IF NOT EXISTS colour(name VARCHAR(8))");
+			db.update("DELETE FROM colour");
+			db.update("INSERT INTO colour VALUES (?)", url.equals(BLUE_URL)? "blue" : "green");
+		}
+	}
+
+	@BeforeEach
+	public void setup() {
+		properties.put("database.url", BLUE_URL);
+		properties.put("database.username", "sa");
+		properties.put("database.password", "");
+		when(config.getAsString(anyString())).thenAnswer(invocation -> properties.get(invocation.getArgument(0)));
+		when(config.getAsStringOrDefault(anyString(), any())).thenAnswer(invocation ->
+			properties.getOrDefault(invocation.getArgument(0), invocation.getArgument(1)));
+	}
+
+	@AfterEach
+	public void close() {
+		if(database != null) {
+			database.close();
+		}
+	}
+
+	String colour() throws SQLException, IOException {
+		try(DatabaseResult result = database.query("SELECT name FROM colour")) {
+			return result.parseResultSet(rs -> rs.getString(1)).get(0);
+		}
+	}
+
+	@Test
+	public void testSettingsAreCached() throws SQLException, IOException {
+		properties.put("database.refresh_interval", "0");
+		database = new ConfiguredDatabase(config);
+		for(int i = 0; i < 5; i++) {
+			assertEquals("blue", this.colour());
+		}
+		verify(config, times(1)).getAsString("database.url");
+		verify(config, times(1)).getAsString("database.password");
+	}
+
+	@Test
+	public void testRotation() throws SQLException, IOException {
+		properties.put("database.refresh_interval", "0");
+		database = new ConfiguredDatabase(config);
+		assertFalse(database.refresh());
+		assertEquals("blue", this.colour());
+
+		Connection old = database.getConnection();
+		properties.put("database.url", GREEN_URL);
+		assertTrue(database.refresh());
+		assertEquals(GREEN_URL, database.getDescriptor().getUrl());
+		assertEquals("green", this.colour());
+
+		// The old connection keeps working until it is closed
+		assertEquals(1, database.getRetiringConnections());
+		assertTrue(old.isValid(1));
+		old.close();
+		database.drain();
+		assertEquals(0, database.getRetiringConnections());
+	}
+
+	@Test
+	public void testFailedTestConnectionKeepsOldSettings() throws SQLException, IOException {
+		properties.put("database.refresh_interval", "0");
+		database = new ConfiguredDatabase(config);
+		assertEquals("blue", this.colour());
+
+		// The new database does not exist yet, so the old settings are kept
+		properties.put("database.url", "jdbc:h2:mem:configured-missing;IFEXISTS=TRUE");
+		assertThrows(SQLException.class, database::refresh);
+		assertEquals(BLUE_URL, database.getDescriptor().getUrl());
+		assertEquals("blue", this.colour());
+	}
+
+	@Test
+	public void testDrainTimeoutClosesOldConnections() throws SQLException {
+		properties.put("database.refresh_interval", "0");
+		database = new ConfiguredDatabase(config);
+		database.setDrainTimeout(0);
+		Connection old = database.getConnection();
+
+		properties.put("database.url", GREEN_URL);
+		database.refresh();
+		database.drain();
+		assertEquals(0, database.getRetiringConnections());
+		assertTrue(old.isClosed());
+	}
+
+	@Test
+	public void testConnectingDrainsOldConnections() throws SQLException {
+		properties.put("database.refresh_interval", "0");
+		database = new ConfiguredDatabase(config);
+		database.setDrainTimeout(0);
+		Connection old = database.getConnection();
+
+		properties.put("database.url", GREEN_URL);
+		database.refresh();
+		assertEquals(1, database.getRetiringConnections());
+
+		database.getConnection().close();
+		assertEquals(0, database.getRetiringConnections());
+		assertTrue(old.isClosed());
+	}
+
+	@Test
+	public void testWatcherIsOptIn() throws SQLException, IOException {
+		database = new ConfiguredDatabase(config);
+		assertEquals("blue", this.colour());
+		assertFalse(database.isWatching());
+	}
+
+	@Test
+	public void testWatcherStartsWhenSettingsAreRead() throws SQLException, IOException {
+		properties.put("database.refresh_interval", "60000");
+		database = new ConfiguredDatabase(config);
+		assertFalse(database.isWatching());
+
+		assertEquals("blue", this.colour());
+		assertTrue(database.isWatching());
+		database.close();
+		assertFalse(database.isWatching());
+	}
+
+	@Test
+	public void testInvalidRefreshInterval() throws SQLException, IOException {
+		properties.put("database.refresh_interval", "30s");
+		database = new ConfiguredDatabase(config);
+		assertEquals("blue", this.colour());
+		assertFalse(database.isWatching());
+	}
+
+	@Test
+	public void testWatcherPicksUpChanges() throws Exception {
+		properties.put("database.refresh_interval", "20");
+		database = new ConfiguredDatabase(config);
+		assertEquals("blue", this.colour());
+
+		properties.put("database.url", GREEN_URL);
+		long deadline = System.currentTimeMillis() + 5000;
+		while(!GREEN_URL.equals(database.getDescriptor().getUrl()) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals("green", this.colour());
+	}
+
+}
@@ -0,0 +1,143 @@
+package uk.co.lukestevens.jdbc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+
+public class GroupCommitDatabaseTest {
+
+	static SimpleDatabase database = new SimpleDatabase("jdbc:h2:mem:groupcommit;DB_CLOSE_DELAY=-1", "sa", "");
+
+	GroupCommitDatabase groupCommit;
+
+	@BeforeAll
+	public static void setupDatabase() throws SQLException {
+		database.update("CREATE TABLE event(id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(16) UNIQUE)");
+	}
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		database.update("DELETE FROM event");
+	}
+
+	@AfterEach
+	public void teardown() {
+		groupCommit.close();
+	}
+
+	static int count() throws SQLException, IOException {
+		try(DatabaseResult result = database.query("SELECT COUNT(*) FROM event")) {
+			return result.parseResultSet(rs -> rs.getInt(1)).get(0);
+		}
+	}
+
+	@Test
+	public void testConcurrentUpdatesCommittedTogether() throws Exception {
+		groupCommit = new GroupCommitDatabase(database, 50, 20);
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<Optional<Long>>> futures = new ArrayList<>();
+			for(int i = 0; i < 200; i++) {
+				String name = "event" + i;
+				futures.add(executor.submit(() -> groupCommit.update("INSERT INTO event(name) VALUES(?)", name)));
+			}
+
+			Set<Long> keys = new HashSet<>();
+			for(Future<Optional<Long>> future : futures) {
+				keys.add(future.get(10, TimeUnit.SECONDS).get());
+			}
+			assertEquals(200, keys.size());
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(200, count());
+		assertEquals(200, groupCommit.getUpdates());
+		assertTrue(groupCommit.getBatches() < 200, "Updates were not grouped: " + groupCommit.getBatches());
+		assertTrue(groupCommit.getAverageBatchSize() > 1);
+	}
+
+	@Test
+	public void testFailedUpdateIsolated() throws Exception {
+		groupCommit = new GroupCommitDatabase(database, 3, 1000);
+		CompletableFuture<Optional<Long>> first = groupCommit.updateAsync("INSERT INTO event(name) VALUES(?)", "a");
+		CompletableFuture<Optional<Long>> duplicate = groupCommit.updateAsync("INSERT INTO event(name) VALUES(?)", "a");
+		CompletableFuture<Optional<Long>> last = groupCommit.updateAsync("INSERT INTO event(name) VALUES(?)", "b");
+
+		assertTrue(first.get(5, TimeUnit.SECONDS).isPresent());
+		assertTrue(last.get(5, TimeUnit.SECONDS).isPresent());
+		ExecutionException e = assertThrows(ExecutionException.class, () -> duplicate.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof SQLException);
+
+		assertEquals(2, count());
+		assertEquals(1, groupCommit.getBatches());
+		assertEquals(1, groupCommit.getRetries());
+	}
+
+	@Test
+	public void testUpdateThrowsOwnError() throws SQLException, IOException {
+		groupCommit = new GroupCommitDatabase(database, 10, 0);
+		groupCommit.update("INSERT INTO event(name) VALUES(?)", "a");
+
+		assertThrows(SQLException.class, () -> groupCommit.update("INSERT INTO event(name) VALUES(?)", "a"));
+		try(DatabaseResult result = groupCommit.query("SELECT name FROM event")) {
+			assertEquals("a", result.parseResultSet(rs -> rs.getString(1)).get(0));
+		}
+	}
+
+	@Test
+	public void testClosedRejectsUpdates() throws Exception {
+		groupCommit = new GroupCommitDatabase(database, 10, 50);
+		CompletableFuture<Optional<Long>> queued = groupCommit.updateAsync("INSERT INTO event(name) VALUES(?)", "a");
+		groupCommit.close();
+
+		// Queued updates are committed before closing
+		assertTrue(queued.isDone());
+		assertTrue(queued.get().isPresent());
+
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> groupCommit.updateAsync("INSERT INTO event(name) VALUES(?)", "b").get());
+		assertTrue(e.getCause() instanceof RejectedExecutionException);
+	}
+
+	@Test
+	public void testWriterDeathFailsUpdates() throws Exception {
+		AbstractDatabase broken = new AbstractDatabase() {
+			@Override
+			protected Connection getConnection() {
+				throw new AssertionError("Writer thread failed");
+			}
+		};
+		groupCommit = new GroupCommitDatabase(broken, 10, 50);
+
+		// The update fails rather than waiting forever for the dead writer
+		assertThrows(RejectedExecutionException.class, () -> groupCommit.update("INSERT INTO event(name) VALUES(?)", "a"));
+		assertTrue(groupCommit.isStopped());
+
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> groupCommit.updateAsync("INSERT INTO event(name) VALUES(?)", "b").get(1, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof RejectedExecutionException);
+	}
+
+}
@@ -0,0 +1,104 @@
+package uk.co.lukestevens.jdbc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class KeysetIteratorTest {
+
+	static final int ROWS = 95;
+	static SimpleDatabase database = new SimpleDatabase("jdbc:h2:mem:keyset;DB_CLOSE_DELAY=-1", "sa", "");
+
+	@BeforeAll
+	public static void setupDatabase() throws SQLException {
+		database.update("CREATE TABLE event(id INT PRIMARY KEY, day DATE, seq INT, name VARCHAR(16))");
+
+		// Ids are inserted out of order, five events a day
+		new BulkInserter(database, "event", "id", "day", "seq", "name")
+			.insert(IntStream.range(0, ROWS).map(i -> ROWS - 1 - i).mapToObj(i -> new Object[] {
+					i, Date.valueOf(LocalDate.of(2020, 1, 1).plusDays(i / 5)), 4 - i % 5, "event" + i }));
+	}
+
+	@Test
+	public void testIterateByKey() {
+		KeysetIterator<Integer> iterator = database.iterateByKey("SELECT id FROM event", "id", 10, rs -> rs.getInt(1));
+
+		List<Integer> ids = new ArrayList<>();
+		iterator.forEachRemaining(ids::add);
+
+		assertEquals(IntStream.range(0, ROWS).boxed().collect(Collectors.toList()), ids);
+		assertEquals(10, iterator.getPageCount());
+	}
+
+	@Test
+	public void testBaseQueryParameters() {
+		List<String> names = database.iterateByKey("SELECT id, name FROM event WHERE id >= ? AND name <> ?", "id", 3,
+				rs -> rs.getString("name"), 90, "event92").stream().collect(Collectors.toList());
+
+		assertEquals(Arrays.asList("event90", "event91", "event93", "event94"), names);
+	}
+
+	@Test
+	public void testStreamAllowsNullRows() {
+		List<String> names = database.iterateByKey("SELECT id, CASE WHEN MOD(id, 2) = 0 THEN name END AS name FROM event WHERE id < ?",
+				"id", 2, rs -> rs.getString("name"), 4).stream().collect(Collectors.toList());
+
+		assertEquals(Arrays.asList("event0", null, "event2", null), names);
+	}
+
+	@Test
+	public void testCompositeKey() {
+		List<Integer> ids = database.iterateByKey("SELECT * FROM event", Arrays.asList("day", "seq"), 7, rs -> rs.getInt("id"))
+				.stream().collect(Collectors.toList());
+
+		// Within a day, seq counts down as id counts up
+		assertEquals(ROWS, ids.size());
+		assertEquals(Arrays.asList(4, 3, 2, 1, 0, 9, 8), ids.subList(0, 7));
+	}
+
+	@Test
+	public void testResumeFromCursor() {
+		KeysetIterator<Integer> first = database.iterateByKey("SELECT * FROM event", Arrays.asList("day", "seq"), 10, rs -> rs.getInt("id"));
+		assertNull(first.getCursor());
+
+		List<Integer> ids = new ArrayList<>();
+		for(int i = 0; i < 23; i++) {
+			ids.add(first.next());
+		}
+		String cursor = first.getCursor();
+
+		KeysetIterator<Integer> resumed = database.iterateByKey("SELECT * FROM event", Arrays.asList("day", "seq"), 10, rs -> rs.getInt("id"))
+				.resume(cursor);
+		assertEquals(cursor, resumed.getCursor());
+		resumed.forEachRemaining(ids::add);
+
+		List<Integer> all = database.iterateByKey("SELECT * FROM event", Arrays.asList("day", "seq"), 50, rs -> rs.getInt("id"))
+				.stream().collect(Collectors.toList());
+		assertEquals(all, ids);
+	}
+
+	@Test
+	public void testInvalidCursor() {
+		KeysetIterator<Integer> iterator = database.iterateByKey("SELECT id FROM event", "id", 10, rs -> rs.getInt(1));
+
+		assertThrows(IllegalArgumentException.class, () -> iterator.resume("not a cursor"));
+		assertThrows(IllegalArgumentException.class, () -> iterator.resume(KeysetCursor.encode(new Object[] { 1, 2 })));
+	}
+
+	@Test
+	public void testCursorEncoding() {
+		Object[] key = { 1, 2L, "a.b", Date.valueOf("2020-01-02"), new java.math.BigDecimal("1.50") };
+		assertArrayEquals(key, KeysetCursor.decode(KeysetCursor.encode(key), key.length));
+	}
+
+}
@@ -1,7 +1,9 @@
 package uk.co.lukestevens.jdbc;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 import java.sql.Connection;
@@ -9,17 +11,20 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Types;
+import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.result.BatchResult;
 
 public class TestAbstractDatabase {
 	
@@ -50,10 +55,10 @@ public class TestAbstractDatabase {
 		PreparedStatement statement = database
 				.prepareStatement(connection, "sql", 37, TestEnum.ENUM2, "astring", date);
 		
-		verify(stmt).setObject(1, 37);
-		verify(stmt).setObject(2, "ENUM2");
-		verify(stmt).setObject(3, "astring");
-		verify(stmt).setObject(4, date, Types.TIMESTAMP);
+		verify(stmt).setInt(1, 37);
+		verify(stmt).setString(2, "ENUM2");
+		verify(stmt).setString(3, "astring");
+		verify(stmt).setTimestamp(4, new Timestamp(date.getTime()));
 		assertEquals(statement, stmt);
 	}
 	
@@ -73,6 +78,20 @@ public class TestAbstractDatabase {
 		assertEquals(rs, dbr.getResultSet());
 	}
 	
+	@Test
+	public void testOpenCursor() throws SQLException {
+		when(connection.getAutoCommit()).thenReturn(true);
+		when(connection.prepareStatement("sql", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))
+			.thenReturn(stmt);
+		when(stmt.executeQuery()).thenReturn(rs);
+		
+		DatabaseResult dbr = database.openCursor("sql", 50, TestEnum.ENUM1);
+		assertEquals(rs, dbr.getResultSet());
+		verify(connection).setAutoCommit(false);
+		verify(stmt).setFetchSize(50);
+		verify(stmt).setString(1, "ENUM1");
+	}
+	
 	@Test
 	public void testUpdateWithGeneratedKey() throws SQLException {
 		when(stmt.getGeneratedKeys()).thenReturn(rs);
@@ -97,5 +116,110 @@ public class TestAbstractDatabase {
 		verify(stmt).executeUpdate();
 		verify(connection).close();
 	}
+	
+	@Test
+	public void testQueryWithBinder() throws SQLException {
+		when(stmt.executeQuery()).thenReturn(rs);
+		DatabaseResult dbr = database.queryWith("sql", s -> s.setLong(1, 42L));
+		assertEquals(rs, dbr.getResultSet());
+		verify(stmt).setLong(1, 42L);
+	}
+	
+	@Test
+	public void testQueryClosesConnectionOnFailure() throws SQLException {
+		when(stmt.executeQuery()).thenThrow(SQLException.class);
+		assertThrows(SQLException.class, () -> database.query("sql"));
+		verify(connection).close();
+	}
+	
+	@Test
+	public void testUpdateWithBinder() throws SQLException {
+		when(stmt.getGeneratedKeys()).thenReturn(rs);
+		when(rs.next()).thenReturn(true);
+		when(rs.getLong(1)).thenReturn(7L);
+		
+		Optional<Long> key = database.updateWith("sql", s -> s.setInt(1, 3));
+		assertEquals(7, key.get());
+		verify(stmt).setInt(1, 3);
+		verify(connection).close();
+	}
+	
+	@Test
+	public void testUpdateBatch() throws SQLException {
+		when(connection.getAutoCommit()).thenReturn(true);
+		when(stmt.executeBatch()).thenReturn(new int[] {1, 1}, new int[] {1});
+		when(stmt.getGeneratedKeys()).thenReturn(rs);
+		when(rs.next()).thenReturn(true, true, false, true, false);
+		when(rs.getLong(1)).thenReturn(1L, 2L, 3L);
+		
+		List<Object[]> rows = Arrays.asList(
+				new Object[] {1, TestEnum.ENUM1},
+				new Object[] {2, TestEnum.ENUM2},
+				new Object[] {3, TestEnum.ENUM3});
+		BatchResult result = database.updateBatch("sql", rows, 2);
+		
+		verify(stmt).setInt(1, 1);
+		verify(stmt).setString(2, "ENUM1");
+		verify(stmt).setString(2, "ENUM3");
+		verify(stmt, times(3)).addBatch();
+		verify(stmt, times(2)).executeBatch();
+		verify(connection).setAutoCommit(false);
+		verify(connection).commit();
+		verify(connection).setAutoCommit(true);
+		verify(stmt).close();
+		verify(connection).close();
+		
+		assertEquals(Arrays.asList(1L, 2L, 3L), result.getGeneratedKeys());
+		assertArrayEquals(new int[] {1, 1, 1}, result.getUpdateCounts());
+		assertEquals(3, result.getRowCount());
+	}
+	
+	@Test
+	public void testUpdateBatchRollsBackOnFailure() throws SQLException {
+		when(connection.getAutoCommit()).thenReturn(true);
+		when(stmt.executeBatch()).thenThrow(SQLException.class);
+		
+		List<Object[]> rows = Arrays.asList(new Object[] {1}, new Object[] {2});
+		assertThrows(SQLException.class, () -> database.updateBatch("sql", rows));
+		
+		verify(connection).rollback();
+		verify(connection, never()).commit();
+		verify(connection).setAutoCommit(true);
+		verify(stmt).close();
+		verify(connection).close();
+	}
+	
+	@Test
+	public void testUpdateBatchKeepsErrorWhenRollbackFails() throws SQLException {
+		SQLException error = new SQLException("Batch failed");
+		SQLException rollbackError = new SQLException("Rollback failed");
+		when(connection.getAutoCommit()).thenReturn(true);
+		when(stmt.executeBatch()).thenThrow(error);
+		doThrow(rollbackError).when(connection).rollback();
+		
+		List<Object[]> rows = Arrays.asList(new Object[] {1}, new Object[] {2});
+		SQLException thrown = assertThrows(SQLException.class, () -> database.updateBatch("sql", rows));
+		
+		assertEquals(error, thrown);
+		assertArrayEquals(new Throwable[] {rollbackError}, thrown.getSuppressed());
+		verify(connection).close();
+	}
+	
+	@Test
+	public void testUpdateBatchKeepsErrorWhenRestoreFails() throws SQLException {
+		SQLException error = new SQLException("Batch failed");
+		SQLException restoreError = new SQLException("Connection is broken");
+		when(connection.getAutoCommit()).thenReturn(true);
+		when(stmt.executeBatch()).thenThrow(error);
+		doThrow(restoreError).when(connection).setAutoCommit(true);
+		
+		List<Object[]> rows = Arrays.asList(new Object[] {1}, new Object[] {2});
+		SQLException thrown = assertThrows(SQLException.class, () -> database.updateBatch("sql", rows));
+		
+		assertEquals(error, thrown);
+		assertArrayEquals(new Throwable[] {restoreError}, thrown.getSuppressed());
+		verify(connection).rollback();
+		verify(connection).close();
+	}
 
 }
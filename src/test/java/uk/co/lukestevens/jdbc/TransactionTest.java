@@ -0,0 +1,221 @@
+package uk.co.lukestevens.jdbc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics;
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics.Phase;
+import uk.co.lukestevens.jdbc.metrics.InMemoryDatabaseMetrics;
+
+public class TransactionTest {
+
+	static SimpleDatabase database = new SimpleDatabase("jdbc:h2:mem:transactions;DB_CLOSE_DELAY=-1", "sa", "");
+
+	@BeforeAll
+	public static void setupDatabase() throws SQLException {
+		database.update("CREATE TABLE account(id INT PRIMARY KEY, balance INT)");
+	}
+
+	@BeforeEach
+	public void resetAccounts() throws SQLException {
+		database.update("DELETE FROM account");
+		database.update("INSERT INTO account VALUES(1, 100), (2, 0)");
+	}
+
+	static List<Integer> balances() throws SQLException, IOException {
+		try(DatabaseResult result = database.query("SELECT balance FROM account ORDER BY id")) {
+			return result.parseResultSet(rs -> rs.getInt(1));
+		}
+	}
+
+	@Test
+	public void testCommit() throws SQLException, IOException {
+		int balance = database.inTransaction(tx -> {
+			tx.update("UPDATE account SET balance = balance - 30 WHERE id = 1");
+			tx.update("UPDATE account SET balance = balance + 30 WHERE id = 2");
+
+			// Closing a result leaves the transaction's connection open
+			try(DatabaseResult result = tx.query("SELECT balance FROM account WHERE id = ?", 2)) {
+				assertFalse(tx.getConnection().isClosed());
+				return result.parseResultSet(rs -> rs.getInt(1)).get(0);
+			}
+		});
+
+		assertEquals(30, balance);
+		assertEquals(Arrays.asList(70, 30), balances());
+	}
+
+	@Test
+	public void testRollbackOnException() throws SQLException, IOException {
+		assertThrows(SQLException.class, () -> database.inTransaction(tx -> {
+			tx.update("UPDATE account SET balance = balance - 30 WHERE id = 1");
+			return tx.update("INSERT INTO account VALUES(2, 0)");
+		}));
+
+		assertEquals(Arrays.asList(100, 0), balances());
+	}
+
+	@Test
+	public void testRollbackOnError() throws SQLException, IOException {
+		assertThrows(AssertionError.class, () -> database.inTransaction(tx -> {
+			tx.update("UPDATE account SET balance = balance - 30 WHERE id = 1");
+			throw new AssertionError("Callback failed");
+		}));
+
+		assertEquals(Arrays.asList(100, 0), balances());
+	}
+
+	@Test
+	public void testRollbackOnly() throws SQLException, IOException {
+		database.inTransaction(tx -> {
+			tx.update("UPDATE account SET balance = 0");
+			tx.setRollbackOnly();
+			return null;
+		});
+
+		assertEquals(Arrays.asList(100, 0), balances());
+	}
+
+	@Test
+	public void testNestedSavepoint() throws SQLException, IOException {
+		database.inTransaction(tx -> {
+			tx.update("UPDATE account SET balance = balance - 30 WHERE id = 1");
+			assertThrows(SQLException.class, () -> tx.inTransaction(nested -> {
+				nested.update("UPDATE account SET balance = balance + 30 WHERE id = 2");
+				return nested.update("INSERT INTO account VALUES(1, 0)");
+			}));
+			return null;
+		});
+
+		assertEquals(Arrays.asList(70, 0), balances());
+	}
+
+	@Test
+	public void testNestedSavepointRollsBackError() throws SQLException, IOException {
+		database.inTransaction(tx -> {
+			tx.update("UPDATE account SET balance = balance - 30 WHERE id = 1");
+			assertThrows(AssertionError.class, () -> tx.inTransaction(nested -> {
+				nested.update("UPDATE account SET balance = balance + 30 WHERE id = 2");
+				throw new AssertionError("Nested callback failed");
+			}));
+			return null;
+		});
+
+		assertEquals(Arrays.asList(70, 0), balances());
+	}
+
+	@Test
+	public void testSavepointRollbackFailureDoesNotHideError() throws SQLException {
+		Connection conn = mock(Connection.class);
+		Savepoint savepoint = mock(Savepoint.class);
+		when(conn.setSavepoint()).thenReturn(savepoint);
+		SQLException broken = new SQLException("Connection is broken");
+		doThrow(broken).when(conn).rollback(savepoint);
+		Transaction transaction = new Transaction(database, conn);
+
+		SQLException error = new SQLException("Update failed");
+		SQLException thrown = assertThrows(SQLException.class, () -> transaction.inTransaction(tx -> {
+			throw error;
+		}));
+		assertSame(error, thrown);
+		assertArrayEquals(new Throwable[] { broken }, thrown.getSuppressed());
+	}
+
+	@Test
+	public void testNestedJoinsCurrentTransaction() throws SQLException, IOException {
+		AtomicReference<Connection> inner = new AtomicReference<>();
+		database.inTransaction(tx -> {
+			database.inTransaction(nested -> {
+				inner.set(nested.getConnection());
+				return nested.update("UPDATE account SET balance = 50 WHERE id = 2");
+			});
+			assertSame(tx.getConnection(), inner.get());
+			return null;
+		});
+
+		assertEquals(Arrays.asList(100, 50), balances());
+	}
+
+	@Test
+	public void testIsolationAndReadOnlyHints() throws SQLException, IOException {
+		AtomicReference<Connection> connection = new AtomicReference<>();
+		int total = database.inTransaction(Connection.TRANSACTION_SERIALIZABLE, true, tx -> {
+			// H2 ignores the read-only hint, but applies the isolation level
+			connection.set(tx.getConnection());
+			assertEquals(Connection.TRANSACTION_SERIALIZABLE, tx.getConnection().getTransactionIsolation());
+			try(DatabaseResult result = tx.query("SELECT SUM(balance) FROM account")) {
+				return result.parseResultSet(rs -> rs.getInt(1)).get(0);
+			}
+		});
+
+		assertEquals(100, total);
+		assertTrue(connection.get().isClosed());
+	}
+
+	@Test
+	public void testTransactionEnded() throws SQLException, IOException {
+		Transaction transaction = database.inTransaction(tx -> tx);
+		assertThrows(IllegalStateException.class, () -> transaction.update("UPDATE account SET balance = 0"));
+
+		// A new transaction is started once the previous one has ended
+		database.inTransaction(tx -> {
+			assertNotSame(transaction, tx);
+			return null;
+		});
+	}
+
+	@Test
+	public void testRestoreFailureDoesNotHideError() throws SQLException {
+		Connection conn = mock(Connection.class);
+		when(conn.getAutoCommit()).thenReturn(true);
+		when(conn.getTransactionIsolation()).thenReturn(Connection.TRANSACTION_READ_COMMITTED);
+		SQLException broken = new SQLException("Connection is broken");
+		doThrow(broken).when(conn).setAutoCommit(true);
+		AbstractDatabase mocked = new AbstractDatabase() {
+			@Override
+			protected Connection getConnection() {
+				return conn;
+			}
+		};
+
+		SQLException error = new SQLException("Update failed");
+		SQLException thrown = assertThrows(SQLException.class, () -> mocked.inTransaction(tx -> {
+			throw error;
+		}));
+		assertSame(error, thrown);
+		assertArrayEquals(new Throwable[] { broken }, thrown.getSuppressed());
+		verify(conn).rollback();
+		verify(conn).close();
+
+		// Without another failure, the restore failure is thrown
+		SQLException restoreError = assertThrows(SQLException.class, () -> mocked.inTransaction(tx -> null));
+		assertSame(broken, restoreError);
+	}
+
+	@Test
+	public void testConnectionRecordedUnderTransactionLabel() throws SQLException, IOException {
+		InMemoryDatabaseMetrics metrics = new InMemoryDatabaseMetrics();
+		database.setMetrics(metrics);
+		try {
+			database.inTransaction(tx -> null);
+		} finally {
+			database.setMetrics(null);
+		}
+		assertEquals(1, metrics.getStatement(DatabaseMetrics.TRANSACTION).getLatency(Phase.ACQUIRE).getCount());
+		assertNull(metrics.getStatement("BEGIN"));
+	}
+
+}
@@ -0,0 +1,92 @@
+package uk.co.lukestevens.jdbc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics.Phase;
+import uk.co.lukestevens.jdbc.metrics.InMemoryDatabaseMetrics;
+import uk.co.lukestevens.jdbc.pool.PoolSettings;
+
+public class WarmUpTest {
+
+	static final String URL = "jdbc:h2:mem:warmup;DB_CLOSE_DELAY=-1";
+
+	PooledDatabase database;
+	InMemoryDatabaseMetrics metrics = new InMemoryDatabaseMetrics();
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		SimpleDatabase setup = new SimpleDatabase(URL, "sa", "");
+		setup.update("CREATE TABLE IF NOT EXISTS item(id INT PRIMARY KEY, name VARCHAR(16))");
+		setup.update("MERGE INTO item VALUES (1, 'one'), (2, 'two')");
+	}
+
+	void open(int minIdle) {
+		PoolSettings settings = new PoolSettings();
+		settings.setMinIdle(minIdle);
+		settings.setStatementCacheSize(10);
+		database = new PooledDatabase(URL, "sa", "", settings);
+		database.setMetrics(metrics);
+	}
+
+	@AfterEach
+	public void close() {
+		if(database != null) {
+			database.close();
+		}
+	}
+
+	@Test
+	public void testWarmUp() throws SQLException, IOException {
+		// The housekeeper starts filling the pool straight away, so it must
+		// have nothing to fill for the warm up to decide the pool size
+		this.open(0);
+		assertFalse(database.isReady());
+		assertEquals(-1, database.getWarmUpDuration());
+
+		WarmUp warmUp = database.warmUp();
+		warmUp.setConnections(4);
+		warmUp.setExecutions(20);
+		warmUp.addQuery("SELECT * FROM item WHERE id = ?", 1);
+		warmUp.addStatement("UPDATE item SET name = ? WHERE id = ?");
+		long duration = warmUp.run();
+
+		assertTrue(database.isReady());
+		assertEquals(duration, database.getWarmUpDuration());
+		assertEquals(duration, metrics.getWarmUpDuration());
+		assertEquals(4, database.getPool().getTotalConnections());
+		assertEquals(4, database.getPool().getIdleConnections());
+		assertEquals(20, metrics.getStatement("SELECT * FROM item WHERE id = ?").getLatency(Phase.EXECUTE).getCount());
+
+		// Both statements were prepared on every connection
+		assertEquals(8, database.getPool().getStatementCacheMisses());
+		long hits = database.getPool().getStatementCacheHits();
+		database.update("UPDATE item SET name = ? WHERE id = ?", "uno", 1);
+		assertEquals(hits + 1, database.getPool().getStatementCacheHits());
+	}
+
+	@Test
+	public void testDefaultConnectionsIsMinIdle() throws SQLException, IOException {
+		this.open(3);
+		database.warmUp().run();
+		assertTrue(database.isReady());
+		assertTrue(database.getPool().getTotalConnections() >= 3);
+	}
+
+	@Test
+	public void testFailedWarmUpIsNotReady() {
+		this.open(3);
+		WarmUp warmUp = database.warmUp();
+		warmUp.addQuery("SELECT * FROM missing");
+		assertThrows(SQLException.class, warmUp::run);
+		assertFalse(database.isReady());
+		assertEquals(-1, metrics.getWarmUpDuration());
+	}
+
+}
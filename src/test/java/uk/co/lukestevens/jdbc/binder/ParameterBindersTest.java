@@ -0,0 +1,138 @@
+package uk.co.lukestevens.jdbc.binder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class ParameterBindersTest {
+	
+	static enum TestEnum {
+		ENUM1,
+		ENUM2 {
+			@Override
+			public String toString() {
+				return "OVERRIDDEN";
+			}
+		}
+	}
+	
+	static class Money {
+		final long pence;
+		
+		Money(long pence) {
+			this.pence = pence;
+		}
+	}
+	
+	static class Refund extends Money {
+		Refund(long pence) {
+			super(pence);
+		}
+	}
+	
+	PreparedStatement stmt = mock(PreparedStatement.class);
+	
+	@AfterEach
+	public void teardown() {
+		ParameterBinders.unregister(Money.class);
+	}
+	
+	@Test
+	public void testBindPrimitives() throws SQLException {
+		ParameterBinders.bind(stmt, 1, 12);
+		ParameterBinders.bind(stmt, 2, 34L);
+		ParameterBinders.bind(stmt, 3, 5.6);
+		ParameterBinders.bind(stmt, 4, true);
+		ParameterBinders.bind(stmt, 5, "string");
+		ParameterBinders.bind(stmt, 6, new BigDecimal("7.8"));
+		ParameterBinders.bind(stmt, 7, null);
+		
+		verify(stmt).setInt(1, 12);
+		verify(stmt).setLong(2, 34L);
+		verify(stmt).setDouble(3, 5.6);
+		verify(stmt).setBoolean(4, true);
+		verify(stmt).setString(5, "string");
+		verify(stmt).setBigDecimal(6, new BigDecimal("7.8"));
+		verify(stmt).setObject(7, null);
+	}
+	
+	@Test
+	public void testBindEnums() throws SQLException {
+		ParameterBinders.bind(stmt, 1, TestEnum.ENUM1);
+		ParameterBinders.bind(stmt, 2, TestEnum.ENUM2);
+		
+		verify(stmt).setString(1, "ENUM1");
+		verify(stmt).setString(2, "OVERRIDDEN");
+	}
+	
+	@Test
+	public void testBindDates() throws SQLException {
+		java.util.Date date = new java.util.Date(1613336734000L);
+		LocalDateTime localDateTime = LocalDateTime.of(2021, 2, 14, 21, 5, 34);
+		
+		ParameterBinders.bind(stmt, 1, date);
+		ParameterBinders.bind(stmt, 2, localDateTime);
+		ParameterBinders.bind(stmt, 3, LocalDate.of(2021, 2, 14));
+		
+		verify(stmt).setTimestamp(1, new Timestamp(1613336734000L));
+		verify(stmt).setTimestamp(2, Timestamp.valueOf(localDateTime));
+		verify(stmt).setDate(3, Date.valueOf("2021-02-14"));
+	}
+	
+	@Test
+	public void testBindArrays() throws SQLException {
+		Connection connection = mock(Connection.class);
+		Array array = mock(Array.class);
+		when(stmt.getConnection()).thenReturn(connection);
+		when(connection.createArrayOf(any(), any())).thenReturn(array);
+		
+		ParameterBinders.bind(stmt, 1, new long[] {1, 2, 3});
+		ParameterBinders.bind(stmt, 2, new TestEnum[] {TestEnum.ENUM1});
+		ParameterBinders.bind(stmt, 3, new byte[] {4, 5});
+		
+		verify(connection).createArrayOf("bigint", new Object[] {1L, 2L, 3L});
+		verify(connection).createArrayOf("varchar", new Object[] {"ENUM1"});
+		verify(stmt).setArray(1, array);
+		verify(stmt).setArray(2, array);
+		verify(stmt).setBytes(3, new byte[] {4, 5});
+	}
+	
+	@Test
+	public void testBindUnknownType() throws SQLException {
+		UUID uuid = UUID.randomUUID();
+		ParameterBinders.bind(stmt, 1, uuid);
+		verify(stmt).setObject(1, uuid);
+	}
+	
+	@Test
+	public void testRegisterCustomBinder() throws SQLException {
+		ParameterBinders.bind(stmt, 1, new Money(100));
+		ParameterBinders.register(Money.class, (s, i, value) -> s.setLong(i, value.pence));
+		ParameterBinders.bind(stmt, 2, new Money(200));
+		ParameterBinders.bind(stmt, 3, new Refund(300));
+		
+		verify(stmt).setObject(eq(1), any(Money.class));
+		verify(stmt).setLong(2, 200);
+		verify(stmt).setLong(3, 300);
+	}
+	
+	@Test
+	public void testBinderIsCached() {
+		assertSame(ParameterBinders.forClass(Integer.class), ParameterBinders.forClass(Integer.class));
+		assertSame(ParameterBinders.forClass(TestEnum.class), ParameterBinders.forClass(TestEnum.class));
+	}
+
+}
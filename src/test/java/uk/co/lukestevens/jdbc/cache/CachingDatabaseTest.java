@@ -0,0 +1,229 @@
+package uk.co.lukestevens.jdbc.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.ResultParser;
+import uk.co.lukestevens.jdbc.SimpleDatabase;
+import uk.co.lukestevens.jdbc.mapper.RowMappers;
+
+public class CachingDatabaseTest {
+
+	static final ResultParser<String> NAME = rs -> rs.getString("name");
+
+	SimpleDatabase database = new SimpleDatabase("jdbc:h2:mem:caching;DB_CLOSE_DELAY=-1", "sa", "");
+	CachingDatabase caching = new CachingDatabase(database, 2, 0);
+
+	@BeforeEach
+	public void setupDatabase() throws SQLException {
+		database.update("DROP TABLE IF EXISTS colour");
+		database.update("DROP TABLE IF EXISTS shape");
+		database.update("CREATE TABLE colour(id INT PRIMARY KEY, name VARCHAR(16))");
+		database.update("CREATE TABLE shape(id INT PRIMARY KEY, name VARCHAR(16))");
+		database.update("INSERT INTO colour VALUES(1, 'red'), (2, 'blue')");
+		database.update("INSERT INTO shape VALUES(1, 'square')");
+	}
+
+	@Test
+	public void testQueryIsCached() throws SQLException, IOException {
+		List<String> first = caching.query("SELECT name FROM colour WHERE id = ?", NAME, 1);
+		database.update("UPDATE colour SET name = 'green' WHERE id = 1");
+		List<String> second = caching.query("SELECT name FROM colour WHERE id = ?", NAME, 1);
+
+		assertEquals(Collections.singletonList("red"), first);
+		assertSame(first, second);
+		assertEquals(1, caching.getHits());
+		assertEquals(1, caching.getMisses());
+		assertEquals(0.5, caching.getHitRate());
+	}
+
+	@Test
+	public void testRowMappersForDifferentClassesAreKeyed() throws SQLException, IOException {
+		List<Colour> colours = caching.query("SELECT name FROM colour WHERE id = ?", RowMappers.forClass(Colour.class), 1);
+		List<Label> labels = caching.query("SELECT name FROM colour WHERE id = ?", RowMappers.forClass(Label.class), 1);
+		List<Colour> cached = caching.query("SELECT name FROM colour WHERE id = ?", RowMappers.forClass(Colour.class), 1);
+
+		assertEquals("red", colours.get(0).getName());
+		assertEquals("red", labels.get(0).getName());
+		assertSame(colours, cached);
+		assertEquals(1, caching.getHits());
+		assertEquals(2, caching.getMisses());
+	}
+
+	@Test
+	public void testParsersOfTheSameClassAreKeyed() throws SQLException, IOException {
+		ResultParser<String> plain = prefixed("");
+		ResultParser<String> prefixed = prefixed("colour:");
+
+		assertEquals(Collections.singletonList("red"), caching.query("SELECT name FROM colour WHERE id = ?", plain, 1));
+		assertEquals(Collections.singletonList("colour:red"), caching.query("SELECT name FROM colour WHERE id = ?", prefixed, 1));
+		assertEquals(0, caching.getHits());
+	}
+
+	static ResultParser<String> prefixed(String prefix) {
+		return rs -> prefix + rs.getString("name");
+	}
+
+	@Test
+	public void testParametersAreKeyed() throws SQLException, IOException {
+		assertEquals(Collections.singletonList("red"), caching.query("SELECT name FROM colour WHERE id = ?", NAME, 1));
+		assertEquals(Collections.singletonList("blue"), caching.query("SELECT name FROM colour WHERE id = ?", NAME, 2));
+		assertEquals(0, caching.getHits());
+		assertEquals(2, caching.getSize());
+	}
+
+	@Test
+	public void testUpdateInvalidatesReadingQueries() throws SQLException, IOException {
+		caching.query("SELECT c.name FROM colour c ORDER BY id", NAME);
+		caching.query("SELECT name FROM shape", NAME);
+
+		caching.update("UPDATE colour SET name = 'green' WHERE id = 1");
+
+		assertEquals(1, caching.getSize());
+		assertEquals(Arrays.asList("green", "blue"), caching.query("SELECT c.name FROM colour c ORDER BY id", NAME));
+		assertEquals(Collections.singletonList("square"), caching.query("SELECT name FROM shape", NAME));
+		assertEquals(1, caching.getHits());
+	}
+
+	@Test
+	public void testJoinedTablesAreInvalidated() throws SQLException, IOException {
+		String sql = "SELECT c.name FROM colour c JOIN shape s ON s.id = c.id";
+		assertEquals(Collections.singletonList("red"), caching.query(sql, NAME));
+
+		caching.update("DELETE FROM shape");
+
+		assertEquals(0, caching.getSize());
+		assertEquals(Collections.emptyList(), caching.query(sql, NAME));
+	}
+
+	@Test
+	public void testCommaJoinedTablesAreInvalidated() throws SQLException, IOException {
+		String sql = "SELECT c.name FROM colour c, shape s WHERE s.id = c.id";
+		assertEquals(Collections.singletonList("red"), caching.query(sql, NAME));
+
+		caching.update("DELETE FROM shape");
+		assertEquals(Collections.emptyList(), caching.query(sql, NAME));
+		assertEquals(2, caching.getMisses());
+	}
+
+	@Test
+	public void testQueriesWithoutTablesAreNotCached() throws SQLException, IOException {
+		database.update("CREATE SEQUENCE IF NOT EXISTS colour_seq");
+		ResultParser<Long> next = rs -> rs.getLong(1);
+		long first = caching.query("SELECT NEXTVAL('colour_seq')", next).get(0);
+		long second = caching.query("SELECT NEXTVAL('colour_seq')", next).get(0);
+
+		assertEquals(first + 1, second);
+		assertEquals(0, caching.getSize());
+		assertEquals(0, caching.getMisses());
+	}
+
+	@Test
+	public void testQueryUncached() throws SQLException, IOException {
+		caching.queryUncached("SELECT name FROM colour", NAME);
+		caching.queryUncached("SELECT name FROM colour", NAME);
+		assertEquals(0, caching.getSize());
+		assertEquals(0, caching.getHits());
+		assertEquals(0, caching.getMisses());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws SQLException, IOException {
+		caching.query("SELECT name FROM colour WHERE id = ?", NAME, 1);
+		caching.query("SELECT name FROM colour WHERE id = ?", NAME, 2);
+		caching.query("SELECT name FROM colour WHERE id = ?", NAME, 1);
+		caching.query("SELECT name FROM shape", NAME);
+
+		assertEquals(2, caching.getSize());
+		assertEquals(1, caching.getEvictions());
+		caching.query("SELECT name FROM colour WHERE id = ?", NAME, 1);
+		assertEquals(2, caching.getHits());
+	}
+
+	@Test
+	public void testExpiredEntriesEvicted() throws Exception {
+		CachingDatabase expiring = new CachingDatabase(database, 10, 1);
+		expiring.query("SELECT name FROM colour", NAME);
+		Thread.sleep(5);
+		expiring.query("SELECT name FROM colour", NAME);
+
+		assertEquals(0, expiring.getHits());
+		assertEquals(2, expiring.getMisses());
+		assertEquals(1, expiring.getEvictions());
+	}
+
+	@Test
+	public void testInvalidate() throws SQLException, IOException {
+		caching.query("SELECT name FROM \"PUBLIC\".colour", NAME);
+		caching.invalidate("COLOUR");
+		assertEquals(0, caching.getSize());
+
+		caching.query("SELECT name FROM colour", NAME);
+		caching.invalidateAll();
+		assertEquals(0, caching.getSize());
+	}
+
+	@Test
+	public void testStaleResultNotCachedAfterInvalidation() {
+		QueryCache cache = new QueryCache(10, 0);
+		QueryCache.Key key = new QueryCache.Key("SELECT * FROM colour", new Object[0], String.class);
+		long generation = cache.getGeneration();
+		cache.invalidate(Collections.singleton("colour"));
+		cache.put(key, Collections.emptyList(), Collections.singleton("colour"), generation);
+		assertNull(cache.get(key));
+	}
+
+	@Test
+	public void testSqlTables() {
+		assertEquals(new HashSet<>(Arrays.asList("colour", "shape")),
+				SqlTables.readBy("select * from Colour c left join public.\"SHAPE\" s on s.id = c.id"));
+		assertEquals(Collections.singleton("colour"),
+				SqlTables.readBy("select * from (select * from colour) x"));
+		assertEquals(new HashSet<>(Arrays.asList("colour", "shape", "size")),
+				SqlTables.readBy("select * from colour c, public.shape AS s, (select 1) x(a), size where c.id = s.id"));
+		assertEquals(new HashSet<>(Arrays.asList("colour", "shape", "size")),
+				SqlTables.readBy("select * from colour c join shape s on s.id = c.id where c.id in (select id from size)"));
+		assertTrue(SqlTables.readBy("select nextval('seq')").isEmpty());
+		assertTrue(SqlTables.readBy("select * from generate_series(1, 10)").isEmpty());
+		assertEquals(Collections.singleton("colour"), SqlTables.writtenBy("insert into colour values(?)"));
+		assertEquals(Collections.singleton("colour"), SqlTables.writtenBy("UPDATE colour SET name = ?"));
+		assertEquals(Collections.singleton("shape"), SqlTables.writtenBy("delete from shape where id in (select id from colour)"));
+		assertTrue(SqlTables.writtenBy("call refresh()").isEmpty());
+	}
+
+	public static class Colour {
+
+		private String name;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	public static class Label {
+
+		private String name;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+package uk.co.lukestevens.jdbc.columnar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.BulkInserter;
+import uk.co.lukestevens.jdbc.SimpleDatabase;
+
+public class ColumnarResultTest {
+
+	static final int ROWS = 10_000;
+	static SimpleDatabase database = new SimpleDatabase("jdbc:h2:mem:columnar;DB_CLOSE_DELAY=-1", "sa", "");
+
+	@BeforeAll
+	public static void setupDatabase() throws SQLException {
+		database.update("CREATE TABLE reading(id INT, total BIGINT, value DOUBLE, sensor VARCHAR(16), price DECIMAL(10, 2))");
+
+		// Every tenth row has null values
+		new BulkInserter(database, "reading", "id", "total", "value", "sensor", "price")
+			.insert(IntStream.range(0, ROWS).mapToObj(i -> i % 10 == 0?
+					new Object[] { i, null, null, null, null } :
+					new Object[] { i, i * 1_000_000_000L, i / 2.0, "sensor" + (i % 3), new BigDecimal("1.50") }));
+	}
+
+	static ColumnarResult readAll() throws SQLException, IOException {
+		try(DatabaseResult result = database.query("SELECT * FROM reading ORDER BY id")) {
+			return ColumnarResult.read(result);
+		}
+	}
+
+	@Test
+	public void testPrimitiveColumns() throws SQLException, IOException {
+		ColumnarResult result = readAll();
+		assertEquals(ROWS, result.getRowCount());
+		assertEquals(5, result.getColumns().size());
+
+		IntColumn id = result.getIntColumn("id");
+		LongColumn total = result.getLongColumn("TOTAL");
+		DoubleColumn value = result.getDoubleColumn("value");
+
+		// Rows either side of a chunk boundary
+		for(int row : new int[] { 1, Column.CHUNK_SIZE - 1, Column.CHUNK_SIZE + 1, ROWS - 1 }) {
+			assertEquals(row, id.getInt(row));
+			assertEquals(row * 1_000_000_000L, total.getLong(row));
+			assertEquals(row / 2.0, value.getDouble(row));
+			assertFalse(total.isNull(row));
+		}
+
+		assertEquals((long) ROWS * (ROWS - 1) / 2, id.stream().asLongStream().sum());
+		assertEquals(ROWS, value.toArray().length);
+		assertArrayEquals(IntStream.range(0, ROWS).toArray(), id.toArray());
+	}
+
+	@Test
+	public void testNulls() throws SQLException, IOException {
+		ColumnarResult result = readAll();
+		LongColumn total = result.getLongColumn("total");
+
+		assertTrue(total.isNull(0));
+		assertTrue(total.isNull(Column.CHUNK_SIZE * 2 - 2));
+		assertEquals(0, total.getLong(0));
+		assertNull(total.get(0));
+		assertEquals(1_000_000_000L, total.get(1));
+		assertFalse(result.getIntColumn("id").isNull(0));
+		assertEquals(ROWS / 10, IntStream.range(0, ROWS).filter(total::isNull).count());
+	}
+
+	@Test
+	public void testDictionaryEncodedStrings() throws SQLException, IOException {
+		StringColumn sensor = readAll().getStringColumn("sensor");
+
+		assertEquals(Arrays.asList("sensor1", "sensor2", "sensor0"), sensor.getDictionary());
+		assertNull(sensor.getString(0));
+		assertEquals(StringColumn.NULL_CODE, sensor.getCode(0));
+		assertTrue(sensor.isNull(0));
+		assertEquals("sensor2", sensor.getString(2));
+		assertEquals(1, sensor.getCode(2));
+		assertEquals(ROWS - ROWS / 10, sensor.stream().filter(s -> s != null).count());
+	}
+
+	@Test
+	public void testObjectColumn() throws SQLException, IOException {
+		Column price = readAll().getColumn("price");
+
+		assertTrue(price instanceof ObjectColumn);
+		assertEquals(new BigDecimal("1.50"), price.get(1));
+		assertNull(price.get(0));
+		assertThrows(IndexOutOfBoundsException.class, () -> price.get(ROWS));
+	}
+
+	@Test
+	public void testEmptyResult() throws SQLException, IOException {
+		try(DatabaseResult result = database.query("SELECT id, sensor FROM reading WHERE id < 0")) {
+			ColumnarResult columnar = ColumnarResult.read(result);
+			assertEquals(0, columnar.getRowCount());
+			assertEquals(0, columnar.getIntColumn("id").size());
+			assertEquals(0, columnar.getIntColumn("id").toArray().length);
+		}
+	}
+
+	@Test
+	public void testWrongColumnType() throws SQLException, IOException {
+		ColumnarResult result = readAll();
+		assertThrows(IllegalArgumentException.class, () -> result.getLongColumn("id"));
+		assertThrows(IllegalArgumentException.class, () -> result.getColumn("missing"));
+	}
+
+}
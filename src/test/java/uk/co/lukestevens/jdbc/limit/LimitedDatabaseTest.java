@@ -0,0 +1,187 @@
+package uk.co.lukestevens.jdbc.limit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.Database;
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.SimpleDatabase;
+
+public class LimitedDatabaseTest {
+
+	static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	Database database = mock(Database.class);
+	CountDownLatch release = new CountDownLatch(1);
+
+	void blockUpdates() throws SQLException {
+		when(database.update(anyString())).thenAnswer(invocation -> {
+			release.await();
+			return Optional.empty();
+		});
+	}
+
+	CompletableFuture<Optional<Long>> updateAsync(LimitedDatabase limited) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return limited.update("UPDATE foo SET bar = 1");
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+
+	static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while(!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	@Test
+	public void testAimd() {
+		LimitAlgorithm aimd = LimitAlgorithm.aimd(100);
+		assertEquals(11, aimd.update(10, 5 * MS, 10, false));
+		// The limit is not being used, so does not grow
+		assertEquals(10, aimd.update(10, 5 * MS, 2, false));
+		assertEquals(9, aimd.update(10, 200 * MS, 10, false));
+		assertEquals(9, aimd.update(10, 5 * MS, 10, true));
+		assertEquals(1, aimd.update(1, 5 * MS, 1, true));
+	}
+
+	@Test
+	public void testGradientGrowsWhileLatencyIsSteady() {
+		LimitAlgorithm gradient = LimitAlgorithm.gradient();
+		int limit = 10;
+		for(int i = 0; i < 50; i++) {
+			limit = gradient.update(limit, 5 * MS, limit, false);
+		}
+		assertTrue(limit > 50, "Limit was " + limit);
+
+		int peak = limit;
+		for(int i = 0; i < 20; i++) {
+			limit = gradient.update(limit, 50 * MS, limit, false);
+		}
+		assertTrue(limit < peak / 2, "Limit was " + limit);
+	}
+
+	@Test
+	public void testGradientIgnoresUnusedLimit() {
+		LimitAlgorithm gradient = LimitAlgorithm.gradient();
+		assertEquals(20, gradient.update(20, 5 * MS, 2, false));
+		assertTrue(gradient.update(20, 5 * MS, 2, true) < 20);
+	}
+
+	@Test
+	public void testRejectsOverLimit() throws Exception {
+		this.blockUpdates();
+		LimitedDatabase limited = new LimitedDatabase(database, LimitAlgorithm.aimd(1000), 2);
+		CompletableFuture<Optional<Long>> first = this.updateAsync(limited);
+		CompletableFuture<Optional<Long>> second = this.updateAsync(limited);
+		waitFor(() -> limited.getInFlight() == 2);
+
+		assertThrows(LimitExceededException.class, () -> limited.update("UPDATE foo SET bar = 1"));
+		assertEquals(1, limited.getRejected());
+
+		release.countDown();
+		first.get();
+		second.get();
+		assertEquals(0, limited.getInFlight());
+		assertEquals(2, limited.getCalls());
+	}
+
+	@Test
+	public void testQueuesWithDeadline() throws Exception {
+		this.blockUpdates();
+		LimitedDatabase limited = new LimitedDatabase(database, LimitAlgorithm.aimd(1000), 1);
+		limited.setMaxQueue(1);
+		limited.setQueueTimeout(5000);
+
+		CompletableFuture<Optional<Long>> first = this.updateAsync(limited);
+		waitFor(() -> limited.getInFlight() == 1);
+		CompletableFuture<Optional<Long>> queued = this.updateAsync(limited);
+		waitFor(() -> limited.getQueueDepth() == 1);
+
+		// The queue is full
+		assertThrows(LimitExceededException.class, () -> limited.update("UPDATE foo SET bar = 1"));
+
+		release.countDown();
+		first.get();
+		queued.get();
+		assertEquals(0, limited.getQueueDepth());
+	}
+
+	@Test
+	public void testQueueTimeout() throws Exception {
+		this.blockUpdates();
+		LimitedDatabase limited = new LimitedDatabase(database, LimitAlgorithm.aimd(1000), 1);
+		limited.setMaxQueue(1);
+		limited.setQueueTimeout(20);
+
+		CompletableFuture<Optional<Long>> first = this.updateAsync(limited);
+		waitFor(() -> limited.getInFlight() == 1);
+		ExecutionException e = assertThrows(ExecutionException.class, () -> this.updateAsync(limited).get());
+		assertTrue(e.getCause().getCause() instanceof LimitExceededException);
+
+		release.countDown();
+		first.get();
+	}
+
+	@Test
+	public void testTimeoutsReduceLimit() throws SQLException {
+		when(database.update(anyString())).thenThrow(new SQLTimeoutException("Query timed out"));
+		LimitedDatabase limited = new LimitedDatabase(database, LimitAlgorithm.aimd(1000), 10);
+
+		assertThrows(SQLTimeoutException.class, () -> limited.update("UPDATE foo SET bar = 1"));
+		assertEquals(9, limited.getLimit());
+		assertEquals(1, limited.getDropped());
+		assertEquals(0, limited.getInFlight());
+	}
+
+	@Test
+	public void testQueryIsInFlightUntilClosed() throws SQLException, IOException {
+		SimpleDatabase h2 = new SimpleDatabase("jdbc:h2:mem:limited;DB_CLOSE_DELAY=-1", "sa", "");
+		// A fixed limit, as the limit is adjusted before the result is closed
+		LimitedDatabase limited = new LimitedDatabase(h2, (limit, rtt, inFlight, dropped) -> limit, 1);
+
+		try(DatabaseResult result = limited.query("SELECT 1")) {
+			assertEquals(1, limited.getInFlight());
+			assertThrows(LimitExceededException.class, () -> limited.query("SELECT 2"));
+		}
+		assertEquals(0, limited.getInFlight());
+	}
+
+	@Test
+	public void testQueryLatencyExcludesReadingResult() throws Exception {
+		SimpleDatabase h2 = new SimpleDatabase("jdbc:h2:mem:limited;DB_CLOSE_DELAY=-1", "sa", "");
+		AtomicLong latency = new AtomicLong(-1);
+		LimitedDatabase limited = new LimitedDatabase(h2, (limit, rtt, inFlight, dropped) -> {
+			latency.set(rtt);
+			return limit;
+		}, 1);
+
+		long start = System.nanoTime();
+		try(DatabaseResult result = limited.query("SELECT 1")) {
+			// The limit is adjusted as soon as the query returns
+			assertTrue(latency.get() >= 0);
+			Thread.sleep(50);
+		}
+		assertTrue(latency.get() < System.nanoTime() - start - 50 * MS, "Latency was " + latency.get());
+		assertEquals(0, limited.getInFlight());
+	}
+
+}
@@ -0,0 +1,132 @@
+package uk.co.lukestevens.jdbc.mapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.persistence.Column;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.SimpleDatabase;
+
+public class RowMappersTest {
+	
+	static enum Status {
+		ACTIVE,
+		INACTIVE
+	}
+	
+	public static class Bean {
+		long id;
+		String firstName;
+		Integer age;
+		Status status;
+		LocalDate created;
+		
+		@Column(name = "nickname")
+		String alias;
+		
+		public void setId(long id) { this.id = id; }
+		public void setFirstName(String firstName) { this.firstName = firstName; }
+		public void setAge(Integer age) { this.age = age; }
+		public void setStatus(Status status) { this.status = status; }
+		public void setCreated(LocalDate created) { this.created = created; }
+		public void setAlias(String alias) { this.alias = alias; }
+	}
+	
+	public static class Immutable {
+		final long id;
+		final String firstName;
+		
+		public Immutable(long id, String firstName) {
+			this.id = id;
+			this.firstName = firstName;
+		}
+	}
+	
+	static class PackagePrivateBean {
+		long id;
+		
+		public void setId(long id) { this.id = id; }
+	}
+	
+	static SimpleDatabase database = new SimpleDatabase("jdbc:h2:mem:rowmappers;DB_CLOSE_DELAY=-1", "sa", "");
+	
+	@BeforeAll
+	public static void setupDatabase() throws SQLException {
+		database.update("CREATE TABLE person(id BIGINT PRIMARY KEY, first_name VARCHAR(16), age INT, "
+				+ "status VARCHAR(16), created DATE, nickname VARCHAR(16))");
+		database.update("INSERT INTO person VALUES(1, 'Alice', 31, 'ACTIVE', '2021-02-14', 'Al')");
+		database.update("INSERT INTO person VALUES(2, 'Bob', NULL, 'INACTIVE', NULL, NULL)");
+	}
+	
+	<T> List<T> query(Class<T> type, String sql) throws SQLException, IOException {
+		try(DatabaseResult result = database.query(sql)) {
+			return result.parseResultSet(RowMappers.forClass(type));
+		}
+	}
+	
+	@Test
+	public void testMapWithSetters() throws SQLException, IOException {
+		List<Bean> beans = query(Bean.class, "SELECT * FROM person ORDER BY id");
+		assertEquals(2, beans.size());
+		
+		Bean alice = beans.get(0);
+		assertEquals(1, alice.id);
+		assertEquals("Alice", alice.firstName);
+		assertEquals(31, alice.age);
+		assertEquals(Status.ACTIVE, alice.status);
+		assertEquals(LocalDate.of(2021, 2, 14), alice.created);
+		assertEquals("Al", alice.alias);
+		
+		Bean bob = beans.get(1);
+		assertEquals("Bob", bob.firstName);
+		assertNull(bob.age);
+		assertEquals(Status.INACTIVE, bob.status);
+		assertNull(bob.created);
+	}
+	
+	@Test
+	public void testMapWithDifferentShapes() throws SQLException, IOException {
+		List<Bean> beans = query(Bean.class, "SELECT first_name, id FROM person ORDER BY id");
+		assertEquals(1, beans.get(0).id);
+		assertEquals("Alice", beans.get(0).firstName);
+		assertNull(beans.get(0).status);
+		
+		beans = query(Bean.class, "SELECT status FROM person ORDER BY id");
+		assertEquals(0, beans.get(0).id);
+		assertEquals(Status.ACTIVE, beans.get(0).status);
+	}
+	
+	@Test
+	public void testMapWithConstructor() throws SQLException, IOException {
+		List<Immutable> people = query(Immutable.class, "SELECT id, first_name FROM person ORDER BY id");
+		assertEquals(2, people.size());
+		assertEquals(2, people.get(1).id);
+		assertEquals("Bob", people.get(1).firstName);
+	}
+	
+	@Test
+	public void testMapNonPublicClass() throws SQLException, IOException {
+		List<PackagePrivateBean> beans = query(PackagePrivateBean.class, "SELECT id FROM person ORDER BY id");
+		assertEquals(1, beans.get(0).id);
+		assertEquals(2, beans.get(1).id);
+	}
+	
+	@Test
+	public void testUnmappableColumns() {
+		assertThrows(SQLException.class, () -> query(Immutable.class, "SELECT id FROM person"));
+	}
+	
+	@Test
+	public void testMappersAreCached() {
+		assertSame(RowMappers.forClass(Bean.class), RowMappers.forClass(Bean.class));
+	}
+
+}
@@ -0,0 +1,128 @@
+package uk.co.lukestevens.jdbc.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.SimpleDatabase;
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics.Phase;
+
+public class InMemoryDatabaseMetricsTest {
+
+	static SimpleDatabase database = new SimpleDatabase("jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1", "sa", "");
+
+	@BeforeAll
+	public static void setupDatabase() throws SQLException {
+		database.update("CREATE TABLE item(id INT PRIMARY KEY, name VARCHAR(16))");
+		database.update("INSERT INTO item VALUES(1, 'a'), (2, 'b'), (3, 'c')");
+	}
+
+	@Test
+	public void testQueryPhasesRecorded() throws SQLException, IOException {
+		InMemoryDatabaseMetrics metrics = new InMemoryDatabaseMetrics();
+		database.setMetrics(metrics);
+		try {
+			for(int i = 0; i < 2; i++) {
+				try(DatabaseResult result = database.query("SELECT name FROM item WHERE id <= ?", 2)) {
+					assertEquals(2, result.parseResultSet(rs -> rs.getString(1)).size());
+				}
+			}
+			database.update("UPDATE item SET name = ? WHERE id = ?", "z", 3);
+		} finally {
+			database.setMetrics(null);
+		}
+
+		StatementMetrics query = metrics.getStatement("SELECT name FROM item WHERE id <= ?");
+		for(Phase phase : Phase.values()) {
+			assertEquals(2, query.getLatency(phase).getCount(), phase.name());
+			assertEquals(0, query.getFailures(phase));
+		}
+		assertEquals(4, query.getRows());
+
+		StatementMetrics update = metrics.getStatement("UPDATE item SET name = ? WHERE id = ?");
+		assertEquals(1, update.getLatency(Phase.EXECUTE).getCount());
+		assertEquals(0, update.getLatency(Phase.ITERATE).getCount());
+		assertEquals(2, metrics.getStatements().size());
+	}
+
+	@Test
+	public void testFailuresRecorded() {
+		InMemoryDatabaseMetrics metrics = new InMemoryDatabaseMetrics();
+		database.setMetrics(metrics);
+		try {
+			assertThrows(SQLException.class, () -> database.update("INSERT INTO item VALUES(1, 'duplicate')"));
+		} finally {
+			database.setMetrics(null);
+		}
+
+		StatementMetrics insert = metrics.getStatement("INSERT INTO item VALUES(?, ?)");
+		assertEquals(1, insert.getFailures(Phase.EXECUTE));
+		assertEquals(0, insert.getFailures(Phase.PREPARE));
+	}
+
+	@Test
+	public void testStatementsAreNormalised() {
+		InMemoryDatabaseMetrics metrics = new InMemoryDatabaseMetrics();
+		metrics.record(Phase.EXECUTE, "select * from item where id = 1", 10, true);
+		metrics.record(Phase.EXECUTE, "select *\n  from item where id = 22", 10, true);
+		metrics.record(Phase.EXECUTE, "select * from item where name = 'it''s'", 10, true);
+
+		assertEquals(2, metrics.getStatements().size());
+		assertEquals(2, metrics.getStatement("select * from item where id = ?").getLatency(Phase.EXECUTE).getCount());
+		assertEquals("select * from item where id in (?) and name = ?",
+				SqlNormaliser.normalise("select * from item where id in (1, 2, ?) and name = 'x'"));
+		assertEquals("insert into item values (?)",
+				SqlNormaliser.normalise("insert into item values (?, ?), (?, ?)"));
+		assertEquals("select col1 from table2", SqlNormaliser.normalise("select col1 from table2"));
+	}
+
+	@Test
+	public void testStatementsAreBounded() {
+		InMemoryDatabaseMetrics metrics = new InMemoryDatabaseMetrics(2);
+		metrics.record(Phase.EXECUTE, "select a from item", 10, true);
+		metrics.record(Phase.EXECUTE, "select b from item", 10, true);
+		metrics.record(Phase.EXECUTE, "select c from item", 10, true);
+		metrics.record(Phase.EXECUTE, "select d from item", 10, true);
+
+		assertEquals(3, metrics.getStatements().size());
+		assertEquals(2, metrics.getStatement(InMemoryDatabaseMetrics.OTHER).getLatency(Phase.EXECUTE).getCount());
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(int i = 1; i <= 1000; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getMax());
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(500) + 500, histogram.getMean(), 1);
+		assertWithin(500, histogram.getValueAtPercentile(50));
+		assertWithin(990, histogram.getValueAtPercentile(99));
+		assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testHistogramBucketsAreContiguous() {
+		for(int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+			assertEquals(LatencyHistogram.lowestValue(i - 1) + LatencyHistogram.bucketWidth(i - 1),
+					LatencyHistogram.lowestValue(i));
+			assertEquals(i, LatencyHistogram.indexOf(LatencyHistogram.lowestValue(i)));
+		}
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+		assertEquals(7, LatencyHistogram.indexOf(7));
+	}
+
+	static void assertWithin(long expectedMicros, long actualNanos) {
+		double error = Math.abs(TimeUnit.NANOSECONDS.toMicros(actualNanos) - expectedMicros) / (double) expectedMicros;
+		assertTrue(error <= 0.125, "Expected " + expectedMicros + "us but was " + actualNanos + "ns");
+	}
+
+}
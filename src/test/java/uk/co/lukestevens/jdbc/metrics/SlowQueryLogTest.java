@@ -0,0 +1,146 @@
+package uk.co.lukestevens.jdbc.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.SimpleDatabase;
+import uk.co.lukestevens.jdbc.metrics.DatabaseMetrics.Phase;
+
+public class SlowQueryLogTest {
+
+	static final String URL = "jdbc:h2:mem:slowqueries;DB_CLOSE_DELAY=-1";
+	static SimpleDatabase database = new SimpleDatabase(URL, "sa", "");
+
+	SlowQueryLog log;
+
+	@BeforeAll
+	public static void setupDatabase() throws SQLException {
+		database.update("CREATE TABLE item(id INT PRIMARY KEY, name VARCHAR(16))");
+		database.update("INSERT INTO item VALUES(1, 'a'), (2, 'b'), (3, 'c')");
+	}
+
+	@AfterEach
+	public void teardown() {
+		database.setSlowQueryLog(null);
+		if(log != null) {
+			log.close();
+		}
+	}
+
+	@Test
+	public void testSlowQueryRecorded() throws SQLException, IOException {
+		log = new SlowQueryLog(0);
+		database.setSlowQueryLog(log);
+
+		try(DatabaseResult result = database.query("SELECT name FROM item WHERE id < ?", 3)) {
+			result.parseResultSet(rs -> rs.getString(1));
+		}
+
+		List<SlowQuery> history = log.getHistory();
+		assertEquals(2, history.size());
+
+		SlowQuery iterate = history.get(0);
+		assertEquals(Phase.ITERATE, iterate.getPhase());
+		assertEquals("SELECT name FROM item WHERE id < ?", iterate.getSql());
+		assertEquals(Arrays.asList(Integer.class.getName()), iterate.getParameterTypes());
+		assertEquals(2, iterate.getRowCount());
+		assertEquals(SlowQueryLogTest.class.getName(), iterate.getCallSite().getClassName());
+
+		SlowQuery execute = history.get(1);
+		assertEquals(Phase.EXECUTE, execute.getPhase());
+		assertEquals(-1, execute.getRowCount());
+		assertEquals("testSlowQueryRecorded", execute.getCallSite().getMethodName());
+		assertNull(execute.getPlan());
+	}
+
+	@Test
+	public void testParameterTypesUnknownWithBinder() throws SQLException {
+		log = new SlowQueryLog(0);
+		database.setSlowQueryLog(log);
+
+		database.updateWith("UPDATE item SET name = ? WHERE id = 3", stmt -> stmt.setString(1, "c"));
+
+		SlowQuery update = log.getHistory().get(0);
+		assertEquals(Phase.EXECUTE, update.getPhase());
+		assertNull(update.getParameterTypes());
+		assertTrue(update.toString().contains("UPDATE item SET name = ? WHERE id = 3"));
+	}
+
+	@Test
+	public void testFastAndUntimedPhasesIgnored() {
+		log = new SlowQueryLog(1000);
+		log.record(Phase.EXECUTE, "SELECT 1", null, 1_000_000, -1);
+		log.record(Phase.ACQUIRE, "SELECT 1", null, Long.MAX_VALUE, -1);
+
+		assertEquals(0, log.getSlowCount());
+		assertTrue(log.getHistory().isEmpty());
+	}
+
+	@Test
+	public void testRateLimited() {
+		log = new SlowQueryLog(0);
+		log.setMaxPerSecond(2);
+		for(int i = 0; i < 10; i++) {
+			log.record(Phase.EXECUTE, "SELECT 1", null, 1, -1);
+		}
+
+		assertEquals(10, log.getSlowCount());
+		assertTrue(log.getDroppedCount() > 0);
+		assertEquals(10, log.getHistory().size() + log.getDroppedCount());
+	}
+
+	@Test
+	public void testSampled() {
+		log = new SlowQueryLog(0);
+		log.setSampleRate(0);
+		log.record(Phase.EXECUTE, "SELECT 1", null, 1, -1);
+
+		assertEquals(1, log.getSlowCount());
+		assertEquals(1, log.getDroppedCount());
+		assertTrue(log.getHistory().isEmpty());
+	}
+
+	@Test
+	public void testHistoryBounded() {
+		log = new SlowQueryLog(0);
+		log.setHistorySize(1);
+		log.record(Phase.EXECUTE, "SELECT 1", null, 1, -1);
+		log.record(Phase.EXECUTE, "SELECT 2", null, 1, -1);
+
+		assertEquals(1, log.getHistory().size());
+		assertEquals("SELECT 2", log.getHistory().get(0).getSql());
+	}
+
+	@Test
+	public void testSlowQueryExplained() throws Exception {
+		log = new SlowQueryLog(0);
+		log.setExplainSource(() -> DriverManager.getConnection(URL, "sa", ""));
+		database.setSlowQueryLog(log);
+
+		database.query("SELECT name FROM item WHERE id = ?", 1).close();
+
+		// Statements are explained in the background
+		SlowQuery execute = null;
+		for(int i = 0; i < 100 && execute == null; i++) {
+			execute = log.getHistory().stream()
+					.filter(slowQuery -> slowQuery.getPhase() == Phase.EXECUTE)
+					.findFirst().orElse(null);
+			Thread.sleep(10);
+		}
+
+		assertNotNull(execute);
+		assertNotNull(execute.getPlan());
+		assertTrue(execute.getPlan().toUpperCase().contains("ITEM"), execute.getPlan());
+	}
+
+}
@@ -0,0 +1,315 @@
+package uk.co.lukestevens.jdbc.pool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ConnectionPoolTest {
+
+	ConnectionSource source = mock(ConnectionSource.class);
+	PoolSettings settings = new PoolSettings();
+	ConnectionPool pool;
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		when(source.openConnection()).thenAnswer(inv -> mockConnection());
+		settings.setMaxSize(2);
+		settings.setConnectionTimeout(50);
+		settings.setHousekeepingInterval(60_000);
+	}
+
+	@AfterEach
+	public void teardown() {
+		if(pool != null) {
+			pool.close();
+		}
+	}
+
+	Connection mockConnection() throws SQLException {
+		Connection connection = mock(Connection.class);
+		when(connection.getAutoCommit()).thenReturn(true);
+		when(connection.isValid(anyInt())).thenReturn(true);
+		return connection;
+	}
+
+	@Test
+	public void testConnectionIsReused() throws SQLException {
+		pool = new ConnectionPool(source, settings);
+
+		Connection first = pool.getConnection();
+		first.close();
+		Connection second = pool.getConnection();
+		second.close();
+
+		verify(source, times(1)).openConnection();
+		assertEquals(1, pool.getTotalConnections());
+		assertEquals(1, pool.getIdleConnections());
+		assertEquals(0, pool.getActiveConnections());
+	}
+
+	@Test
+	public void testClosedLeaseCannotBeUsed() throws SQLException {
+		pool = new ConnectionPool(source, settings);
+
+		Connection connection = pool.getConnection();
+		connection.close();
+
+		assertTrue(connection.isClosed());
+		assertThrows(SQLException.class, () -> connection.prepareStatement("sql"));
+	}
+
+	@Test
+	public void testPoolIsBounded() throws SQLException {
+		pool = new ConnectionPool(source, settings);
+
+		Connection first = pool.getConnection();
+		Connection second = pool.getConnection();
+		assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+		assertEquals(2, pool.getActiveConnections());
+
+		first.close();
+		pool.getConnection().close();
+		second.close();
+		verify(source, times(2)).openConnection();
+	}
+
+	@Test
+	public void testInvalidConnectionIsRetired() throws SQLException {
+		settings.setValidationInterval(0);
+		pool = new ConnectionPool(source, settings);
+
+		Connection physical = mockConnection();
+		when(physical.isValid(anyInt())).thenReturn(false);
+		when(source.openConnection()).thenReturn(physical).thenAnswer(inv -> mockConnection());
+
+		pool.getConnection().close();
+		pool.getConnection().close();
+
+		verify(physical).close();
+		verify(source, times(2)).openConnection();
+		assertEquals(1, pool.getTotalConnections());
+	}
+
+	@Test
+	public void testExpiredConnectionIsRetired() throws SQLException {
+		settings.setMaxLifetime(1);
+		pool = new ConnectionPool(source, settings);
+
+		Connection physical = mockConnection();
+		when(source.openConnection()).thenReturn(physical);
+
+		Connection connection = pool.getConnection();
+		sleep(5);
+		connection.close();
+
+		verify(physical).close();
+		assertEquals(0, pool.getTotalConnections());
+	}
+
+	@Test
+	public void testIdleConnectionsAreEvicted() throws SQLException {
+		settings.setIdleTimeout(1);
+		pool = new ConnectionPool(source, settings);
+
+		pool.getConnection().close();
+		assertEquals(1, pool.getIdleConnections());
+
+		sleep(5);
+		pool.housekeep();
+		assertEquals(0, pool.getIdleConnections());
+		assertEquals(0, pool.getTotalConnections());
+	}
+
+	@Test
+	public void testMinIdleConnectionsAreOpened() throws SQLException {
+		settings.setMinIdle(2);
+		pool = new ConnectionPool(source, settings);
+
+		// Idle connections are opened by the housekeeping thread when the pool starts
+		for(int i = 0; i < 100 && pool.getIdleConnections() < 2; i++) {
+			sleep(10);
+		}
+		assertEquals(2, pool.getIdleConnections());
+		assertEquals(2, pool.getTotalConnections());
+	}
+
+	@Test
+	public void testConnectionIsResetWhenReturned() throws SQLException {
+		pool = new ConnectionPool(source, settings);
+
+		Connection physical = mockConnection();
+		PreparedStatement stmt = mock(PreparedStatement.class);
+		when(physical.prepareStatement("sql")).thenReturn(stmt);
+		when(source.openConnection()).thenReturn(physical);
+
+		Connection connection = pool.getConnection();
+		connection.setAutoCommit(false);
+		when(physical.getAutoCommit()).thenReturn(false);
+		connection.prepareStatement("sql");
+		connection.close();
+
+		verify(stmt).close();
+		verify(physical).rollback();
+		verify(physical).setAutoCommit(true);
+		verify(physical, never()).close();
+	}
+
+	@Test
+	public void testCloseRetiresConnections() throws SQLException {
+		pool = new ConnectionPool(source, settings);
+
+		Connection physical = mockConnection();
+		when(source.openConnection()).thenReturn(physical);
+
+		pool.getConnection().close();
+		pool.close();
+
+		verify(physical).close();
+		assertThrows(SQLException.class, pool::getConnection);
+	}
+
+	@Test
+	public void testLeasesAreTracked() throws SQLException {
+		pool = new ConnectionPool(source, settings);
+
+		Connection first = pool.getConnection();
+		sleep(5);
+		Connection second = pool.getConnection();
+
+		List<ConnectionLease> leases = pool.getLeases();
+		assertEquals(2, leases.size());
+		assertTrue(leases.get(0).getHeldFor() >= leases.get(1).getHeldFor());
+		assertEquals(Thread.currentThread().getName(), leases.get(0).getThreadName());
+		assertNull(leases.get(0).getStackTrace());
+
+		first.close();
+		second.close();
+		assertTrue(pool.getLeases().isEmpty());
+	}
+
+	@Test
+	public void testManyLeasesAreSortedByAge() throws SQLException {
+		settings.setMaxSize(100);
+		pool = new ConnectionPool(source, settings);
+
+		for(int i = 0; i < 100; i++) {
+			pool.getConnection();
+		}
+		List<ConnectionLease> leases = pool.getLeases();
+		for(int i = 1; i < leases.size(); i++) {
+			assertTrue(leases.get(i - 1).getAcquiredNanos() <= leases.get(i).getAcquiredNanos());
+		}
+	}
+
+	@Test
+	public void testLeakIsReported() throws SQLException {
+		settings.setLeakDetectionThreshold(60_000);
+		settings.setLeakStackTraces(true);
+		pool = new ConnectionPool(source, settings);
+
+		Connection connection = pool.getConnection();
+		ConnectionLease lease = pool.getLeases().get(0);
+		assertTrue(Arrays.stream(lease.getStackTrace())
+				.anyMatch(element -> element.getMethodName().equals("testLeakIsReported")));
+
+		pool.detectLeaks();
+		assertFalse(lease.reported);
+
+		settings.setLeakDetectionThreshold(1);
+		sleep(5);
+		pool.detectLeaks();
+		assertTrue(lease.reported);
+		assertFalse(connection.isClosed());
+
+		connection.close();
+		assertEquals(1, pool.getIdleConnections());
+	}
+
+	@Test
+	public void testLeakIsForceClosed() throws SQLException {
+		settings.setLeakDetectionThreshold(1);
+		settings.setLeakForceClose(true);
+		pool = new ConnectionPool(source, settings);
+
+		Connection physical = mockConnection();
+		when(source.openConnection()).thenReturn(physical);
+
+		Connection connection = pool.getConnection();
+		
+		// Leaks are detected by the housekeeping thread
+		for(int i = 0; i < 100 && !connection.isClosed(); i++) {
+			sleep(10);
+		}
+
+		assertTrue(connection.isClosed());
+		assertThrows(SQLException.class, () -> connection.prepareStatement("sql"));
+		verify(physical).close();
+		assertTrue(pool.getLeases().isEmpty());
+		assertEquals(0, pool.getTotalConnections());
+		assertEquals(0, pool.getActiveConnections());
+
+		// Returning the connection after it was closed has no effect
+		connection.close();
+		assertEquals(0, pool.getIdleConnections());
+	}
+
+	@Test
+	public void testLeakForceCloseLeavesStatementCacheToBorrower() throws SQLException {
+		settings.setStatementCacheSize(2);
+		settings.setLeakDetectionThreshold(1);
+		settings.setLeakForceClose(true);
+		pool = new ConnectionPool(source, settings);
+
+		Connection physical = mockConnection();
+		PreparedStatement stmt = mock(PreparedStatement.class);
+		when(physical.prepareStatement("sql", Statement.NO_GENERATED_KEYS)).thenReturn(stmt);
+		when(source.openConnection()).thenReturn(physical);
+
+		Connection connection = pool.getConnection();
+		PreparedStatement statement = connection.prepareStatement("sql");
+		sleep(5);
+		pool.detectLeaks();
+
+		assertTrue(connection.isClosed());
+		verify(physical).close();
+		verify(stmt, never()).close();
+
+		// The borrower can still return the statement on its own thread
+		statement.close();
+		assertEquals(0, pool.getTotalConnections());
+	}
+
+	@Test
+	public void testBackgroundTaskFailureIsLogged() {
+		AtomicInteger runs = new AtomicInteger();
+		Runnable failing = () -> {
+			runs.incrementAndGet();
+			throw new IllegalStateException("Failed");
+		};
+
+		ConnectionPool.runSafely("test", failing);
+		ConnectionPool.runSafely("test", failing);
+		assertEquals(2, runs.get());
+	}
+
+	static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+package uk.co.lukestevens.jdbc.pool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.PooledDatabase;
+
+public class StatementCacheTest {
+
+	Connection physical = mock(Connection.class);
+	PreparedStatement stmt = mock(PreparedStatement.class);
+	PoolSettings settings = new PoolSettings();
+	ConnectionPool pool;
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		when(physical.getAutoCommit()).thenReturn(true);
+		when(physical.isValid(anyInt())).thenReturn(true);
+		when(physical.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS)).thenReturn(stmt);
+		settings.setStatementCacheSize(2);
+		settings.setHousekeepingInterval(60_000);
+		pool = new ConnectionPool(() -> physical, settings);
+	}
+
+	@AfterEach
+	public void teardown() {
+		pool.close();
+	}
+
+	@Test
+	public void testStatementIsReusedAcrossLeases() throws SQLException {
+		for(int i = 0; i < 3; i++) {
+			try(Connection connection = pool.getConnection()) {
+				PreparedStatement statement = connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS);
+				statement.setInt(1, i);
+				statement.executeUpdate();
+			}
+		}
+
+		verify(physical, times(1)).prepareStatement("sql", Statement.RETURN_GENERATED_KEYS);
+		verify(stmt, times(3)).executeUpdate();
+		verify(stmt, times(3)).clearParameters();
+		verify(stmt, never()).close();
+		assertEquals(2, pool.getStatementCacheHits());
+		assertEquals(1, pool.getStatementCacheMisses());
+	}
+
+	@Test
+	public void testStatementReturnsPooledConnection() throws SQLException {
+		when(stmt.getConnection()).thenReturn(physical);
+		Connection connection = pool.getConnection();
+		PreparedStatement statement = connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS);
+
+		assertSame(connection, statement.getConnection());
+		statement.getConnection().close();
+		verify(physical, never()).close();
+		assertEquals(1, pool.getIdleConnections());
+	}
+
+	@Test
+	public void testStatementCannotBeUsedAfterConnectionIsClosed() throws SQLException {
+		Connection connection = pool.getConnection();
+		PreparedStatement statement = connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS);
+		connection.close();
+
+		assertTrue(statement.isClosed());
+		assertThrows(SQLException.class, statement::executeUpdate);
+		verify(stmt, never()).close();
+	}
+
+	@Test
+	public void testStatementInUseIsNotShared() throws SQLException {
+		PreparedStatement uncached = mock(PreparedStatement.class);
+		when(physical.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS))
+			.thenReturn(stmt)
+			.thenReturn(uncached);
+
+		try(Connection connection = pool.getConnection()) {
+			PreparedStatement first = connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS);
+			PreparedStatement second = connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS);
+			assertNotEquals(first, second);
+		}
+
+		verify(uncached).close();
+		verify(stmt, never()).close();
+		assertEquals(2, pool.getStatementCacheMisses());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedStatementIsEvicted() throws SQLException {
+		PreparedStatement stmt2 = mock(PreparedStatement.class);
+		PreparedStatement stmt3 = mock(PreparedStatement.class);
+		when(physical.prepareStatement("sql2", Statement.NO_GENERATED_KEYS)).thenReturn(stmt2);
+		when(physical.prepareStatement("sql3", Statement.NO_GENERATED_KEYS)).thenReturn(stmt3);
+
+		try(Connection connection = pool.getConnection()) {
+			connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS).close();
+			connection.prepareStatement("sql2").close();
+			connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS).close();
+			connection.prepareStatement("sql3").close();
+		}
+
+		verify(stmt2).close();
+		verify(stmt, never()).close();
+		verify(stmt3, never()).close();
+	}
+
+	@Test
+	public void testStatementStateIsResetOnCheckin() throws SQLException {
+		when(stmt.getFetchSize()).thenReturn(10);
+		when(stmt.getQueryTimeout()).thenReturn(0);
+		when(stmt.executeBatch()).thenThrow(new SQLException("Batch failed"));
+
+		try(Connection connection = pool.getConnection()) {
+			PreparedStatement statement = connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS);
+			statement.setFetchSize(500);
+			statement.setQueryTimeout(30);
+			statement.setInt(1, 1);
+			statement.addBatch();
+			assertThrows(SQLException.class, statement::executeBatch);
+			statement.close();
+		}
+
+		verify(stmt).clearBatch();
+		verify(stmt).setFetchSize(10);
+		verify(stmt).setQueryTimeout(0);
+		verify(stmt, never()).close();
+	}
+
+	@Test
+	public void testUnchangedStatementIsNotReset() throws SQLException {
+		try(Connection connection = pool.getConnection()) {
+			PreparedStatement statement = connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS);
+			statement.setInt(1, 1);
+			statement.executeUpdate();
+		}
+
+		verify(stmt, never()).clearBatch();
+		verify(stmt, never()).setFetchSize(anyInt());
+	}
+
+	@Test
+	public void testStatementThatCannotBeResetIsPreparedAgain() throws SQLException {
+		PreparedStatement replacement = mock(PreparedStatement.class);
+		when(physical.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS))
+			.thenReturn(stmt)
+			.thenReturn(replacement);
+		doThrow(new SQLException("Broken")).when(stmt).clearBatch();
+
+		try(Connection connection = pool.getConnection()) {
+			PreparedStatement statement = connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS);
+			statement.addBatch();
+			assertThrows(SQLException.class, statement::close);
+			verify(stmt).close();
+
+			connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS).close();
+		}
+
+		verify(physical, times(2)).prepareStatement("sql", Statement.RETURN_GENERATED_KEYS);
+	}
+
+	@Test
+	public void testCachedStatementsAreClosedWithPool() throws SQLException {
+		try(Connection connection = pool.getConnection()) {
+			connection.prepareStatement("sql", Statement.RETURN_GENERATED_KEYS);
+		}
+		pool.close();
+
+		verify(stmt).close();
+		verify(physical).close();
+	}
+
+	@Test
+	public void testPooledDatabaseWithStatementCache() throws SQLException, IOException {
+		String url = "jdbc:h2:mem:statementcache;DB_CLOSE_DELAY=-1";
+		try(PooledDatabase database = new PooledDatabase(url, "sa", "", settings)) {
+			database.update("CREATE TABLE foo(id IDENTITY PRIMARY KEY, value VARCHAR(16))");
+			for(int i = 0; i < 5; i++) {
+				assertEquals(i + 1, database.update("INSERT INTO foo(value) VALUES(?)", "value" + i).get());
+			}
+
+			for(int i = 0; i < 5; i++) {
+				try(DatabaseResult result = database.query("SELECT value FROM foo WHERE id=?", i + 1)) {
+					List<String> values = result.parseResultSet(rs -> rs.getString(1));
+					assertEquals(1, values.size());
+					assertEquals("value" + i, values.get(0));
+				}
+			}
+
+			assertEquals(8, database.getPool().getStatementCacheHits());
+		}
+	}
+
+}
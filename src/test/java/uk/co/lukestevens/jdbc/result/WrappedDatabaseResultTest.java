@@ -0,0 +1,99 @@
+package uk.co.lukestevens.jdbc.result;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WrappedDatabaseResultTest {
+	
+	Connection connection = mock(Connection.class);
+	Statement stmt = mock(Statement.class);
+	ResultSet rs = mock(ResultSet.class);
+	WrappedDatabaseResult result = new WrappedDatabaseResult(connection, stmt, rs);
+	
+	@BeforeEach
+	public void setup() throws SQLException {
+		when(rs.next()).thenReturn(true, true, false);
+		when(rs.getInt(1)).thenReturn(1, 2);
+	}
+	
+	@Test
+	public void testIteratorParsesLazily() throws SQLException {
+		Iterator<Integer> it = result.iterator(rs -> rs.getInt(1));
+		verify(rs, never()).next();
+		
+		assertTrue(it.hasNext());
+		assertTrue(it.hasNext());
+		verify(rs, times(1)).next();
+		assertEquals(1, it.next());
+		assertEquals(2, it.next());
+		verify(connection, never()).close();
+		
+		assertFalse(it.hasNext());
+		assertThrows(NoSuchElementException.class, it::next);
+		verify(rs).close();
+		verify(stmt).close();
+		verify(connection).close();
+	}
+	
+	@Test
+	public void testStreamClosesResult() throws SQLException {
+		try(Stream<Integer> stream = result.stream(rs -> rs.getInt(1))) {
+			assertEquals(1, stream.findFirst().get());
+		}
+		
+		verify(rs, times(1)).next();
+		verify(rs).close();
+		verify(stmt).close();
+		verify(connection).close();
+	}
+	
+	@Test
+	public void testStreamWhenExhausted() throws SQLException {
+		try(Stream<Integer> stream = result.stream(rs -> rs.getInt(1))) {
+			List<Integer> values = stream.collect(Collectors.toList());
+			assertEquals(2, values.size());
+		}
+		
+		// Closing the stream after exhaustion should not close anything twice
+		verify(rs, times(1)).close();
+		verify(connection, times(1)).close();
+	}
+	
+	@Test
+	public void testStreamWhenParsingFails() throws SQLException {
+		when(rs.getInt(1)).thenThrow(SQLException.class);
+		try(Stream<Integer> stream = result.stream(rs -> rs.getInt(1))) {
+			UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> stream.count());
+			assertTrue(e.getCause().getCause() instanceof SQLException);
+		}
+		verify(connection).close();
+	}
+	
+	@Test
+	public void testCursorResultEndsTransaction() throws SQLException, IOException {
+		CursorDatabaseResult cursor = new CursorDatabaseResult(connection, stmt, rs, true);
+		cursor.close();
+		
+		verify(rs).close();
+		verify(stmt).close();
+		verify(connection).commit();
+		verify(connection).setAutoCommit(true);
+		verify(connection).close();
+	}
+
+}
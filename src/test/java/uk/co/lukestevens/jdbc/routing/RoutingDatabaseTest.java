@@ -0,0 +1,178 @@
+package uk.co.lukestevens.jdbc.routing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.AbstractDatabase;
+import uk.co.lukestevens.jdbc.SimpleDatabase;
+
+public class RoutingDatabaseTest {
+
+	static SimpleDatabase primary = new SimpleDatabase("jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1", "sa", "");
+	static SimpleDatabase replica1 = new SimpleDatabase("jdbc:h2:mem:routing_replica1;DB_CLOSE_DELAY=-1", "sa", "");
+	static final String REPLICA2_URL = "jdbc:h2:mem:routing_replica2;DB_CLOSE_DELAY=-1";
+	static SimpleDatabase replica2 = new SimpleDatabase(REPLICA2_URL, "sa", "");
+
+	@BeforeAll
+	public static void setupDatabases() throws SQLException {
+		for(SimpleDatabase db : Arrays.asList(primary, replica1, replica2)) {
+			db.update("CREATE TABLE source(name VARCHAR(16))");
+		}
+		primary.update("INSERT INTO source VALUES('primary')");
+		replica1.update("INSERT INTO source VALUES('replica1')");
+		replica2.update("INSERT INTO source VALUES('replica2')");
+	}
+
+	static String source(RoutingDatabase db) throws SQLException, IOException {
+		try(DatabaseResult result = db.query("SELECT name FROM source")) {
+			return result.parseResultSet(rs -> rs.getString(1)).get(0);
+		}
+	}
+
+	@Test
+	public void testRoundRobin() throws SQLException, IOException {
+		RoutingDatabase db = new RoutingDatabase(primary, Arrays.asList(replica1, replica2));
+
+		assertEquals("replica1", source(db));
+		assertEquals("replica2", source(db));
+		assertEquals("replica1", source(db));
+		assertEquals(2, db.getReplicas().get(0).getQueries());
+		assertEquals(0, db.getReplicas().get(0).getOutstanding());
+	}
+
+	@Test
+	public void testUpdatesSentToPrimary() throws SQLException, IOException {
+		RoutingDatabase db = new RoutingDatabase(primary, Arrays.asList(replica1));
+		db.setStickyWindow(0);
+
+		db.update("CREATE TABLE IF NOT EXISTS written(id INT)");
+
+		try(DatabaseResult result = db.queryPrimary("SELECT COUNT(*) FROM written")) {
+			assertEquals(0, result.parseResultSet(rs -> rs.getInt(1)).get(0));
+		}
+		assertThrows(SQLException.class, () -> db.query("SELECT COUNT(*) FROM written"));
+		assertEquals("replica1", source(db));
+	}
+
+	@Test
+	public void testStickyAfterWrite() throws Exception {
+		RoutingDatabase db = new RoutingDatabase(primary, Arrays.asList(replica1));
+		db.setStickyWindow(200);
+
+		db.update("UPDATE source SET name = 'primary'");
+		assertEquals("primary", source(db));
+
+		// Other threads are not affected by this thread's writes
+		assertEquals("replica1", CompletableFuture.supplyAsync(() -> {
+			try {
+				return source(db);
+			} catch (SQLException | IOException e) {
+				throw new RuntimeException(e);
+			}
+		}).get());
+
+		Thread.sleep(250);
+		assertEquals("replica1", source(db));
+	}
+
+	@Test
+	public void testLeastOutstanding() throws SQLException, IOException {
+		RoutingDatabase db = new RoutingDatabase(primary, Arrays.asList(replica1, replica2), LoadBalancer.leastOutstanding());
+
+		try(DatabaseResult held = db.query("SELECT name FROM source")) {
+			Replica busy = db.getReplicas().stream().filter(r -> r.getOutstanding() == 1).findFirst().get();
+			String other = busy.getDatabase() == replica1? "replica2" : "replica1";
+			for(int i = 0; i < 3; i++) {
+				assertEquals(other, source(db));
+			}
+		}
+
+		for(Replica replica : db.getReplicas()) {
+			assertEquals(0, replica.getOutstanding());
+		}
+	}
+
+	@Test
+	public void testUnhealthyReplicaEjected() throws Exception {
+		AtomicBoolean down = new AtomicBoolean(true);
+		AbstractDatabase flaky = new AbstractDatabase() {
+
+			@Override
+			protected Connection getConnection() throws SQLException {
+				if(down.get()) {
+					throw new SQLNonTransientConnectionException("Connection refused", "08001");
+				}
+				return DriverManager.getConnection(REPLICA2_URL, "sa", "");
+			}
+		};
+
+		RoutingDatabase db = new RoutingDatabase(primary, Arrays.asList(flaky));
+		db.setMaxFailures(2);
+		db.setEjectDuration(100);
+		Replica replica = db.getReplicas().get(0);
+
+		// Failed queries fall back to the primary
+		assertEquals("primary", source(db));
+		assertTrue(replica.isHealthy());
+		assertEquals("primary", source(db));
+		assertTrue(replica.isEjected());
+		assertFalse(replica.isHealthy());
+
+		// Ejected replicas are not tried
+		assertEquals("primary", source(db));
+		assertEquals(2, replica.getQueries());
+
+		down.set(false);
+		Thread.sleep(150);
+		assertTrue(replica.isHealthy());
+		assertEquals("replica2", source(db));
+		assertFalse(replica.isEjected());
+		assertEquals(0, replica.getConsecutiveFailures());
+	}
+
+	@Test
+	public void testQueryErrorsNotRetried() {
+		RoutingDatabase db = new RoutingDatabase(primary, Arrays.asList(replica1));
+
+		assertThrows(SQLException.class, () -> db.query("SELECT missing FROM source"));
+		Replica replica = db.getReplicas().get(0);
+		assertEquals(0, replica.getConsecutiveFailures());
+		assertEquals(0, replica.getOutstanding());
+	}
+
+	@Test
+	public void testBusyReplicaNotEjected() {
+		AbstractDatabase busy = new AbstractDatabase() {
+
+			@Override
+			protected Connection getConnection() throws SQLException {
+				// As thrown by ConnectionPool when every connection is in use
+				throw new SQLTransientConnectionException("Timed out after 30000ms waiting for a connection");
+			}
+		};
+
+		RoutingDatabase db = new RoutingDatabase(primary, Arrays.asList(busy));
+		db.setMaxFailures(1);
+
+		assertThrows(SQLTransientConnectionException.class, () -> db.query("SELECT name FROM source"));
+		Replica replica = db.getReplicas().get(0);
+		assertEquals(0, replica.getConsecutiveFailures());
+		assertTrue(replica.isHealthy());
+		assertFalse(RoutingDatabase.isConnectionFailure(new SQLTransientConnectionException("Busy")));
+		assertTrue(RoutingDatabase.isConnectionFailure(new SQLTransientConnectionException("Link failure", "08S01")));
+	}
+
+}
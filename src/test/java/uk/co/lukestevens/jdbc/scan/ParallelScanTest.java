@@ -0,0 +1,145 @@
+package uk.co.lukestevens.jdbc.scan;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.jdbc.BulkInserter;
+import uk.co.lukestevens.jdbc.SimpleDatabase;
+import uk.co.lukestevens.jdbc.scan.ParallelScan.Partition;
+import uk.co.lukestevens.jdbc.scan.ParallelScan.Partitioning;
+
+public class ParallelScanTest {
+
+	static SimpleDatabase database = new SimpleDatabase("jdbc:h2:mem:parallelscan;DB_CLOSE_DELAY=-1", "sa", "");
+
+	@BeforeAll
+	public static void setupDatabase() throws SQLException, IOException {
+		database.update("CREATE TABLE event(id INT PRIMARY KEY, amount DOUBLE, created TIMESTAMP, category INT)");
+		long start = Timestamp.valueOf("2020-01-01 00:00:00").getTime();
+		new BulkInserter(database, "event", "id", "amount", "created", "category").insert(IntStream.rangeClosed(1, 1000)
+				.mapToObj(i -> new Object[] { i, i * 0.25, new Timestamp(start + i * 60_000L), i % 10 == 0? null : i % 3 }));
+	}
+
+	@Test
+	public void testRangePartitions() throws SQLException, IOException {
+		ParallelScan scan = new ParallelScan(database, "event", "id");
+		scan.setPartitions(4);
+		List<Partition> partitions = scan.getPartitions();
+
+		assertEquals(5, partitions.size());
+		assertEquals("id >= 1 AND id < 250", partitions.get(0).toString());
+		assertEquals("id >= 750 AND id <= 1000", partitions.get(3).toString());
+		assertEquals("id IS NULL", partitions.get(4).toString());
+	}
+
+	@Test
+	public void testNarrowRangeHasFewerPartitions() throws SQLException, IOException {
+		ParallelScan scan = new ParallelScan(database, "event", "category");
+		scan.setPartitions(8);
+
+		// Only the keys 0, 1 and 2, plus nulls
+		List<Partition> partitions = scan.getPartitions();
+		assertEquals(3, partitions.size());
+	}
+
+	@Test
+	public void testScanCollectsEveryRowInKeyOrder() throws SQLException, IOException {
+		ParallelScan scan = new ParallelScan(database, "event", "id");
+		scan.setParallelism(4);
+		scan.setColumns("id");
+		ScanResult<List<Integer>> result = scan.scan(rs -> rs.getInt("id"), Collectors.toList());
+
+		assertEquals(IntStream.rangeClosed(1, 1000).boxed().collect(Collectors.toList()), result.getValue());
+		assertEquals(1000, result.getRowCount());
+		assertEquals(17, result.getPartitions().size());
+		assertEquals(0, result.getPartitions().get(16).getRowCount());
+	}
+
+	@Test
+	public void testScanWithAction() throws SQLException, IOException {
+		ParallelScan scan = new ParallelScan(database, "event", "category");
+		scan.setParallelism(2);
+		LongAdder rows = new LongAdder();
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		ScanResult<Void> result = scan.scan(rs -> {
+			rows.increment();
+			threads.add(Thread.currentThread().getName());
+		});
+
+		assertEquals(1000, rows.sum());
+		assertEquals(1000, result.getRowCount());
+		// Rows with a null category are read by the last partition
+		assertEquals(100, result.getPartitions().get(result.getPartitions().size() - 1).getRowCount());
+		assertTrue(threads.size() <= 2);
+	}
+
+	@Test
+	public void testScanByTimestamp() throws SQLException, IOException {
+		ParallelScan scan = new ParallelScan(database, "event", "created");
+		scan.setPartitions(7);
+		ScanResult<Double> result = scan.scan(rs -> rs.getDouble("amount"), Collectors.summingDouble(amount -> amount));
+
+		assertEquals(1000 * 1001 / 2 * 0.25, result.getValue(), 0.001);
+		assertEquals(8, result.getPartitions().size());
+	}
+
+	@Test
+	public void testQuantilePartitionsAreEven() throws SQLException, IOException {
+		database.update("CREATE TABLE skewed(id INT PRIMARY KEY)");
+		database.update("INSERT INTO skewed SELECT X FROM SYSTEM_RANGE(1, 90)");
+		database.update("INSERT INTO skewed VALUES (1000000)");
+
+		ParallelScan scan = new ParallelScan(database, "skewed", "id");
+		scan.setPartitions(3);
+		assertEquals(90, scan.scan(rs -> {}).getPartitions().get(0).getRowCount());
+
+		scan.setPartitioning(Partitioning.QUANTILE);
+		ScanResult<Void> result = scan.scan(rs -> {});
+		assertEquals(91, result.getRowCount());
+		for(int i = 0; i < 3; i++) {
+			assertTrue(result.getPartitions().get(i).getRowCount() <= 31);
+		}
+	}
+
+	@Test
+	public void testFailureIsThrown() {
+		ParallelScan scan = new ParallelScan(database, "event", "id");
+		scan.setColumns("missing");
+		assertThrows(SQLException.class, () -> scan.scan(rs -> {}));
+	}
+
+	@Test
+	public void testWideKeyRanges() {
+		ParallelScan scan = new ParallelScan(database, "event", "id");
+		scan.setPartitions(4);
+
+		assertEquals(Arrays.asList(Long.MIN_VALUE, -(1L << 62) - 1, -1L, (1L << 62) - 1),
+				scan.getRanges(Long.MIN_VALUE, Long.MAX_VALUE));
+
+		BigInteger lower = BigInteger.valueOf(Long.MAX_VALUE);
+		BigInteger upper = lower.multiply(BigInteger.valueOf(9));
+		assertEquals(Arrays.asList(lower, lower.multiply(BigInteger.valueOf(3)), lower.multiply(BigInteger.valueOf(5)), lower.multiply(BigInteger.valueOf(7))),
+				scan.getRanges(lower, upper));
+	}
+
+	@Test
+	public void testUnsupportedKeyType() throws SQLException {
+		ParallelScan scan = new ParallelScan(database, "event", "id");
+		assertThrows(IllegalArgumentException.class, () -> scan.getRanges("a", "z"));
+	}
+
+}
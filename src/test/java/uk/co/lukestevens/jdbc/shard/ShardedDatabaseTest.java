@@ -0,0 +1,196 @@
+package uk.co.lukestevens.jdbc.shard;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+import uk.co.lukestevens.jdbc.AbstractDatabase;
+import uk.co.lukestevens.jdbc.SimpleDatabase;
+import uk.co.lukestevens.jdbc.columnar.ColumnarResult;
+
+public class ShardedDatabaseTest {
+
+	static List<SimpleDatabase> shards = Arrays.asList(
+			new SimpleDatabase("jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1", "sa", ""),
+			new SimpleDatabase("jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1", "sa", ""),
+			new SimpleDatabase("jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1", "sa", ""));
+
+	static ShardedDatabase database = new ShardedDatabase(shards);
+
+	@BeforeAll
+	public static void setupDatabase() throws SQLException {
+		database.updateAll("CREATE TABLE account(id INT PRIMARY KEY, name VARCHAR(16))");
+		for(int id = 1; id <= 30; id++) {
+			database.updateShard(id, "INSERT INTO account VALUES(?, ?)", id, "account" + id);
+		}
+	}
+
+	@AfterAll
+	public static void teardown() {
+		database.close();
+	}
+
+	static int count(AbstractDatabase db, String query, Object...params) throws SQLException, IOException {
+		try(DatabaseResult result = db.query(query, params)) {
+			return result.parseResultSet(rs -> rs.getInt(1)).get(0);
+		}
+	}
+
+	@Test
+	public void testRowsPlacedByKey() throws SQLException, IOException {
+		for(int id = 1; id <= 30; id++) {
+			assertEquals(1, count(database.getShard(id), "SELECT COUNT(*) FROM account WHERE id = ?", id));
+		}
+		for(SimpleDatabase shard : shards) {
+			int rows = count(shard, "SELECT COUNT(*) FROM account");
+			assertTrue(rows > 0 && rows < 30, "Rows not spread across shards: " + rows);
+		}
+
+		try(DatabaseResult result = database.queryShard(7, "SELECT name FROM account WHERE id = ?", 7)) {
+			assertEquals(Arrays.asList("account7"), result.parseResultSet(rs -> rs.getString(1)));
+		}
+	}
+
+	@Test
+	public void testScatterGather() throws SQLException, IOException {
+		try(ShardedResult result = database.queryAll("SELECT id FROM account WHERE id > ?", 10)) {
+			assertEquals(3, result.getResults().size());
+			List<Integer> ids = result.parseResultSet(rs -> rs.getInt(1));
+			assertEquals(20, ids.size());
+			assertTrue(ids.stream().allMatch(id -> id > 10));
+		}
+	}
+
+	@Test
+	public void testStream() throws SQLException {
+		try(Stream<Integer> ids = database.queryAll("SELECT id FROM account").stream(rs -> rs.getInt(1))) {
+			assertEquals(30, ids.distinct().count());
+		}
+	}
+
+	@Test
+	public void testMergedInOrderWithLimit() throws SQLException, IOException {
+		List<Integer> ids = database.queryMerged("SELECT id FROM account ORDER BY id DESC LIMIT ?",
+				rs -> rs.getInt(1), Comparator.reverseOrder(), 5, 5);
+		assertEquals(Arrays.asList(30, 29, 28, 27, 26), ids);
+
+		List<Integer> all = database.queryMerged("SELECT id FROM account ORDER BY id",
+				rs -> rs.getInt(1), Comparator.naturalOrder(), -1);
+		assertEquals(30, all.size());
+		for(int i = 0; i < all.size(); i++) {
+			assertEquals(i + 1, all.get(i));
+		}
+	}
+
+	@Test
+	public void testScatterFailure() {
+		SQLException e = assertThrows(SQLException.class, () -> database.queryAll("SELECT * FROM missing"));
+		assertEquals(2, e.getSuppressed().length);
+	}
+
+	@Test
+	public void testColumnarReadOfEveryShard() throws SQLException, IOException {
+		try(ShardedResult result = database.queryAll("SELECT id, name FROM account WHERE id <= ?", 12)) {
+			ColumnarResult columns = ColumnarResult.read(result.getResults());
+			assertEquals(12, columns.getRowCount());
+			assertEquals(78, columns.getIntColumn("id").stream().sum());
+		}
+		try(ShardedResult result = database.queryAll("SELECT id, name FROM account WHERE id < 0")) {
+			ColumnarResult columns = ColumnarResult.read(result.getResults());
+			assertEquals(0, columns.getRowCount());
+			assertEquals(2, columns.getColumns().size());
+		}
+	}
+
+	@Test
+	public void testInterruptReleasesEveryResult() throws Exception {
+		DatabaseResult fast = mock(DatabaseResult.class);
+		DatabaseResult slow = mock(DatabaseResult.class);
+		AbstractDatabase fastShard = mock(AbstractDatabase.class);
+		AbstractDatabase slowShard = mock(AbstractDatabase.class);
+		// Counted down once each shard's query is running, so neither can be cancelled before it starts
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch finish = new CountDownLatch(1);
+		when(fastShard.query("sql")).thenAnswer(inv -> {
+			started.countDown();
+			return fast;
+		});
+		when(slowShard.query("sql")).thenAnswer(inv -> {
+			started.countDown();
+			// Ignores interrupts, like a driver that can't cancel a running query
+			while(finish.getCount() > 0) {
+				try {
+					finish.await();
+				} catch (InterruptedException e) {
+					// Keep waiting
+				}
+			}
+			return slow;
+		});
+
+		Map<String, AbstractDatabase> named = new LinkedHashMap<>();
+		named.put("fast", fastShard);
+		named.put("slow", slowShard);
+		try(ShardedDatabase sharded = new ShardedDatabase(named, Executors.newFixedThreadPool(2))) {
+			SQLException e = assertThrows(SQLException.class, () -> {
+				// Interrupted once both shards' queries are running
+				Thread caller = Thread.currentThread();
+				new Thread(() -> {
+					try {
+						started.await();
+					} catch (InterruptedException ie) {
+						return;
+					}
+					caller.interrupt();
+				}).start();
+				sharded.queryAll("sql");
+			});
+			assertTrue(Thread.interrupted());
+			assertTrue(e.getCause() instanceof InterruptedException);
+
+			finish.countDown();
+			verify(fast, timeout(1000)).close();
+			verify(slow, timeout(1000)).close();
+		}
+	}
+
+	@Test
+	public void testAddingShardOnlyMovesKeysToIt() {
+		Map<String, AbstractDatabase> named = new LinkedHashMap<>(database.getShards());
+		named.put("shard-3", new SimpleDatabase("jdbc:h2:mem:shard3", "sa", ""));
+		try(ShardedDatabase grown = new ShardedDatabase(named)) {
+			Map<String, Integer> moved = new HashMap<>();
+			for(int key = 0; key < 10_000; key++) {
+				String before = database.getShardName(key);
+				String after = grown.getShardName(key);
+				if(!before.equals(after)) {
+					assertEquals("shard-3", after);
+					moved.merge(before, 1, Integer::sum);
+				}
+			}
+
+			// Roughly a quarter of keys move, taken evenly from each shard
+			int total = moved.values().stream().collect(Collectors.summingInt(Integer::intValue));
+			assertTrue(total > 1500 && total < 3500, "Moved " + total);
+			assertEquals(3, moved.size());
+		}
+	}
+
+}
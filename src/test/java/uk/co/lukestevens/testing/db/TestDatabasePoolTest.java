@@ -0,0 +1,119 @@
+package uk.co.lukestevens.testing.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+
+public class TestDatabasePoolTest {
+
+	TestDatabasePool pool = new TestDatabasePool("fixtures");
+
+	@AfterEach
+	public void closePool() {
+		pool.close();
+	}
+
+	static int count(TestDatabase database) throws SQLException, IOException {
+		try(DatabaseResult result = database.query("SELECT COUNT(*) FROM customer")) {
+			return result.parseResultSet(rs -> rs.getInt(1)).get(0);
+		}
+	}
+
+	@Test
+	public void testDatabasesAreIsolated() throws IOException, SQLException {
+		try(TestDatabase first = pool.acquire(); TestDatabase second = pool.acquire()) {
+			assertNotEquals(first.getName(), second.getName());
+			assertTrue(first.getProperties().getProperty("database.url").startsWith("jdbc:h2:mem:" + first.getName() + ";"));
+
+			first.update("DELETE FROM customer");
+			assertEquals(0, count(first));
+			assertEquals(3, count(second));
+		}
+		assertEquals(2, pool.getIdleCount());
+	}
+
+	@Test
+	public void testDatabasesAreRecycled() throws IOException, SQLException {
+		pool.prepare(1);
+		assertEquals(1, pool.getIdleCount());
+
+		String name;
+		try(TestDatabase database = pool.acquire()) {
+			name = database.getName();
+			database.update("INSERT INTO customer(name) VALUES ('Dan')");
+			database.update("CREATE TABLE extra(id INT)");
+		}
+
+		try(TestDatabase database = pool.acquire()) {
+			assertEquals(name, database.getName());
+			assertEquals(3, count(database));
+			database.update("CREATE TABLE extra(id INT)");
+		}
+		assertEquals(1, pool.getSize());
+	}
+
+	@Test
+	public void testDoubleCloseReleasesOnce() throws IOException, SQLException {
+		TestDatabase database = pool.acquire();
+		database.close();
+		database.close();
+		assertEquals(1, pool.getIdleCount());
+
+		try(TestDatabase first = pool.acquire(); TestDatabase second = pool.acquire()) {
+			assertNotSame(first, second);
+		}
+		assertEquals(2, pool.getSize());
+	}
+
+	@Test
+	public void testParallelTests() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Callable<String>> tests = new ArrayList<>();
+			for(int i = 0; i < 20; i++) {
+				int id = i;
+				tests.add(() -> {
+					try(TestDatabase database = pool.acquire()) {
+						database.update("INSERT INTO customer(name) VALUES (?)", "test" + id);
+						assertEquals(4, count(database));
+						return database.getName();
+					}
+				});
+			}
+
+			Set<String> names = new HashSet<>();
+			for(Future<String> future : executor.invokeAll(tests)) {
+				names.add(future.get());
+			}
+			assertTrue(names.size() <= 4);
+			assertEquals(names.size(), pool.getSize());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testClosedPool() throws IOException, SQLException {
+		TestDatabase database = pool.acquire();
+		pool.close();
+		assertThrows(IllegalStateException.class, pool::acquire);
+
+		database.close();
+		assertEquals(0, pool.getSize());
+	}
+
+}
@@ -0,0 +1,128 @@
+package uk.co.lukestevens.testing.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.lukestevens.db.DatabaseResult;
+
+public class TestDatabaseTest {
+
+	TestDatabase database = new TestDatabase();
+
+	@BeforeEach
+	public void resetDatabase() throws SQLException {
+		database.reset();
+	}
+
+	List<String> names() throws SQLException, IOException {
+		try(DatabaseResult result = database.query("SELECT name FROM customer ORDER BY id")) {
+			return result.parseResultSet(rs -> rs.getString("name"));
+		}
+	}
+
+	@Test
+	public void testParseScript() {
+		List<String> statements = SqlScript.parse("-- comment; here\n"
+				+ "INSERT INTO a VALUES ('x;y', 'it''s');\n"
+				+ "/* block; */ UPDATE a SET \"odd;name\" = 1;\n"
+				+ "CREATE ALIAS f AS $$ String f() { return \";\"; } $$;;\n");
+
+		assertEquals(Arrays.asList(
+				"INSERT INTO a VALUES ('x;y', 'it''s')",
+				"UPDATE a SET \"odd;name\" = 1",
+				"CREATE ALIAS f AS $$ String f() { return \";\"; } $$"), statements);
+	}
+
+	@Test
+	public void testScriptsAreCached() throws IOException {
+		List<String> statements = SqlScript.load("fixtures");
+		assertEquals(4, statements.size());
+		assertSame(statements, SqlScript.load("fixtures"));
+		assertThrows(FileNotFoundException.class, () -> SqlScript.load("missing"));
+	}
+
+	@Test
+	public void testExecuteFile() throws IOException, SQLException {
+		database.executeFile("fixtures");
+		assertEquals(Arrays.asList("Ann", "Bob", "Cat"), this.names());
+	}
+
+	@Test
+	public void testExecuteFileWithResults() throws IOException, SQLException {
+		database.executeFile("fixtures");
+		database.executeFile("fixtures_results");
+		assertEquals(Arrays.asList("Ann", "Bob", "Cat", "Dan"), this.names());
+	}
+
+	@Test
+	public void testExecuteFileStopsAtFailure() throws IOException, SQLException {
+		database.executeFile("fixtures");
+		assertThrows(SQLException.class, () -> database.executeFile("fixtures_invalid"));
+		assertEquals(Arrays.asList("Ann", "Bob", "Cat", "Dan"), this.names());
+	}
+
+	@Test
+	public void testCloseKeepsSharedDatabase() throws IOException, SQLException {
+		database.executeFile("fixtures");
+		new TestDatabase().close();
+		assertEquals(Arrays.asList("Ann", "Bob", "Cat"), this.names());
+	}
+
+	@Test
+	public void testCloseShutsDownNamedDatabase() throws IOException, SQLException {
+		TestDatabase named = new TestDatabase("named");
+		named.executeFile("fixtures");
+		named.close();
+
+		TestDatabase reopened = new TestDatabase("named");
+		assertThrows(SQLException.class, () -> reopened.query("SELECT * FROM customer").close());
+		reopened.close();
+	}
+
+	@Test
+	public void testSnapshotAndRestore() throws IOException, SQLException {
+		database.executeFile("fixtures");
+		database.executeFile("fixtures_orders");
+		database.snapshot("customers");
+		assertTrue(database.hasSnapshot("customers"));
+
+		database.update("DELETE FROM orders");
+		database.update("INSERT INTO customer(name) VALUES ('Dan')");
+		database.update("CREATE TABLE extra(id INT)");
+
+		database.restore("customers");
+		assertEquals(Arrays.asList("Ann", "Bob", "Cat"), this.names());
+		try(DatabaseResult result = database.query("SELECT COUNT(*) FROM orders")) {
+			assertEquals(3, result.parseResultSet(rs -> rs.getInt(1)).get(0));
+		}
+		assertThrows(SQLException.class, () -> database.update("INSERT INTO extra VALUES (1)"));
+
+		// Restored sequences continue from where the snapshot was taken
+		assertEquals(4L, database.update("INSERT INTO customer(name) VALUES ('Dan')").get());
+	}
+
+	@Test
+	public void testRestoreMissingSnapshot() {
+		assertThrows(IllegalArgumentException.class, () -> database.restore("missing"));
+	}
+
+	@Test
+	public void testLoadFixtures() throws IOException, SQLException {
+		database.loadFixtures("fixtures", "fixtures_orders");
+		database.update("DELETE FROM orders");
+		database.update("DELETE FROM customer");
+
+		database.loadFixtures("fixtures", "fixtures_orders");
+		assertEquals(Arrays.asList("Ann", "Bob", "Cat"), this.names());
+		assertTrue(database.hasSnapshot("fixtures:fixtures,fixtures_orders"));
+	}
+
+}
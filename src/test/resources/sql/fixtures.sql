@@ -0,0 +1,7 @@
+-- Fixtures for TestDatabaseTest; semicolons in 'strings; like this' are kept
+CREATE TABLE customer(id SERIAL PRIMARY KEY, name VARCHAR(32), note VARCHAR(64));
+
+/* Block comment; also ignored */
+INSERT INTO customer(name, note) VALUES ('Ann', 'likes; semicolons');
+INSERT INTO customer(name, note) VALUES ('Bob', 'it''s fine');
+INSERT INTO customer(name, note) VALUES ('Cat', NULL);
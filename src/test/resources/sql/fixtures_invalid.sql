@@ -0,0 +1,3 @@
+INSERT INTO customer(name) VALUES ('Dan');
+INSERT INTO missing(name) VALUES ('Eve');
+INSERT INTO customer(name) VALUES ('Fay');
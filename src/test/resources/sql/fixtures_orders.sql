@@ -0,0 +1,2 @@
+CREATE TABLE orders(id SERIAL PRIMARY KEY, customer_id INT REFERENCES customer(id), total DECIMAL(10, 2));
+INSERT INTO orders(customer_id, total) VALUES (1, 9.99), (1, 20.00), (2, 5.50);
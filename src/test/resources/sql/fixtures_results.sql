@@ -0,0 +1,4 @@
+-- Statements that return results cannot be part of a JDBC batch
+SELECT COUNT(*) FROM customer;
+CALL 1;
+INSERT INTO customer(name) VALUES ('Dan');